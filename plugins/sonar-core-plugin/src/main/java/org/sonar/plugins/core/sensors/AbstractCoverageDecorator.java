@@ -22,6 +22,7 @@ package org.sonar.plugins.core.sensors;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
+import org.sonar.api.batch.ThreadSafeDecorator;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.resources.Project;
@@ -31,6 +32,7 @@ import org.sonar.api.resources.ResourceUtils;
 import java.util.Arrays;
 import java.util.Collection;
 
+@ThreadSafeDecorator
 public abstract class AbstractCoverageDecorator implements Decorator {
 
   @Override
@@ -20,8 +20,11 @@
 
 package org.sonar.plugins.cpd;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +42,7 @@ import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.api.utils.SonarException;
+import org.sonar.batch.duplication.PersistentBlockCache;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.BlockChunker;
 import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
@@ -53,15 +57,18 @@ import org.sonar.duplications.token.TokenChunker;
 import org.sonar.plugins.cpd.index.IndexFactory;
 import org.sonar.plugins.cpd.index.SonarDuplicationsIndex;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -78,20 +85,28 @@ public class JavaCpdEngine extends CpdEngine {
    */
   private static final int TIMEOUT = 5 * 60;
 
+  /**
+   * Number of threads used to tokenize files and to detect duplications. Default value is the number
+   * of available processors.
+   */
+  static final String THREADS_PROPERTY = "sonar.cpd.threads";
+
   private final IndexFactory indexFactory;
   private final FileSystem fs;
   private final Settings settings;
   private final Project project;
+  private final PersistentBlockCache persistentBlockCache;
 
-  public JavaCpdEngine(@Nullable Project project, IndexFactory indexFactory, FileSystem fs, Settings settings) {
+  public JavaCpdEngine(@Nullable Project project, IndexFactory indexFactory, FileSystem fs, Settings settings, PersistentBlockCache persistentBlockCache) {
     this.project = project;
     this.indexFactory = indexFactory;
     this.fs = fs;
     this.settings = settings;
+    this.persistentBlockCache = persistentBlockCache;
   }
 
-  public JavaCpdEngine(IndexFactory indexFactory, FileSystem fs, Settings settings) {
-    this(null, indexFactory, fs, settings);
+  public JavaCpdEngine(IndexFactory indexFactory, FileSystem fs, Settings settings, PersistentBlockCache persistentBlockCache) {
+    this(null, indexFactory, fs, settings, persistentBlockCache);
   }
 
   @Override
@@ -112,18 +127,99 @@ public class JavaCpdEngine extends CpdEngine {
     if (sourceFiles.isEmpty()) {
       return;
     }
-    SonarDuplicationsIndex index = createIndex(project, languageKey, sourceFiles);
-    detect(index, context, sourceFiles);
+    int threads = numberOfThreads();
+    ExecutorService executorService = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat("cpd-%d").setDaemon(true).build());
+    try {
+      SonarDuplicationsIndex index = createIndex(executorService, threads, project, languageKey, sourceFiles);
+      detect(executorService, threads, index, context, sourceFiles);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private int numberOfThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
   }
 
-  private SonarDuplicationsIndex createIndex(@Nullable Project project, String language, Iterable<InputFile> sourceFiles) {
+  /**
+   * Files are tokenized concurrently, but blocks are inserted into index by the current thread, in the order of files.
+   * The number of files being tokenized is bounded, so that only the blocks of a few files are kept in memory
+   * before being inserted into index.
+   */
+  private SonarDuplicationsIndex createIndex(ExecutorService executorService, int threads, @Nullable Project project, String language,
+    List<InputFile> sourceFiles) {
     final SonarDuplicationsIndex index = indexFactory.create(project, language);
 
-    TokenChunker tokenChunker = JavaTokenProducer.build();
-    StatementChunker statementChunker = JavaStatementBuilder.build();
-    BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
+    // chunkers are not thread-safe
+    final ThreadLocal<FileChunker> chunkers = new ThreadLocal<FileChunker>() {
+      @Override
+      protected FileChunker initialValue() {
+        return new FileChunker(fs.encoding());
+      }
+    };
+    // blocks depend on the encoding used to read files
+    final String cachePartition = "java:" + BLOCK_SIZE + ":" + fs.encoding().name();
+    int maxPendingFiles = 2 * threads;
+    LinkedList<Future<List<Block>>> pendingFutures = new LinkedList<Future<List<Block>>>();
+    int insertedFiles = 0;
+    for (final InputFile inputFile : sourceFiles) {
+      if (pendingFutures.size() >= maxPendingFiles) {
+        index.insert(sourceFiles.get(insertedFiles), getBlocks(pendingFutures.removeFirst()));
+        insertedFiles++;
+      }
+      pendingFutures.add(executorService.submit(new Callable<List<Block>>() {
+        @Override
+        public List<Block> call() {
+          return blocks(cachePartition, inputFile, chunkers.get());
+        }
+      }));
+    }
+    while (!pendingFutures.isEmpty()) {
+      index.insert(sourceFiles.get(insertedFiles), getBlocks(pendingFutures.removeFirst()));
+      insertedFiles++;
+    }
 
-    for (InputFile inputFile : sourceFiles) {
+    return index;
+  }
+
+  private static List<Block> getBlocks(Future<List<Block>> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Blocks of files that were not changed since the previous analysis are loaded from cache
+   */
+  private List<Block> blocks(String cachePartition, InputFile inputFile, FileChunker chunker) {
+    DeprecatedDefaultInputFile defaultInputFile = (DeprecatedDefaultInputFile) inputFile;
+    String hash = defaultInputFile.hash();
+    if (hash == null) {
+      return chunker.chunk(inputFile);
+    }
+    List<Block> blocks = persistentBlockCache.get(cachePartition, hash, defaultInputFile.key());
+    if (blocks == null) {
+      blocks = chunker.chunk(inputFile);
+      persistentBlockCache.put(cachePartition, hash, blocks);
+    }
+    return blocks;
+  }
+
+  private static class FileChunker {
+    private final Charset encoding;
+    private final TokenChunker tokenChunker = JavaTokenProducer.build();
+    private final StatementChunker statementChunker = JavaStatementBuilder.build();
+    private final BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
+
+    FileChunker(Charset encoding) {
+      this.encoding = encoding;
+    }
+
+    List<Block> chunk(InputFile inputFile) {
       LOG.debug("Populating index from {}", inputFile);
       String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
 
@@ -131,7 +227,7 @@ public class JavaCpdEngine extends CpdEngine {
 
       Reader reader = null;
       try {
-        reader = new InputStreamReader(new FileInputStream(inputFile.file()), fs.encoding());
+        reader = new InputStreamReader(new FileInputStream(inputFile.file()), encoding);
         statements = statementChunker.chunk(tokenChunker.chunk(reader));
       } catch (FileNotFoundException e) {
         throw new SonarException("Cannot find file " + inputFile.file(), e);
@@ -139,44 +235,78 @@ public class JavaCpdEngine extends CpdEngine {
         IOUtils.closeQuietly(reader);
       }
 
-      List<Block> blocks = blockChunker.chunk(resourceEffectiveKey, statements);
-      index.insert(inputFile, blocks);
+      return blockChunker.chunk(resourceEffectiveKey, statements);
     }
+  }
 
-    return index;
+  /**
+   * Duplications of several files are detected concurrently when the index supports concurrent queries. Results are
+   * saved by the current thread, in the order of files.
+   */
+  private void detect(ExecutorService executorService, int threads, SonarDuplicationsIndex index, org.sonar.api.batch.sensor.SensorContext context,
+    List<InputFile> sourceFiles) {
+    int maxPendingFiles = index.supportsConcurrentQueries() ? (2 * threads) : 1;
+    LinkedList<PendingDetection> pendingDetections = new LinkedList<PendingDetection>();
+    for (InputFile inputFile : sourceFiles) {
+      if (pendingDetections.size() >= maxPendingFiles) {
+        pendingDetections.removeFirst().save(context);
+      }
+      LOG.debug("Detection of duplications for {}", inputFile);
+      String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
+
+      Collection<Block> fileBlocks = index.getByInputFile(inputFile, resourceEffectiveKey);
+      Task task = new Task(index, fileBlocks);
+      pendingDetections.add(new PendingDetection(inputFile, task, executorService.submit(task)));
+    }
+    while (!pendingDetections.isEmpty()) {
+      pendingDetections.removeFirst().save(context);
+    }
   }
 
-  private void detect(SonarDuplicationsIndex index, org.sonar.api.batch.sensor.SensorContext context, List<InputFile> sourceFiles) {
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
-    try {
-      for (InputFile inputFile : sourceFiles) {
-        LOG.debug("Detection of duplications for {}", inputFile);
-        String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
-
-        Collection<Block> fileBlocks = index.getByInputFile(inputFile, resourceEffectiveKey);
-
-        List<CloneGroup> clones;
-        try {
-          clones = executorService.submit(new Task(index, fileBlocks)).get(TIMEOUT, TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-          clones = null;
-          LOG.warn("Timeout during detection of duplications for " + inputFile, e);
-        } catch (InterruptedException e) {
-          throw new SonarException("Fail during detection of duplication for " + inputFile, e);
-        } catch (ExecutionException e) {
-          throw new SonarException("Fail during detection of duplication for " + inputFile, e);
-        }
+  private static class PendingDetection {
+    private final InputFile inputFile;
+    private final Task task;
+    private final Future<List<CloneGroup>> future;
+
+    PendingDetection(InputFile inputFile, Task task, Future<List<CloneGroup>> future) {
+      this.inputFile = inputFile;
+      this.task = task;
+      this.future = future;
+    }
 
-        save(context, inputFile, clones);
+    void save(org.sonar.api.batch.sensor.SensorContext context) {
+      JavaCpdEngine.save(context, inputFile, waitForClones());
+    }
+
+    /**
+     * The timeout applies to the execution of the task, not to the time it was waiting for an available thread
+     */
+    @CheckForNull
+    private List<CloneGroup> waitForClones() {
+      try {
+        while (true) {
+          try {
+            return future.get(task.remainingTimeMs(), TimeUnit.MILLISECONDS);
+          } catch (TimeoutException e) {
+            if (task.isTimedOut()) {
+              future.cancel(true);
+              LOG.warn("Timeout during detection of duplications for " + inputFile, e);
+              return null;
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        throw new SonarException("Fail during detection of duplication for " + inputFile, e);
+      } catch (ExecutionException e) {
+        throw new SonarException("Fail during detection of duplication for " + inputFile, e);
       }
-    } finally {
-      executorService.shutdown();
     }
   }
 
   static class Task implements Callable<List<CloneGroup>> {
     private final CloneIndex index;
     private final Collection<Block> fileBlocks;
+    private volatile long startedAt = 0L;
 
     public Task(CloneIndex index, Collection<Block> fileBlocks) {
       this.index = index;
@@ -185,8 +315,22 @@ public class JavaCpdEngine extends CpdEngine {
 
     @Override
     public List<CloneGroup> call() {
+      startedAt = System.currentTimeMillis();
       return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
     }
+
+    long remainingTimeMs() {
+      long timeoutMs = TimeUnit.SECONDS.toMillis(TIMEOUT);
+      long start = startedAt;
+      if (start == 0L) {
+        return timeoutMs;
+      }
+      return Math.max(0L, start + timeoutMs - System.currentTimeMillis());
+    }
+
+    boolean isTimedOut() {
+      return startedAt > 0L && remainingTimeMs() == 0L;
+    }
   }
 
   static void save(org.sonar.api.batch.sensor.SensorContext context, InputFile inputFile, @Nullable Iterable<CloneGroup> duplications) {
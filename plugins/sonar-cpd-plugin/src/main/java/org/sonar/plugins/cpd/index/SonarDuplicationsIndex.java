@@ -52,6 +52,14 @@ public class SonarDuplicationsIndex extends AbstractCloneIndex {
     }
   }
 
+  /**
+   * Queries on the cross-project index share a cache of the blocks of the current file, so they
+   * can't be executed concurrently.
+   */
+  public boolean supportsConcurrentQueries() {
+    return db == null;
+  }
+
   public Collection<Block> getByInputFile(InputFile inputFile, String resourceKey) {
     if (db != null) {
       db.prepareCache(inputFile);
@@ -26,6 +26,7 @@ import org.sonar.api.config.PropertyDefinitions;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Java;
 import org.sonar.batch.duplication.BlockCache;
+import org.sonar.batch.duplication.PersistentBlockCache;
 import org.sonar.plugins.cpd.index.IndexFactory;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -41,7 +42,7 @@ public class CpdSensorTest {
   @Before
   public void setUp() {
     IndexFactory indexFactory = mock(IndexFactory.class);
-    sonarEngine = new JavaCpdEngine(indexFactory, null, null);
+    sonarEngine = new JavaCpdEngine(indexFactory, null, null, mock(PersistentBlockCache.class));
     sonarBridgeEngine = new DefaultCpdEngine(indexFactory, new CpdMappings(), null, null, mock(BlockCache.class));
     settings = new Settings(new PropertyDefinitions(CpdPlugin.class));
 
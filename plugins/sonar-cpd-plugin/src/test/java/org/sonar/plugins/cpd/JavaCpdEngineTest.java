@@ -36,14 +36,17 @@ import org.sonar.api.batch.sensor.duplication.internal.DefaultDuplicationBuilder
 import org.sonar.api.batch.sensor.measure.Measure;
 import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
 import org.sonar.api.measures.CoreMetrics;
+import org.sonar.duplications.block.Block;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
+import org.sonar.duplications.index.PackedMemoryCloneIndex;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -157,6 +160,17 @@ public class JavaCpdEngineTest {
     inOrder.verify(duplicationBuilder).build();
   }
 
+  @Test
+  public void timeout_of_task_starts_when_task_is_executed() throws Exception {
+    JavaCpdEngine.Task task = new JavaCpdEngine.Task(new PackedMemoryCloneIndex(), Collections.<Block>emptyList());
+    assertThat(task.remainingTimeMs()).isEqualTo(5 * 60 * 1000L);
+    assertThat(task.isTimedOut()).isFalse();
+
+    assertThat(task.call()).isEmpty();
+    assertThat(task.remainingTimeMs()).isGreaterThan(0L).isLessThanOrEqualTo(5 * 60 * 1000L);
+    assertThat(task.isTimedOut()).isFalse();
+  }
+
   private CloneGroup newCloneGroup(ClonePart... parts) {
     return CloneGroup.builder().setLength(0).setOrigin(parts[0]).setParts(Arrays.asList(parts)).build();
   }
@@ -22,8 +22,15 @@ package org.sonar.plugins.scm.git;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryBuilder;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.fs.InputFile;
@@ -32,9 +39,13 @@ import org.sonar.api.batch.scm.BlameLine;
 import org.sonar.api.scan.filesystem.PathResolver;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -56,16 +67,97 @@ public class JGitBlameCommand extends BlameCommand {
     File basedir = input.fileSystem().baseDir();
     Repository repo = buildRepository(basedir);
     try {
-      Git git = Git.wrap(repo);
       File gitBaseDir = repo.getWorkTree();
-      ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() + 1);
-      List<Future<Void>> tasks = submitTasks(input, output, git, gitBaseDir, executorService);
-      waitForTaskToComplete(tasks);
+      ObjectId head = repo.resolve(Constants.HEAD);
+      RevTree headTree = head == null ? null : parseTree(repo, head);
+      Map<String, InputFile> committedFiles = new HashMap<String, InputFile>();
+      List<InputFile> modifiedFiles = new ArrayList<InputFile>();
+      for (InputFile inputFile : input.filesToBlame()) {
+        String filename = pathResolver.relativePath(gitBaseDir, inputFile.file());
+        if (headTree != null && filename != null && isCommitted(repo, headTree, filename, inputFile.file())) {
+          committedFiles.put(filename, inputFile);
+        } else {
+          modifiedFiles.add(inputFile);
+        }
+      }
+      LOG.debug("{} files to blame from history, {} files with local changes", committedFiles.size(), modifiedFiles.size());
+      blameCommittedFiles(repo, head, committedFiles, output);
+      blameModifiedFiles(repo, gitBaseDir, modifiedFiles, output);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to blame files of " + basedir, e);
     } finally {
       repo.close();
     }
   }
 
+  /**
+   * Committed files without local changes are blamed all together in a single walk of history
+   */
+  private void blameCommittedFiles(Repository repo, ObjectId head, Map<String, InputFile> committedFiles, BlameOutput output) throws IOException {
+    if (committedFiles.isEmpty()) {
+      return;
+    }
+    Map<String, RevCommit[]> commitsByPath = new JGitBlameEngine(repo, RawTextComparator.WS_IGNORE_ALL).blame(head, committedFiles.keySet());
+    for (Map.Entry<String, RevCommit[]> entry : commitsByPath.entrySet()) {
+      InputFile inputFile = committedFiles.get(entry.getKey());
+      List<BlameLine> lines = new ArrayList<BlameLine>(entry.getValue().length);
+      for (RevCommit commit : entry.getValue()) {
+        lines.add(new BlameLine().date(commit.getAuthorIdent().getWhen()).revision(commit.getName()).author(commit.getAuthorIdent().getEmailAddress()));
+      }
+      saveBlameResult(output, inputFile, lines);
+    }
+  }
+
+  /**
+   * New files and files with local changes are blamed one by one, so that uncommitted lines are reported.
+   */
+  private void blameModifiedFiles(Repository repo, File gitBaseDir, List<InputFile> modifiedFiles, BlameOutput output) {
+    if (modifiedFiles.isEmpty()) {
+      return;
+    }
+    Git git = Git.wrap(repo);
+    ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() + 1);
+    try {
+      List<Future<Void>> tasks = new ArrayList<Future<Void>>();
+      for (InputFile inputFile : modifiedFiles) {
+        tasks.add(submitTask(output, git, gitBaseDir, inputFile, executorService));
+      }
+      waitForTaskToComplete(tasks);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static RevTree parseTree(Repository repo, ObjectId commitId) throws IOException {
+    RevWalk revWalk = new RevWalk(repo);
+    try {
+      return revWalk.parseCommit(commitId).getTree();
+    } finally {
+      revWalk.release();
+    }
+  }
+
+  private static boolean isCommitted(Repository repo, RevTree headTree, String filename, File file) throws IOException {
+    TreeWalk treeWalk = TreeWalk.forPath(repo, filename, headTree);
+    if (treeWalk == null) {
+      return false;
+    }
+    try {
+      return treeWalk.getObjectId(0).equals(blobId(file));
+    } finally {
+      treeWalk.release();
+    }
+  }
+
+  private static ObjectId blobId(File file) throws IOException {
+    InputStream input = new FileInputStream(file);
+    try {
+      return new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, file.length(), input);
+    } finally {
+      input.close();
+    }
+  }
+
   private void waitForTaskToComplete(List<Future<Void>> tasks) {
     for (Future<Void> task : tasks) {
       try {
@@ -79,14 +171,6 @@ public class JGitBlameCommand extends BlameCommand {
     }
   }
 
-  private List<Future<Void>> submitTasks(BlameInput input, BlameOutput output, Git git, File gitBaseDir, ExecutorService executorService) {
-    List<Future<Void>> tasks = new ArrayList<Future<Void>>();
-    for (InputFile inputFile : input.filesToBlame()) {
-      tasks.add(submitTask(output, git, gitBaseDir, inputFile, executorService));
-    }
-    return tasks;
-  }
-
   private Repository buildRepository(File basedir) {
     try {
       Repository repo = new RepositoryBuilder()
@@ -127,7 +211,11 @@ public class JGitBlameCommand extends BlameCommand {
       lines.add(new org.sonar.api.batch.scm.BlameLine().date(blameResult.getSourceAuthor(i).getWhen()).revision(blameResult.getSourceCommit(i).getName())
         .author(blameResult.getSourceAuthor(i).getEmailAddress()));
     }
-    if (lines.size() == inputFile.lines() - 1) {
+    saveBlameResult(output, inputFile, lines);
+  }
+
+  private static void saveBlameResult(BlameOutput output, InputFile inputFile, List<BlameLine> lines) {
+    if (!lines.isEmpty() && lines.size() == inputFile.lines() - 1) {
       // SONARPLUGINS-3097 Git do not report blame on last empty line
       lines.add(lines.get(lines.size() - 1));
     }
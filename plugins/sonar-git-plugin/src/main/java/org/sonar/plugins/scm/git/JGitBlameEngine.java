@@ -0,0 +1,376 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.scm.git;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Blames many files in a single walk of the commit graph, instead of walking history once per file.
+ * <p/>
+ * Lines that are not attributed yet are attached to the commits to visit, which are processed from the most
+ * recent to the oldest. For each commit, only the paths that differ from its parents are diffed (identical subtrees
+ * are skipped by the tree walk), and matching lines are passed to the parents. Lines that can't be passed to
+ * any parent were introduced by the commit. All objects are read through a single {@link ObjectReader}.
+ * <p/>
+ * The content of a version of a file is loaded only when it is diffed, and it is released as soon as the lines of this
+ * version are attributed, so at most the files of the processed commit are held in memory.
+ * <p/>
+ * Renames are not followed, as with the default git blame command of JGit. This class is not thread-safe.
+ */
+class JGitBlameEngine {
+
+  private static final Comparator<RevCommit> MOST_RECENT_FIRST = new Comparator<RevCommit>() {
+    @Override
+    public int compare(RevCommit c1, RevCommit c2) {
+      return Integer.compare(c2.getCommitTime(), c1.getCommitTime());
+    }
+  };
+
+  private static final Comparator<Region> BY_SOURCE_LINE = new Comparator<Region>() {
+    @Override
+    public int compare(Region r1, Region r2) {
+      return Integer.compare(r1.sourceStart, r2.sourceStart);
+    }
+  };
+
+  private final Repository repository;
+  private final RawTextComparator comparator;
+  private final DiffAlgorithm diffAlgorithm = DiffAlgorithm.getAlgorithm(DiffAlgorithm.SupportedAlgorithm.HISTOGRAM);
+
+  private ObjectReader reader;
+  private RevWalk revWalk;
+  private Map<String, RevCommit[]> result;
+  private PriorityQueue<RevCommit> queue;
+  private Map<RevCommit, Map<String, Candidate>> pending;
+
+  JGitBlameEngine(Repository repository, RawTextComparator comparator) {
+    this.repository = repository;
+    this.comparator = comparator;
+  }
+
+  /**
+   * Blames the files as they are in the given commit.
+   *
+   * @return for each path, the commit that introduced each line. Paths that don't exist in the commit are ignored.
+   */
+  Map<String, RevCommit[]> blame(AnyObjectId startCommit, Collection<String> paths) throws IOException {
+    result = new HashMap<String, RevCommit[]>();
+    if (paths.isEmpty()) {
+      return result;
+    }
+    reader = repository.newObjectReader();
+    try {
+      revWalk = new RevWalk(reader);
+      queue = new PriorityQueue<RevCommit>(11, MOST_RECENT_FIRST);
+      pending = new HashMap<RevCommit, Map<String, Candidate>>();
+
+      RevCommit start = revWalk.parseCommit(startCommit);
+      for (Candidate candidate : loadFiles(start, new HashSet<String>(paths))) {
+        // the content is not kept, it will be loaded again when the file is diffed
+        int lines = load(candidate.blobId).size();
+        result.put(candidate.path, new RevCommit[lines]);
+        if (lines > 0) {
+          candidate.regions.add(new Region(0, 0, lines));
+          push(start, candidate);
+        }
+      }
+      while (!queue.isEmpty()) {
+        RevCommit commit = queue.poll();
+        process(commit, pending.remove(commit));
+      }
+      return result;
+    } finally {
+      reader.release();
+      reader = null;
+      revWalk = null;
+      queue = null;
+      pending = null;
+    }
+  }
+
+  private List<Candidate> loadFiles(RevCommit commit, Set<String> paths) throws IOException {
+    List<Candidate> candidates = new ArrayList<Candidate>();
+    TreeWalk treeWalk = new TreeWalk(reader);
+    try {
+      treeWalk.setRecursive(true);
+      treeWalk.setFilter(PathFilterGroup.createFromStrings(paths));
+      treeWalk.addTree(commit.getTree());
+      while (treeWalk.next()) {
+        String path = treeWalk.getPathString();
+        if (isFile(treeWalk.getRawMode(0)) && paths.contains(path)) {
+          candidates.add(new Candidate(path, treeWalk.getObjectId(0)));
+        }
+      }
+    } finally {
+      treeWalk.release();
+    }
+    return candidates;
+  }
+
+  private void process(RevCommit commit, Map<String, Candidate> candidates) throws IOException {
+    RevCommit[] parents = parents(commit);
+    List<Map<String, ObjectId>> parentBlobs = new ArrayList<Map<String, ObjectId>>(parents.length);
+    for (RevCommit parent : parents) {
+      parentBlobs.add(changedFiles(commit, parent, candidates));
+    }
+
+    Iterator<Candidate> it = candidates.values().iterator();
+    while (it.hasNext()) {
+      Candidate candidate = it.next();
+      for (int i = 0; i < parents.length; i++) {
+        if (!parentBlobs.get(i).containsKey(candidate.path)) {
+          // same file in parent, all its lines are passed to parent
+          push(parents[i], candidate);
+          it.remove();
+          break;
+        }
+      }
+    }
+
+    for (Candidate candidate : candidates.values()) {
+      for (int i = 0; i < parents.length && !candidate.regions.isEmpty(); i++) {
+        ObjectId parentBlobId = parentBlobs.get(i).get(candidate.path);
+        if (parentBlobId != null) {
+          passMatchingLines(candidate, parents[i], parentBlobId);
+        }
+      }
+      attribute(commit, candidate);
+    }
+  }
+
+  private RevCommit[] parents(RevCommit commit) throws IOException {
+    RevCommit[] parents = commit.getParents();
+    try {
+      for (RevCommit parent : parents) {
+        revWalk.parseHeaders(parent);
+      }
+      return parents;
+    } catch (MissingObjectException e) {
+      // history is truncated (shallow clone), remaining lines are attributed to the oldest available commit
+      return new RevCommit[0];
+    }
+  }
+
+  /**
+   * Blob ids in parent of the candidate files that were changed by commit. Value is null if the file does not exist in parent.
+   */
+  private Map<String, ObjectId> changedFiles(RevCommit commit, RevCommit parent, Map<String, Candidate> candidates) throws IOException {
+    Map<String, ObjectId> blobIds = new HashMap<String, ObjectId>();
+    TreeWalk treeWalk = new TreeWalk(reader);
+    try {
+      treeWalk.setRecursive(true);
+      treeWalk.setFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(candidates.keySet()), TreeFilter.ANY_DIFF));
+      treeWalk.addTree(commit.getTree());
+      treeWalk.addTree(parent.getTree());
+      while (treeWalk.next()) {
+        Candidate candidate = candidates.get(treeWalk.getPathString());
+        if (candidate == null) {
+          continue;
+        }
+        if (!isFile(treeWalk.getRawMode(1))) {
+          blobIds.put(candidate.path, null);
+        } else if (!treeWalk.idEqual(0, 1)) {
+          blobIds.put(candidate.path, treeWalk.getObjectId(1));
+        }
+      }
+    } finally {
+      treeWalk.release();
+    }
+    return blobIds;
+  }
+
+  private void passMatchingLines(Candidate candidate, RevCommit parent, ObjectId parentBlobId) throws IOException {
+    // content of parent is not kept by the parent candidate, as the parent may be processed much later
+    Candidate parentCandidate = new Candidate(candidate.path, parentBlobId);
+    RawText text = candidate.text();
+    List<Region> commonRegions = commonRegions(diffAlgorithm.diff(comparator, load(parentBlobId), text), text.size());
+
+    List<Region> remaining = new ArrayList<Region>();
+    for (Region region : candidate.sortedRegions()) {
+      int line = region.sourceStart;
+      int end = region.sourceStart + region.length;
+      int commonIndex = firstCommonRegionEndingAfter(commonRegions, line);
+      while (line < end) {
+        Region common = commonIndex < commonRegions.size() ? commonRegions.get(commonIndex) : null;
+        if (common == null || common.resultStart >= end) {
+          remaining.add(region.slice(line, end));
+          break;
+        }
+        if (common.resultStart > line) {
+          remaining.add(region.slice(line, common.resultStart));
+          line = common.resultStart;
+        }
+        int matchEnd = Math.min(end, common.resultStart + common.length);
+        parentCandidate.regions.add(new Region(region.resultStart + line - region.sourceStart, common.sourceStart + line - common.resultStart, matchEnd - line));
+        line = matchEnd;
+        commonIndex++;
+      }
+    }
+    candidate.regions.clear();
+    candidate.regions.addAll(remaining);
+    if (!parentCandidate.regions.isEmpty()) {
+      push(parent, parentCandidate);
+    }
+  }
+
+  /**
+   * Lines that are not changed between parent and child texts. In returned regions, resultStart is the line in child
+   * and sourceStart is the line in parent.
+   */
+  private static List<Region> commonRegions(EditList edits, int childSize) {
+    List<Region> regions = new ArrayList<Region>(edits.size() + 1);
+    int parentLine = 0;
+    int childLine = 0;
+    for (Edit edit : edits) {
+      if (edit.getBeginB() > childLine) {
+        regions.add(new Region(childLine, parentLine, edit.getBeginB() - childLine));
+      }
+      parentLine = edit.getEndA();
+      childLine = edit.getEndB();
+    }
+    if (childSize > childLine) {
+      regions.add(new Region(childLine, parentLine, childSize - childLine));
+    }
+    return regions;
+  }
+
+  private static int firstCommonRegionEndingAfter(List<Region> commonRegions, int childLine) {
+    int low = 0;
+    int high = commonRegions.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      Region region = commonRegions.get(mid);
+      if (region.resultStart + region.length <= childLine) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private void attribute(RevCommit commit, Candidate candidate) {
+    RevCommit[] commits = result.get(candidate.path);
+    for (Region region : candidate.regions) {
+      for (int i = 0; i < region.length; i++) {
+        commits[region.resultStart + i] = commit;
+      }
+    }
+  }
+
+  private void push(RevCommit commit, Candidate candidate) {
+    Map<String, Candidate> candidates = pending.get(commit);
+    if (candidates == null) {
+      candidates = new HashMap<String, Candidate>();
+      pending.put(commit, candidates);
+      queue.add(commit);
+    }
+    Candidate existing = candidates.get(candidate.path);
+    if (existing == null) {
+      candidates.put(candidate.path, candidate);
+    } else {
+      // lines of the same file, reached from another child
+      existing.regions.addAll(candidate.regions);
+    }
+  }
+
+  private RawText load(ObjectId blobId) throws IOException {
+    return new RawText(reader.open(blobId, Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE));
+  }
+
+  private static boolean isFile(int rawMode) {
+    return (rawMode & FileMode.TYPE_MASK) == FileMode.TYPE_FILE;
+  }
+
+  private class Candidate {
+    private final String path;
+    private final ObjectId blobId;
+    // loaded when the file is diffed
+    private RawText text;
+    // lines that are not attributed yet
+    private final List<Region> regions = new ArrayList<Region>();
+
+    Candidate(String path, ObjectId blobId) {
+      this.path = path;
+      this.blobId = blobId;
+    }
+
+    RawText text() throws IOException {
+      if (text == null) {
+        text = load(blobId);
+      }
+      return text;
+    }
+
+    List<Region> sortedRegions() {
+      Collections.sort(regions, BY_SOURCE_LINE);
+      return regions;
+    }
+  }
+
+  /**
+   * Range of lines of a version of a file ({@code sourceStart}), that are lines of the blamed file ({@code resultStart}).
+   */
+  private static class Region {
+    private final int resultStart;
+    private final int sourceStart;
+    private final int length;
+
+    Region(int resultStart, int sourceStart, int length) {
+      this.resultStart = resultStart;
+      this.sourceStart = sourceStart;
+      this.length = length;
+    }
+
+    Region slice(int fromSourceLine, int toSourceLine) {
+      return new Region(resultStart + fromSourceLine - sourceStart, fromSourceLine, toSourceLine - fromSourceLine);
+    }
+  }
+}
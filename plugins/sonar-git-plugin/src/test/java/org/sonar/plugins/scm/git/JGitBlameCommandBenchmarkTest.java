@@ -0,0 +1,76 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.scm.git;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Compares blame of all files in a single walk of history with blame of each file. Skipped by default, run it with
+ * {@code mvn test -Dtest=JGitBlameCommandBenchmarkTest -DenableBenchmarks=true}. Size of generated repository can be changed
+ * with properties {@code benchmarkFiles} and {@code benchmarkCommits}.
+ */
+public class JGitBlameCommandBenchmarkTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JGitBlameCommandBenchmarkTest.class);
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void benchmark() throws Exception {
+    Assume.assumeTrue("true".equals(System.getProperty("enableBenchmarks")));
+    int files = Integer.parseInt(System.getProperty("benchmarkFiles", "500"));
+    int commits = Integer.parseInt(System.getProperty("benchmarkCommits", "5000"));
+
+    long start = System.currentTimeMillis();
+    RandomGitRepository randomRepository = new RandomGitRepository(temp.newFolder(), files);
+    Git git = randomRepository.generate(commits);
+    // pack objects, as in real repositories
+    git.gc().call();
+    LOGGER.info(String.format("Repository with %d files and %d commits generated in %d ms", files, commits, System.currentTimeMillis() - start));
+
+    try {
+      ObjectId head = git.getRepository().resolve("HEAD");
+      List<String> paths = randomRepository.paths();
+
+      start = System.currentTimeMillis();
+      new JGitBlameEngine(git.getRepository(), RawTextComparator.WS_IGNORE_ALL).blame(head, paths);
+      LOGGER.info(String.format("%d files blamed in a single walk of history in %d ms", paths.size(), System.currentTimeMillis() - start));
+
+      start = System.currentTimeMillis();
+      for (String path : paths) {
+        git.blame().setTextComparator(RawTextComparator.WS_IGNORE_ALL).setStartCommit(head).setFilePath(path).call();
+      }
+      LOGGER.info(String.format("%d files blamed one by one in %d ms", paths.size(), System.currentTimeMillis() - start));
+    } finally {
+      git.getRepository().close();
+    }
+  }
+}
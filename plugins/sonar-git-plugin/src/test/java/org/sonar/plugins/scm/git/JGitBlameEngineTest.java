@@ -0,0 +1,97 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.scm.git;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JGitBlameEngineTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void same_result_as_blame_of_each_file() throws Exception {
+    RandomGitRepository randomRepository = new RandomGitRepository(temp.newFolder(), 20);
+    Git git = randomRepository.generate(100);
+    try {
+      ObjectId head = git.getRepository().resolve("HEAD");
+      List<String> paths = randomRepository.paths();
+
+      Map<String, RevCommit[]> result = new JGitBlameEngine(git.getRepository(), RawTextComparator.WS_IGNORE_ALL).blame(head, paths);
+
+      assertThat(result.keySet()).containsOnlyElementsOf(paths);
+      for (String path : paths) {
+        BlameResult expected = git.blame().setTextComparator(RawTextComparator.WS_IGNORE_ALL).setStartCommit(head).setFilePath(path).call();
+        RevCommit[] commits = result.get(path);
+        assertThat(commits).hasSize(expected.getResultContents().size());
+        for (int line = 0; line < commits.length; line++) {
+          assertThat(commits[line]).as(path + " line " + line).isEqualTo(expected.getSourceCommit(line));
+        }
+      }
+    } finally {
+      git.getRepository().close();
+    }
+  }
+
+  @Test
+  public void ignore_files_that_are_not_committed() throws Exception {
+    File dir = temp.newFolder();
+    RandomGitRepository randomRepository = new RandomGitRepository(dir, 4);
+    Git git = randomRepository.generate(10);
+    try {
+      ObjectId head = git.getRepository().resolve("HEAD");
+      String path = randomRepository.paths().get(0);
+
+      Map<String, RevCommit[]> result = new JGitBlameEngine(git.getRepository(), RawTextComparator.WS_IGNORE_ALL).blame(head, Arrays.asList(path, "src/Unknown.txt"));
+
+      assertThat(result.keySet()).containsOnly(path);
+    } finally {
+      git.getRepository().close();
+    }
+  }
+
+  @Test
+  public void no_files_to_blame() throws Exception {
+    RandomGitRepository randomRepository = new RandomGitRepository(temp.newFolder(), 4);
+    Git git = randomRepository.generate(2);
+    try {
+      ObjectId head = git.getRepository().resolve("HEAD");
+
+      assertThat(new JGitBlameEngine(git.getRepository(), RawTextComparator.WS_IGNORE_ALL).blame(head, Collections.<String>emptyList())).isEmpty();
+    } finally {
+      git.getRepository().close();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.scm.git;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates a local git repository with random changes on files. History contains a branch that is merged
+ * at the end. Even files are changed on the branch, odd files on master, so that merge does not conflict.
+ */
+class RandomGitRepository {
+
+  private final Random random = new Random(42);
+  private final Map<String, List<String>> contents = new HashMap<String, List<String>>();
+  private final List<String> paths = new ArrayList<String>();
+  private final File dir;
+  private int lineCounter = 0;
+
+  RandomGitRepository(File dir, int files) {
+    this.dir = dir;
+    for (int i = 0; i < files; i++) {
+      paths.add("src/dir" + (i % 10) + "/File" + i + ".txt");
+    }
+  }
+
+  List<String> paths() {
+    List<String> existingPaths = new ArrayList<String>();
+    for (String path : paths) {
+      if (new File(dir, path).exists()) {
+        existingPaths.add(path);
+      }
+    }
+    return existingPaths;
+  }
+
+  Git generate(int commits) throws IOException, GitAPIException {
+    Git git = Git.init().setDirectory(dir).call();
+    int branchStart = commits / 2;
+    int branchEnd = commits * 3 / 4;
+    for (int i = 0; i < branchStart; i++) {
+      commit(git, i, -1);
+    }
+    git.checkout().setCreateBranch(true).setName("branch").call();
+    for (int i = branchStart; i < branchEnd; i++) {
+      commit(git, i, 0);
+    }
+    git.checkout().setName("master").call();
+    reloadContents();
+    for (int i = branchEnd; i < commits; i++) {
+      commit(git, i, 1);
+    }
+    MergeResult merge = git.merge().include(git.getRepository().resolve("branch")).call();
+    if (!merge.getMergeStatus().isSuccessful()) {
+      throw new IllegalStateException("Fail to merge: " + merge.getMergeStatus());
+    }
+    return git;
+  }
+
+  private void commit(Git git, int index, int parity) throws IOException, GitAPIException {
+    int changedFiles = 1 + random.nextInt(Math.max(1, paths.size() / 5));
+    for (int i = 0; i < changedFiles; i++) {
+      int fileIndex = random.nextInt(paths.size() / 2) * 2;
+      if (parity >= 0) {
+        fileIndex += parity;
+      } else {
+        fileIndex += random.nextInt(2);
+      }
+      String path = paths.get(Math.min(fileIndex, paths.size() - 1));
+      List<String> lines = contents.get(path);
+      if (lines == null) {
+        lines = new ArrayList<String>();
+        contents.put(path, lines);
+      }
+      change(lines);
+      FileUtils.writeLines(new File(dir, path), lines);
+      git.add().addFilepattern(path).call();
+    }
+    String author = "author" + (index % 3);
+    git.commit().setMessage("commit " + index).setAuthor(author, author + "@sonarsource.com").call();
+  }
+
+  private void change(List<String> lines) {
+    int operations = 1 + random.nextInt(5);
+    for (int i = 0; i < operations; i++) {
+      int operation = random.nextInt(3);
+      if (operation == 0 || lines.isEmpty()) {
+        // trailing whitespaces must be ignored by blame
+        lines.add(random.nextInt(lines.size() + 1), "line " + (lineCounter++) + (random.nextBoolean() ? "  " : ""));
+      } else if (operation == 1) {
+        lines.remove(random.nextInt(lines.size()));
+      } else {
+        lines.set(random.nextInt(lines.size()), "changed line " + (lineCounter++));
+      }
+    }
+  }
+
+  private void reloadContents() throws IOException {
+    contents.clear();
+    for (String path : paths()) {
+      contents.put(path, new ArrayList<String>(FileUtils.readLines(new File(dir, path))));
+    }
+  }
+}
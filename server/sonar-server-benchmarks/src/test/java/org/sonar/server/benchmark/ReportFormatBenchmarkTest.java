@@ -0,0 +1,145 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.benchmark;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.batch.protocol.output.BinaryIssuesReader;
+import org.sonar.batch.protocol.output.BinaryIssuesWriter;
+import org.sonar.batch.protocol.output.ReportHelper;
+import org.sonar.batch.protocol.output.issue.ReportIssue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the JSON and binary formats of issues in analysis report, on a synthetic project
+ */
+public class ReportFormatBenchmarkTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("benchmarkReportFormat");
+  private static final int NUMBER_OF_FILES = 100000;
+  private static final int ISSUES_PER_FILE = 3;
+  private static final String[] RULES = {"S001", "S002", "S003", "S004", "S005", "S006", "S007", "S008"};
+  private static final String[] SEVERITIES = {"INFO", "MINOR", "MAJOR", "CRITICAL", "BLOCKER"};
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void benchmark() throws Exception {
+    long jsonSize = benchmarkJson();
+    long binarySize = benchmarkBinary();
+
+    LOGGER.info(String.format("Size of binary report is %d%% of JSON report", 100L * binarySize / jsonSize));
+    assertThat(binarySize).isLessThan(jsonSize);
+  }
+
+  private long benchmarkJson() throws Exception {
+    ReportHelper helper = ReportHelper.create(temp.newFolder());
+
+    long start = System.currentTimeMillis();
+    for (int fileId = 0; fileId < NUMBER_OF_FILES; fileId++) {
+      helper.saveIssues(fileId, newIssues(fileId));
+    }
+    long writeDuration = System.currentTimeMillis() - start;
+
+    start = System.currentTimeMillis();
+    long count = 0L;
+    for (int fileId = 0; fileId < NUMBER_OF_FILES; fileId++) {
+      for (ReportIssue issue : helper.getIssues(fileId)) {
+        count++;
+      }
+    }
+    long readDuration = System.currentTimeMillis() - start;
+    assertThat(count).isEqualTo(NUMBER_OF_FILES * ISSUES_PER_FILE);
+
+    long size = FileUtils.sizeOfDirectory(helper.reportRootDir());
+    log("JSON", writeDuration, readDuration, size);
+    return size;
+  }
+
+  private long benchmarkBinary() throws Exception {
+    File file = temp.newFile();
+
+    long start = System.currentTimeMillis();
+    BinaryIssuesWriter writer = new BinaryIssuesWriter(file);
+    for (int fileId = 0; fileId < NUMBER_OF_FILES; fileId++) {
+      writer.append(fileId, newIssues(fileId));
+    }
+    writer.close();
+    long writeDuration = System.currentTimeMillis() - start;
+
+    start = System.currentTimeMillis();
+    long count = 0L;
+    BinaryIssuesReader reader = new BinaryIssuesReader(file);
+    for (int fileId = 0; fileId < NUMBER_OF_FILES; fileId++) {
+      for (ReportIssue issue : reader.getIssues(fileId)) {
+        count++;
+      }
+    }
+    reader.close();
+    long readDuration = System.currentTimeMillis() - start;
+    assertThat(count).isEqualTo(NUMBER_OF_FILES * ISSUES_PER_FILE);
+
+    long size = file.length();
+    log("Binary", writeDuration, readDuration, size);
+    return size;
+  }
+
+  private void log(String format, long writeDuration, long readDuration, long size) {
+    long issues = NUMBER_OF_FILES * ISSUES_PER_FILE;
+    LOGGER.info(String.format("%s format: %d issues written in %d ms (%d issues/second), read in %d ms (%d issues/second), size is %d bytes",
+      format, issues, writeDuration, 1000L * issues / Math.max(1L, writeDuration), readDuration, 1000L * issues / Math.max(1L, readDuration), size));
+  }
+
+  private List<ReportIssue> newIssues(long fileId) {
+    List<ReportIssue> issues = new ArrayList<>();
+    for (int i = 0; i < ISSUES_PER_FILE; i++) {
+      int index = (int) (fileId + i);
+      issues.add(new ReportIssue()
+        .setKey("AU-" + fileId + "-" + i)
+        .setComponentBatchId(fileId)
+        .setRuleKey("squid", RULES[index % RULES.length])
+        .setSeverity(SEVERITIES[index % SEVERITIES.length])
+        .setStatus("OPEN")
+        .setLine(10 + 20 * i)
+        .setMessage("Refactor this method to reduce its complexity from " + (10 + i) + " to the 10 allowed")
+        .setChecksum("a1b2c3d4e5f6a7b8c9d0" + i)
+        .setDebt(10L)
+        .setEffortToFix(1.0)
+        .setAuthorLogin("developer" + (index % 50))
+        .setCreationDate(new Date(1420066800000L))
+        .setUpdateDate(new Date(1420066800000L))
+        .setTags(Arrays.asList("brain-overload"))
+        .setNew(i == 0));
+    }
+    return issues;
+  }
+}
@@ -22,7 +22,6 @@ package org.sonar.core.computation.dbcleaner;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.api.CoreProperties;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.TimeUtils;
@@ -72,7 +71,7 @@ public class ProjectCleaner implements ServerComponent {
     deleteIndexedIssuesBefore(idUuidPair.getUuid(), configuration.maxLiveDateOfClosedIssues());
 
     session.commit();
-    logProfiling(start, settings);
+    logProfiling(start);
     return this;
   }
 
@@ -82,13 +81,12 @@ public class ProjectCleaner implements ServerComponent {
     }
   }
 
-  private void logProfiling(long start, Settings settings) {
-    if (settings.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY)) {
-      long duration = System.currentTimeMillis() - start;
-      LOG.info("\n -------- Profiling for purge: " + TimeUtils.formatDuration(duration) + " --------\n");
-      profiler.dump(duration, LOG);
-      LOG.info("\n -------- End of profiling for purge --------\n");
-    }
+  private void logProfiling(long start) {
+    // purge can be longer than the analysis itself, so durations of tables are always logged
+    long duration = System.currentTimeMillis() - start;
+    LOG.info("\n -------- Profiling for purge: " + TimeUtils.formatDuration(duration) + " --------\n");
+    profiler.dump(duration, LOG);
+    LOG.info("\n -------- End of profiling for purge --------\n");
   }
 
   private void cleanHistoricalData(DbSession session, long resourceId, Settings settings) {
@@ -40,8 +40,8 @@ import java.util.Map;
  */
 public class ActivityIndex extends BaseIndex<Activity, ActivityDto, String> {
 
-  public ActivityIndex(ActivityNormalizer normalizer, SearchClient node) {
-    super(IndexDefinition.LOG, normalizer, node);
+  public ActivityIndex(ActivityNormalizer normalizer, SearchClient node, IndexQueue indexQueue) {
+    super(IndexDefinition.LOG, normalizer, node, indexQueue);
   }
 
   @Override
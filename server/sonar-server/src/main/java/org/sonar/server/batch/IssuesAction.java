@@ -21,6 +21,7 @@
 package org.sonar.server.batch;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.sonar.api.server.ws.Request;
@@ -42,10 +43,13 @@ import org.sonar.server.user.UserSession;
 import javax.annotation.Nullable;
 
 import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.Set;
 
 public class IssuesAction implements RequestHandler {
 
   private static final String PARAM_KEY = "key";
+  private static final String PARAM_COMPONENTS = "components";
 
   private final DbClient dbClient;
 
@@ -65,12 +69,20 @@ public class IssuesAction implements RequestHandler {
       .setRequired(true)
       .setDescription("Project or module key")
       .setExampleValue("org.codehaus.sonar:sonar");
+
+    action
+      .createParam(PARAM_COMPONENTS)
+      .setDescription("Comma-separated list of component keys. If set, only the issues of these components are returned. " +
+        "Used by incremental analysis to download only the issues of the files that are analyzed.")
+      .setSince("5.1")
+      .setExampleValue("org.codehaus.sonar:sonar-core:src/main/java/Foo.java,org.codehaus.sonar:sonar-core:src/main/java/Bar.java");
   }
 
   @Override
   public void handle(Request request, Response response) throws Exception {
     UserSession.get().checkGlobalPermission(GlobalPermissions.PREVIEW_EXECUTION);
     final String moduleKey = request.mandatoryParam(PARAM_KEY);
+    List<String> componentKeys = request.paramAsStrings(PARAM_COMPONENTS);
 
     response.stream().setMediaType(MimeTypes.JSON);
     PreviousIssueHelper previousIssueHelper = PreviousIssueHelper.create(new OutputStreamWriter(response.stream().output(), Charsets.UTF_8));
@@ -79,7 +91,8 @@ public class IssuesAction implements RequestHandler {
       ComponentDto moduleOrProject = dbClient.componentDao().getByKey(session, moduleKey);
       UserSession.get().checkComponentPermission(UserRole.USER, moduleKey);
 
-      BatchIssueResultHandler batchIssueResultHandler = new BatchIssueResultHandler(previousIssueHelper);
+      BatchIssueResultHandler batchIssueResultHandler = new BatchIssueResultHandler(previousIssueHelper,
+        componentKeys == null ? null : Sets.newHashSet(componentKeys));
       if (moduleOrProject.isRootProject()) {
         dbClient.issueDao().selectNonClosedIssuesByProjectUuid(session, moduleOrProject.uuid(), batchIssueResultHandler);
       } else {
@@ -94,14 +107,20 @@ public class IssuesAction implements RequestHandler {
 
   private static class BatchIssueResultHandler implements ResultHandler {
     private final PreviousIssueHelper previousIssueHelper;
+    private final Set<String> componentKeys;
+    private final BatchIssueFunction function = new BatchIssueFunction();
 
-    public BatchIssueResultHandler(PreviousIssueHelper previousIssueHelper) {
+    public BatchIssueResultHandler(PreviousIssueHelper previousIssueHelper, @Nullable Set<String> componentKeys) {
       this.previousIssueHelper = previousIssueHelper;
+      this.componentKeys = componentKeys;
     }
 
     @Override
     public void handleResult(ResultContext rc) {
-      previousIssueHelper.addIssue((BatchIssueDto) rc.getResultObject(), new BatchIssueFunction());
+      BatchIssueDto issue = (BatchIssueDto) rc.getResultObject();
+      if (componentKeys == null || componentKeys.contains(issue.getComponentKey())) {
+        previousIssueHelper.addIssue(issue, function);
+      }
     }
   }
 
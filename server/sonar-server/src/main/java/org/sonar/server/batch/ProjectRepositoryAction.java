@@ -20,7 +20,10 @@
 
 package org.sonar.server.batch;
 
+import com.google.common.base.Splitter;
+import com.google.common.collect.Maps;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.RequestHandler;
 import org.sonar.api.server.ws.Response;
@@ -28,11 +31,16 @@ import org.sonar.api.server.ws.WebService;
 import org.sonar.batch.protocol.input.ProjectRepository;
 import org.sonar.server.plugins.MimeTypes;
 
+import javax.annotation.Nullable;
+
+import java.util.Map;
+
 public class ProjectRepositoryAction implements RequestHandler {
 
   private static final String PARAM_KEY = "key";
   private static final String PARAM_PROFILE = "profile";
   private static final String PARAM_PREVIEW = "preview";
+  private static final String PARAM_DIGESTS = "digests";
 
   private final ProjectRepositoryLoader projectReferentialsLoader;
 
@@ -63,6 +71,11 @@ public class ProjectRepositoryAction implements RequestHandler {
       .setDescription("Preview mode or not")
       .setDefaultValue(false)
       .setBooleanPossibleValues();
+
+    action
+      .createParam(PARAM_DIGESTS)
+      .setDescription("Comma-separated list of digests of the sections already known by batch. Sections with the same digest are not returned.")
+      .setExampleValue("settings:2c5d1f4a86ea7d8c2f2e7b9dc5f8f6a1,qprofiles:8a1c6e5e6d2c4b1b9f0d6a5e2c1b4a3f");
   }
 
   @Override
@@ -71,8 +84,20 @@ public class ProjectRepositoryAction implements RequestHandler {
       .setModuleKey(request.mandatoryParam(PARAM_KEY))
       .setProfileName(request.param(PARAM_PROFILE))
       .setPreview(request.mandatoryParamAsBoolean(PARAM_PREVIEW)));
+    ref.computeDigests();
+    ref.removeUnchangedSections(parseDigests(request.param(PARAM_DIGESTS)));
     response.stream().setMediaType(MimeTypes.JSON);
     IOUtils.write(ref.toJson(), response.stream().output());
   }
 
+  private static Map<String, String> parseDigests(@Nullable String digests) {
+    Map<String, String> digestsBySection = Maps.newHashMap();
+    if (StringUtils.isNotBlank(digests)) {
+      for (String digest : Splitter.on(',').omitEmptyStrings().trimResults().split(digests)) {
+        digestsBySection.put(StringUtils.substringBefore(digest, ":"), StringUtils.substringAfter(digest, ":"));
+      }
+    }
+    return digestsBySection;
+  }
+
 }
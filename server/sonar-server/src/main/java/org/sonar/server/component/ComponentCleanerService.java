@@ -30,6 +30,7 @@ import org.sonar.core.purge.PurgeDao;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
 import org.sonar.server.issue.index.IssueIndexer;
+import org.sonar.server.measure.MeasureFilterCache;
 import org.sonar.server.source.index.SourceLineIndexer;
 
 public class ComponentCleanerService implements ServerComponent {
@@ -39,14 +40,16 @@ public class ComponentCleanerService implements ServerComponent {
   private final IssueAuthorizationIndexer issueAuthorizationIndexer;
   private final IssueIndexer issueIndexer;
   private final SourceLineIndexer sourceLineIndexer;
+  private final MeasureFilterCache measureFilterCache;
 
   public ComponentCleanerService(DbClient dbClient, PurgeDao purgeDao, IssueAuthorizationIndexer issueAuthorizationIndexer, IssueIndexer issueIndexer,
-    SourceLineIndexer sourceLineIndexer) {
+    SourceLineIndexer sourceLineIndexer, MeasureFilterCache measureFilterCache) {
     this.dbClient = dbClient;
     this.purgeDao = purgeDao;
     this.issueAuthorizationIndexer = issueAuthorizationIndexer;
     this.issueIndexer = issueIndexer;
     this.sourceLineIndexer = sourceLineIndexer;
+    this.measureFilterCache = measureFilterCache;
   }
 
   public void delete(String projectKey) {
@@ -58,6 +61,7 @@ public class ComponentCleanerService implements ServerComponent {
       }
       purgeDao.deleteResourceTree(new IdUuidPair(project.getId(), project.uuid()));
       dbSession.commit();
+      measureFilterCache.invalidate(project.getId());
 
       deleteFromIndices(project.uuid());
     } finally {
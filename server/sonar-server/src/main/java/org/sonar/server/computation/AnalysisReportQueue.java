@@ -20,6 +20,8 @@
 
 package org.sonar.server.computation;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.utils.System2;
 import org.sonar.core.computation.db.AnalysisReportDto;
@@ -39,12 +41,16 @@ import static org.sonar.core.computation.db.AnalysisReportDto.Status.PENDING;
 
 public class AnalysisReportQueue implements ServerComponent {
 
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisReportQueue.class);
+
   private final DbClient dbClient;
   private final System2 system2;
+  private final AnalysisReportScheduler scheduler;
 
-  public AnalysisReportQueue(DbClient dbClient, System2 system2) {
+  public AnalysisReportQueue(DbClient dbClient, System2 system2, AnalysisReportScheduler scheduler) {
     this.dbClient = dbClient;
     this.system2 = system2;
+    this.scheduler = scheduler;
   }
 
   /**
@@ -96,16 +102,41 @@ public class AnalysisReportQueue implements ServerComponent {
     }
   }
 
+  /**
+   * Synchronized so that the concurrent workers of the same server do not book two
+   * reports of the same project at the same time.
+   */
   @CheckForNull
-  public AnalysisReportDto pop() {
+  public synchronized AnalysisReportDto pop() {
     DbSession session = dbClient.openSession(false);
     try {
-      return dbClient.analysisReportDao().pop(session);
+      AnalysisReportDto report = dbClient.analysisReportDao().pop(session, scheduler);
+      if (report != null) {
+        scheduler.booked(report);
+        if (scheduler.isSkippingSupersededReports()) {
+          removeSupersededReports(session, report);
+        }
+      }
+      return report;
     } finally {
       MyBatis.closeQuietly(session);
     }
   }
 
+  /**
+   * The pending reports of the project that have been submitted before the booked one
+   * are not processed anymore.
+   */
+  private void removeSupersededReports(DbSession session, AnalysisReportDto bookedReport) {
+    for (AnalysisReportDto report : dbClient.analysisReportDao().selectByProjectKey(session, bookedReport.getProjectKey())) {
+      if (report.getStatus() == PENDING && report.getCreatedAt() <= bookedReport.getCreatedAt() && !report.getId().equals(bookedReport.getId())) {
+        LOG.info(String.format("Analysis report %d of project %s is superseded by report %d", report.getId(), report.getProjectKey(), bookedReport.getId()));
+        dbClient.analysisReportDao().delete(session, report.getId());
+      }
+    }
+    session.commit();
+  }
+
   public List<AnalysisReportDto> findByProjectKey(String projectKey) {
     DbSession session = dbClient.openSession(false);
     try {
@@ -0,0 +1,155 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.WildcardPattern;
+import org.sonar.core.computation.db.AnalysisReportDto;
+import org.sonar.server.computation.db.AnalysisReportDao;
+
+import javax.annotation.CheckForNull;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses the next report to process among the available reports of {@link AnalysisReportQueue}.
+ * By default reports are processed in the order of submission. The following properties
+ * change the order:
+ * <ul>
+ *   <li>{@link #PRIORITY_PROJECTS_PROPERTY}: the reports of the projects matching these key patterns are
+ *   processed before the other ones</li>
+ *   <li>{@link #FAIR_SHARE_PROPERTY}: the project that has waited the longest since its last processing is served first, so that
+ *   a project submitting many reports does not delay the other projects</li>
+ *   <li>{@link #SKIP_SUPERSEDED_PROPERTY}: only the most recent pending report of a project is processed, the older
+ *   ones are removed from the queue</li>
+ * </ul>
+ */
+public class AnalysisReportScheduler implements ServerComponent, AnalysisReportDao.ReportSelector {
+
+  public static final String PRIORITY_PROJECTS_PROPERTY = "sonar.computation.priorityProjects";
+  public static final String FAIR_SHARE_PROPERTY = "sonar.computation.fairShare";
+  public static final String SKIP_SUPERSEDED_PROPERTY = "sonar.computation.skipSupersededReports";
+
+  private final WildcardPattern[] priorityProjects;
+  private final boolean fairShare;
+  private final boolean skipSuperseded;
+
+  /**
+   * Sequence of the last booking of each project. Only used for fair share.
+   */
+  private final Map<String, Long> lastBookingByProject = Maps.newHashMap();
+  private long bookingSequence = 0L;
+
+  public AnalysisReportScheduler(Settings settings) {
+    this(WildcardPattern.create(settings.getStringArray(PRIORITY_PROJECTS_PROPERTY)),
+      settings.getBoolean(FAIR_SHARE_PROPERTY), settings.getBoolean(SKIP_SUPERSEDED_PROPERTY));
+  }
+
+  @VisibleForTesting
+  AnalysisReportScheduler(WildcardPattern[] priorityProjects, boolean fairShare, boolean skipSuperseded) {
+    this.priorityProjects = priorityProjects;
+    this.fairShare = fairShare;
+    this.skipSuperseded = skipSuperseded;
+  }
+
+  public boolean isSkippingSupersededReports() {
+    return skipSuperseded;
+  }
+
+  /**
+   * @param availableReports pending reports, sorted by submission date
+   */
+  @Override
+  @CheckForNull
+  public synchronized AnalysisReportDto select(List<AnalysisReportDto> availableReports) {
+    Map<String, ProjectReports> reportsByProject = Maps.newLinkedHashMap();
+    for (AnalysisReportDto report : availableReports) {
+      ProjectReports projectReports = reportsByProject.get(report.getProjectKey());
+      if (projectReports == null) {
+        projectReports = new ProjectReports(report, isPriority(report.getProjectKey()), lastBooking(report.getProjectKey()));
+        reportsByProject.put(report.getProjectKey(), projectReports);
+      }
+      projectReports.newest = report;
+    }
+
+    ProjectReports next = null;
+    for (ProjectReports projectReports : reportsByProject.values()) {
+      if (next == null || projectReports.isBefore(next)) {
+        next = projectReports;
+      }
+    }
+    if (next == null) {
+      return null;
+    }
+    return skipSuperseded ? next.newest : next.oldest;
+  }
+
+  /**
+   * Must be called when the report returned by {@link #select(java.util.List)} has been booked.
+   */
+  public synchronized void booked(AnalysisReportDto report) {
+    if (fairShare) {
+      bookingSequence++;
+      lastBookingByProject.put(report.getProjectKey(), bookingSequence);
+    }
+  }
+
+  private boolean isPriority(String projectKey) {
+    for (WildcardPattern pattern : priorityProjects) {
+      if (pattern.match(projectKey)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private long lastBooking(String projectKey) {
+    Long lastBooking = lastBookingByProject.get(projectKey);
+    return lastBooking == null ? 0L : lastBooking;
+  }
+
+  private class ProjectReports {
+    private final AnalysisReportDto oldest;
+    private final boolean priority;
+    private final long lastBooking;
+    private AnalysisReportDto newest;
+
+    private ProjectReports(AnalysisReportDto oldest, boolean priority, long lastBooking) {
+      this.oldest = oldest;
+      this.priority = priority;
+      this.lastBooking = lastBooking;
+    }
+
+    /**
+     * Projects are iterated in the order of their oldest pending report, so the
+     * submission date is the last criterion when nothing else differs.
+     */
+    private boolean isBefore(ProjectReports other) {
+      if (priority != other.priority) {
+        return priority;
+      }
+      return fairShare && lastBooking < other.lastBooking;
+    }
+  }
+}
@@ -23,65 +23,72 @@ package org.sonar.server.computation;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
-import org.apache.commons.io.IOUtils;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.issue.internal.FieldDiffs;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.Duration;
 import org.sonar.api.utils.KeyValueFormat;
-import org.sonar.batch.protocol.output.ReportHelper;
+import org.sonar.batch.protocol.output.ZippedReportReader;
 import org.sonar.batch.protocol.output.component.ReportComponent;
 import org.sonar.batch.protocol.output.component.ReportComponents;
 import org.sonar.batch.protocol.output.issue.ReportIssue;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.persistence.MyBatis;
 import org.sonar.server.computation.issue.IssueComputation;
+import org.sonar.server.db.DbClient;
 
 import javax.annotation.Nullable;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.Date;
 
 public class AnalysisReportService {
 
   private final IssueComputation issueComputation;
+  private final DbClient dbClient;
 
-  public AnalysisReportService(IssueComputation issueComputation) {
+  public AnalysisReportService(IssueComputation issueComputation, DbClient dbClient) {
     this.issueComputation = issueComputation;
+    this.dbClient = dbClient;
   }
 
-  public void digest(ComputationContext context) {
-    initComponents(context);
-    parseReport(context);
-  }
-
-  @VisibleForTesting
-  void initComponents(ComputationContext context) {
-    File file = new File(context.getReportDirectory(), "components.json");
-
-    try (InputStream resourcesStream = new FileInputStream(file)) {
-      String json = IOUtils.toString(resourcesStream);
-      ReportComponents reportComponents = ReportComponents.fromJson(json);
-      context.addResources(reportComponents);
-    } catch (IOException e) {
-      throw new IllegalStateException("Failed to read issues", e);
+  /**
+   * The zipped report is read from database and decompressed on the fly, without
+   * being extracted on disk.
+   */
+  public void digest(final ComputationContext context) {
+    DbSession session = dbClient.openSession(false);
+    try {
+      dbClient.analysisReportDao().readData(session, context.getReportDto().getId(), new Function<InputStream, Void>() {
+        @Override
+        public Void apply(InputStream zippedReport) {
+          digest(context, zippedReport);
+          return null;
+        }
+      });
+    } finally {
+      MyBatis.closeQuietly(session);
     }
-  }
-
-  private void parseReport(ComputationContext context) {
-    ReportHelper helper = ReportHelper.create(context.getReportDirectory());
-    ReportComponent root = helper.getComponents().root();
-    browseComponent(context, helper, root);
     issueComputation.afterReportProcessing();
   }
 
-  private void browseComponent(ComputationContext context, ReportHelper helper, ReportComponent component) {
-    Iterable<ReportIssue> reportIssues = helper.getIssues(component.batchId());
-    browseComponentIssues(context, component, reportIssues);
-    for (ReportComponent child : component.children()) {
-      browseComponent(context, helper, child);
-    }
+  @VisibleForTesting
+  void digest(final ComputationContext context, InputStream zippedReport) {
+    new ZippedReportReader().read(zippedReport, new ZippedReportReader.Visitor() {
+      @Override
+      public void visitComponents(ReportComponents components) {
+        context.addResources(components);
+      }
+
+      @Override
+      public void visitIssues(long componentBatchId, Iterable<ReportIssue> issues) {
+        ReportComponent component = context.getComponentByBatchId(componentBatchId);
+        if (component == null) {
+          throw new IllegalStateException(String.format("Issues refer to unknown component with batch id %d", componentBatchId));
+        }
+        browseComponentIssues(context, component, issues);
+      }
+    });
   }
 
   private void browseComponentIssues(final ComputationContext context, ReportComponent component, Iterable<ReportIssue> reportIssues) {
@@ -28,8 +28,9 @@ import org.sonar.core.computation.db.AnalysisReportDto;
 
 import javax.annotation.CheckForNull;
 
-import java.io.File;
+import java.util.ArrayDeque;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,14 +38,12 @@ public class ComputationContext {
 
   private final AnalysisReportDto reportDto;
   private final ComponentDto project;
-  private final File reportDirectory;
   private Map<Long, ReportComponent> components = new HashMap<>();
   private Date analysisDate;
 
-  public ComputationContext(AnalysisReportDto reportDto, ComponentDto project, File reportDir) {
+  public ComputationContext(AnalysisReportDto reportDto, ComponentDto project) {
     this.reportDto = reportDto;
     this.project = project;
-    this.reportDirectory = reportDir;
   }
 
   public AnalysisReportDto getReportDto() {
@@ -55,10 +54,6 @@ public class ComputationContext {
     return project;
   }
 
-  public File getReportDirectory() {
-    return reportDirectory;
-  }
-
   public void addResources(ReportComponents reportComponents) {
     analysisDate = reportComponents.analysisDate();
     addResource(reportComponents.root());
@@ -74,10 +69,16 @@ public class ComputationContext {
     return components;
   }
 
-  private void addResource(ReportComponent resource) {
-    this.components.put(resource.batchId(), resource);
-    for (ReportComponent childResource : resource.children()) {
-      addResource(childResource);
+  private void addResource(ReportComponent root) {
+    // iterative walk, so that stack does not depend on depth of tree
+    Deque<ReportComponent> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      ReportComponent resource = stack.pop();
+      this.components.put(resource.batchId(), resource);
+      for (ReportComponent childResource : resource.children()) {
+        stack.push(childResource);
+      }
     }
   }
 
@@ -41,22 +41,31 @@ public class ComputationThread implements Runnable {
 
   @Override
   public void run() {
+    processNextReport();
+  }
+
+  /**
+   * @return true if a report has been popped from queue, false if the queue is empty or can't be read
+   */
+  boolean processNextReport() {
     AnalysisReportDto report = null;
     try {
       report = queue.pop();
     } catch (Exception e) {
       LOG.error("Failed to pop the queue of analysis reports", e);
     }
-    if (report != null) {
-      try {
-        process(report);
-      } catch (Exception e) {
-        LOG.error(String.format(
-          "Failed to process analysis report %d of project %s", report.getId(), report.getProjectKey()), e);
-      } finally {
-        removeSilentlyFromQueue(report);
-      }
+    if (report == null) {
+      return false;
     }
+    try {
+      process(report);
+    } catch (Exception e) {
+      LOG.error(String.format(
+        "Failed to process analysis report %d of project %s", report.getId(), report.getProjectKey()), e);
+    } finally {
+      removeSilentlyFromQueue(report);
+    }
+    return true;
   }
 
   private void removeSilentlyFromQueue(AnalysisReportDto report) {
@@ -69,17 +78,30 @@ public class ComputationThread implements Runnable {
 
   private void process(AnalysisReportDto report) {
     ComponentContainer container = Platform.getInstance().getContainer();
-    ComponentContainer child = container.createChild();
+    ComponentContainer child = createDetachedChild(container);
     child.addSingletons(ComputationSteps.orderedStepClasses());
     child.addSingletons(ComputationComponents.nonStepComponents());
     child.startComponents();
     try {
       child.getComponentByType(ComputationService.class).process(report);
     } finally {
-      child.stopComponents();
-      // TODO not possible to have multiple children -> will be
-      // a problem when we will have multiple concurrent computation workers
+      // stopping the child also resets the child of the parent container
+      synchronized (container) {
+        child.stopComponents();
+      }
+    }
+  }
+
+  /**
+   * {@link ComponentContainer} supports only a single child, whereas each concurrent worker needs its own
+   * computation container. The child is immediately detached from the lifecycle of its parent, so that
+   * it can't be removed by another worker. It still resolves its dependencies from the parent.
+   */
+  private static ComponentContainer createDetachedChild(ComponentContainer container) {
+    synchronized (container) {
+      ComponentContainer child = container.createChild();
       container.removeChild();
+      return child;
     }
   }
 }
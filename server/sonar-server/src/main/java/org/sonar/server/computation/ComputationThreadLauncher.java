@@ -23,45 +23,72 @@ package org.sonar.server.computation;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.picocontainer.Startable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.platform.ServerStartHandler;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Launches the pool of workers that process the analysis reports of {@link AnalysisReportQueue}.
+ * Reports of different projects are processed concurrently. Reports of the same project are
+ * processed sequentially, as {@link AnalysisReportQueue#pop()} does not return a report of
+ * a project that is already being processed.
+ * <p/>
+ * An idle worker polls the queue every 10 seconds, but it is woken up as soon as a report
+ * is submitted (see {@link #startAnalysisTaskNow()}).
+ */
 public class ComputationThreadLauncher implements Startable, ServerComponent, ServerStartHandler {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ComputationThreadLauncher.class);
+
   public static final String THREAD_NAME_PREFIX = "computation-";
+  public static final String WORKERS_PROPERTY = "sonar.computation.workers";
+  static final int DEFAULT_WORKERS = 1;
 
   private final AnalysisReportQueue queue;
+  private final int workers;
   private final ScheduledExecutorService executorService;
+  private final Semaphore submittedReports = new Semaphore(0);
+  private volatile boolean stopped = false;
 
   private final long delayBetweenTasks;
   private final long delayForFirstStart;
   private final TimeUnit timeUnit;
 
-  public ComputationThreadLauncher(AnalysisReportQueue queue) {
-    this.queue = queue;
-    this.executorService = Executors.newSingleThreadScheduledExecutor(threadFactoryWithSpecificNameForLogging());
-
-    this.delayBetweenTasks = 10;
-    this.delayForFirstStart = 0;
-    this.timeUnit = TimeUnit.SECONDS;
+  public ComputationThreadLauncher(AnalysisReportQueue queue, Settings settings) {
+    this(queue, numberOfWorkers(settings), 0, 10, TimeUnit.SECONDS);
   }
 
   @VisibleForTesting
-  ComputationThreadLauncher(AnalysisReportQueue queue, long delayForFirstStart, long delayBetweenTasks, TimeUnit timeUnit) {
+  ComputationThreadLauncher(AnalysisReportQueue queue, int workers, long delayForFirstStart, long delayBetweenTasks, TimeUnit timeUnit) {
     this.queue = queue;
-    this.executorService = Executors.newSingleThreadScheduledExecutor(threadFactoryWithSpecificNameForLogging());
+    this.workers = workers;
+    this.executorService = Executors.newScheduledThreadPool(workers, threadFactoryWithSpecificNameForLogging());
 
     this.delayBetweenTasks = delayBetweenTasks;
     this.delayForFirstStart = delayForFirstStart;
     this.timeUnit = timeUnit;
   }
 
+  static int numberOfWorkers(Settings settings) {
+    int workers = settings.getInt(WORKERS_PROPERTY);
+    if (workers < 0) {
+      throw new IllegalArgumentException(String.format("Bad value of %s: %d", WORKERS_PROPERTY, workers));
+    }
+    if (workers == 0) {
+      workers = DEFAULT_WORKERS;
+    }
+    return workers;
+  }
+
   @Override
   public void start() {
     // do nothing because we want to wait for the server to finish startup
@@ -69,16 +96,56 @@ public class ComputationThreadLauncher implements Startable, ServerComponent, Se
 
   @Override
   public void stop() {
+    stopped = true;
+    // wake up the idle workers so that they terminate
+    submittedReports.release(workers);
     executorService.shutdown();
   }
 
+  /**
+   * Wakes up an idle worker, if any. Does not wait for the report to be processed.
+   */
   public void startAnalysisTaskNow() {
-    executorService.execute(new ComputationThread(queue));
+    submittedReports.release();
   }
 
   @Override
   public void onServerStart(Server server) {
-    executorService.scheduleAtFixedRate(new ComputationThread(queue), delayForFirstStart, delayBetweenTasks, timeUnit);
+    LOG.info(String.format("%d worker(s) started for the processing of analysis reports", workers));
+    for (int i = 0; i < workers; i++) {
+      executorService.schedule(new Worker(), delayForFirstStart, timeUnit);
+    }
+  }
+
+  @VisibleForTesting
+  int getWorkers() {
+    return workers;
+  }
+
+  /**
+   * Processes the reports as long as the queue is not empty, then waits for the
+   * submission of a new report or for the polling delay.
+   */
+  private class Worker implements Runnable {
+    private final ComputationThread computation = new ComputationThread(queue);
+
+    @Override
+    public void run() {
+      while (!stopped) {
+        if (!computation.processNextReport()) {
+          waitForNextReport();
+        }
+      }
+    }
+
+    private void waitForNextReport() {
+      try {
+        submittedReports.tryAcquire(delayBetweenTasks, timeUnit);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        stopped = true;
+      }
+    }
   }
 
   /**
@@ -21,10 +21,10 @@
 package org.sonar.server.computation.db;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.io.ByteStreams;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.core.computation.db.AnalysisReportDto;
 import org.sonar.core.computation.db.AnalysisReportMapper;
 import org.sonar.core.persistence.DaoComponent;
@@ -34,7 +34,6 @@ import org.sonar.core.persistence.DbSession;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.*;
@@ -45,6 +44,12 @@ import static org.sonar.core.computation.db.AnalysisReportDto.Status.WORKING;
 
 public class AnalysisReportDao implements DaoComponent {
 
+  /**
+   * Maximum number of times the selection of the next available report is done again when
+   * the report has been booked in the meantime by another worker.
+   */
+  private static final int MAX_POP_ATTEMPTS = 5;
+
   private System2 system2;
 
   public AnalysisReportDao() {
@@ -76,15 +81,58 @@ public class AnalysisReportDao implements DaoComponent {
     return mapper(session).selectById(id);
   }
 
+  /**
+   * Selects the report to book among the pending reports of the projects that do not have any
+   * other report being processed.
+   */
+  public interface ReportSelector {
+    /**
+     * @param availableReports the available reports, sorted by submission date. Never empty.
+     * @return one of the available reports, or null if none must be booked
+     */
+    @CheckForNull
+    AnalysisReportDto select(List<AnalysisReportDto> availableReports);
+  }
+
+  private static final ReportSelector OLDEST_FIRST = new ReportSelector() {
+    @Override
+    public AnalysisReportDto select(List<AnalysisReportDto> availableReports) {
+      return availableReports.get(0);
+    }
+  };
+
+  /**
+   * Books the oldest pending report of a project that does not have any other report being processed.
+   */
   @CheckForNull
   public AnalysisReportDto pop(DbSession session) {
-    List<Long> reportIds = mapper(session).selectAvailables(PENDING, WORKING);
-    if (reportIds.isEmpty()) {
-      return null;
-    }
+    return pop(session, OLDEST_FIRST);
+  }
+
+  /**
+   * Books the pending report chosen by the selector among the reports of the projects that do not
+   * have any other report being processed.
+   * If the report is booked concurrently by another worker, then the selection is done again, so
+   * that the reports of the project that has just been booked are excluded.
+   */
+  @CheckForNull
+  public AnalysisReportDto pop(DbSession session, ReportSelector selector) {
+    for (int attempt = 0; attempt < MAX_POP_ATTEMPTS; attempt++) {
+      List<AnalysisReportDto> availableReports = mapper(session).selectAvailables(PENDING, WORKING);
+      if (availableReports.isEmpty()) {
+        return null;
+      }
 
-    long reportId = reportIds.get(0);
-    return tryToPop(session, reportId);
+      AnalysisReportDto selectedReport = selector.select(availableReports);
+      if (selectedReport == null) {
+        return null;
+      }
+      AnalysisReportDto report = tryToPop(session, selectedReport.getId());
+      if (report != null) {
+        return report;
+      }
+    }
+    return null;
   }
 
   @VisibleForTesting
@@ -151,8 +199,11 @@ public class AnalysisReportDao implements DaoComponent {
     }
   }
 
-  @CheckForNull
-  public void selectAndDecompressToDir(DbSession session, long id, File toDir) {
+  /**
+   * Applies the function to the stream of zipped report data, if any. The stream is closed
+   * by this method when the function returns.
+   */
+  public <T> void readData(DbSession session, long id, Function<InputStream, T> function) {
     Connection connection = session.getConnection();
     InputStream stream = null;
     PreparedStatement ps = null;
@@ -165,14 +216,12 @@ public class AnalysisReportDao implements DaoComponent {
       if (rs.next()) {
         stream = rs.getBinaryStream(1);
         if (stream != null) {
-          ZipUtils.unzip(stream, toDir);
+          function.apply(stream);
         }
       }
       // TODO what to do if id not found or no stream ?
     } catch (SQLException e) {
       throw new IllegalStateException(String.format("Failed to read report '%d' in the database", id), e);
-    } catch (IOException e) {
-      throw new IllegalStateException(String.format("Failed to decompress report '%d'", id), e);
     } finally {
       IOUtils.closeQuietly(stream);
       DatabaseUtils.closeQuietly(rs);
@@ -0,0 +1,107 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Reads a single column of CSV data, as formatted by {@link org.apache.commons.csv.CSVFormat#DEFAULT}.
+ * Contrary to {@link org.apache.commons.csv.CSVParser}, the values of the other columns are skipped
+ * instead of being loaded in memory. That matters for the column "data" of table FILE_SOURCES, which contains
+ * source code, highlighting, symbols and duplications of each line.
+ */
+class CsvColumnParser {
+
+  private static final int QUOTE = '"';
+  private static final int DELIMITER = ',';
+  private static final int NO_CHAR = -2;
+
+  private final int columnIndex;
+
+  CsvColumnParser(int columnIndex) {
+    this.columnIndex = columnIndex;
+  }
+
+  /**
+   * Adds the value of the column of each record to the given list. Value is null if the record
+   * does not have such column. Empty lines are ignored.
+   */
+  void parse(Reader input, List<String> values) throws IOException {
+    Reader reader = new BufferedReader(input);
+    StringBuilder value = new StringBuilder();
+    int column = 0;
+    boolean emptyRecord = true;
+    boolean quoted = false;
+    int pending = NO_CHAR;
+    while (true) {
+      int c = pending != NO_CHAR ? pending : reader.read();
+      pending = NO_CHAR;
+      if (c == -1) {
+        break;
+      }
+      if (quoted) {
+        if (c == QUOTE) {
+          int next = reader.read();
+          if (next == QUOTE) {
+            // escaped quote
+            append(value, column, c);
+          } else {
+            quoted = false;
+            pending = next;
+          }
+        } else {
+          append(value, column, c);
+        }
+      } else if (c == QUOTE) {
+        quoted = true;
+        emptyRecord = false;
+      } else if (c == DELIMITER) {
+        column++;
+        emptyRecord = false;
+      } else if (c == '\r' || c == '\n') {
+        if (c == '\r') {
+          int next = reader.read();
+          pending = next == '\n' ? NO_CHAR : next;
+        }
+        if (!emptyRecord) {
+          values.add(column >= columnIndex ? value.toString() : null);
+        }
+        value.setLength(0);
+        column = 0;
+        emptyRecord = true;
+      } else {
+        append(value, column, c);
+        emptyRecord = false;
+      }
+    }
+    if (!emptyRecord) {
+      values.add(column >= columnIndex ? value.toString() : null);
+    }
+  }
+
+  private void append(StringBuilder value, int column, int c) {
+    if (column == columnIndex) {
+      value.append((char) c);
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.issue.internal.DefaultIssueComment;
+import org.sonar.api.issue.internal.FieldDiffs;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Duration;
+import org.sonar.server.util.cache.ObjectCodec;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.sonar.server.util.cache.Codecs.readDate;
+import static org.sonar.server.util.cache.Codecs.readDouble;
+import static org.sonar.server.util.cache.Codecs.readInteger;
+import static org.sonar.server.util.cache.Codecs.readLong;
+import static org.sonar.server.util.cache.Codecs.readString;
+import static org.sonar.server.util.cache.Codecs.writeDate;
+import static org.sonar.server.util.cache.Codecs.writeDouble;
+import static org.sonar.server.util.cache.Codecs.writeInteger;
+import static org.sonar.server.util.cache.Codecs.writeLong;
+import static org.sonar.server.util.cache.Codecs.writeString;
+
+/**
+ * Encodes all the fields of {@link DefaultIssue}, including changes and comments. Values of
+ * field diffs are encoded as strings.
+ */
+public class DefaultIssueCodec implements ObjectCodec<DefaultIssue> {
+
+  @Override
+  public void write(DefaultIssue issue, DataOutput output) throws IOException {
+    writeString(output, issue.key());
+    writeString(output, issue.componentUuid());
+    writeString(output, issue.componentKey());
+    writeLong(output, issue.componentId());
+    writeString(output, issue.moduleUuid());
+    writeString(output, issue.moduleUuidPath());
+    writeString(output, issue.projectUuid());
+    writeString(output, issue.projectKey());
+    RuleKey ruleKey = issue.ruleKey();
+    writeString(output, ruleKey != null ? ruleKey.repository() : null);
+    writeString(output, ruleKey != null ? ruleKey.rule() : null);
+    writeString(output, issue.language());
+    writeString(output, issue.severity());
+    output.writeBoolean(issue.manualSeverity());
+    writeString(output, issue.message());
+    writeInteger(output, issue.line());
+    writeDouble(output, issue.effortToFix());
+    writeLong(output, issue.debtInMinutes());
+    writeString(output, issue.status());
+    writeString(output, issue.resolution());
+    writeString(output, issue.reporter());
+    writeString(output, issue.assignee());
+    writeString(output, issue.checksum());
+    writeStringMap(output, issue.attributes());
+    writeString(output, issue.authorLogin());
+    writeString(output, issue.actionPlanKey());
+    writeStrings(output, issue.tags());
+    writeDate(output, issue.creationDate());
+    writeDate(output, issue.updateDate());
+    writeDate(output, issue.closeDate());
+    output.writeBoolean(issue.isNew());
+    output.writeBoolean(issue.isEndOfLife());
+    output.writeBoolean(issue.isOnDisabledRule());
+    output.writeBoolean(issue.isChanged());
+    output.writeBoolean(issue.mustSendNotifications());
+    writeLong(output, issue.selectedAt());
+    writeComments(output, issue.comments());
+    writeChanges(output, issue.currentChange(), issue.changes());
+  }
+
+  @Override
+  public DefaultIssue read(DataInput input) throws IOException {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(readString(input));
+    issue.setComponentUuid(readString(input));
+    issue.setComponentKey(readString(input));
+    issue.setComponentId(readLong(input));
+    issue.setModuleUuid(readString(input));
+    issue.setModuleUuidPath(readString(input));
+    issue.setProjectUuid(readString(input));
+    issue.setProjectKey(readString(input));
+    String ruleRepository = readString(input);
+    String rule = readString(input);
+    if (ruleRepository != null && rule != null) {
+      issue.setRuleKey(RuleKey.of(ruleRepository, rule));
+    }
+    issue.setLanguage(readString(input));
+    issue.setSeverity(readString(input));
+    issue.setManualSeverity(input.readBoolean());
+    issue.setMessage(readString(input));
+    issue.setLine(readInteger(input));
+    issue.setEffortToFix(readDouble(input));
+    Long debt = readLong(input);
+    issue.setDebt(debt != null ? Duration.create(debt) : null);
+    issue.setStatus(readString(input));
+    issue.setResolution(readString(input));
+    issue.setReporter(readString(input));
+    issue.setAssignee(readString(input));
+    issue.setChecksum(readString(input));
+    issue.setAttributes(readStringMap(input));
+    issue.setAuthorLogin(readString(input));
+    issue.setActionPlanKey(readString(input));
+    List<String> tags = readStrings(input);
+    if (tags != null) {
+      issue.setTags(tags);
+    }
+    issue.setCreationDate(readDate(input));
+    issue.setUpdateDate(readDate(input));
+    issue.setCloseDate(readDate(input));
+    issue.setNew(input.readBoolean());
+    issue.setEndOfLife(input.readBoolean());
+    issue.setOnDisabledRule(input.readBoolean());
+    issue.setChanged(input.readBoolean());
+    issue.setSendNotifications(input.readBoolean());
+    issue.setSelectedAt(readLong(input));
+    readComments(input, issue);
+    readChanges(input, issue);
+    return issue;
+  }
+
+  private static void writeStrings(DataOutput output, Collection<String> strings) throws IOException {
+    output.writeInt(strings.size());
+    for (String s : strings) {
+      writeString(output, s);
+    }
+  }
+
+  @CheckForNull
+  private static List<String> readStrings(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size == 0) {
+      return null;
+    }
+    List<String> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(readString(input));
+    }
+    return result;
+  }
+
+  private static void writeStringMap(DataOutput output, Map<String, String> map) throws IOException {
+    output.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      writeString(output, entry.getKey());
+      writeString(output, entry.getValue());
+    }
+  }
+
+  @CheckForNull
+  private static Map<String, String> readStringMap(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size == 0) {
+      return null;
+    }
+    Map<String, String> result = new HashMap<>(size);
+    for (int i = 0; i < size; i++) {
+      result.put(readString(input), readString(input));
+    }
+    return result;
+  }
+
+  private static void writeComments(DataOutput output, List<IssueComment> comments) throws IOException {
+    output.writeInt(comments.size());
+    for (IssueComment comment : comments) {
+      DefaultIssueComment c = (DefaultIssueComment) comment;
+      writeString(output, c.key());
+      writeString(output, c.issueKey());
+      writeString(output, c.userLogin());
+      writeString(output, c.markdownText());
+      writeDate(output, c.createdAt());
+      writeDate(output, c.updatedAt());
+      output.writeBoolean(c.isNew());
+    }
+  }
+
+  private static void readComments(DataInput input, DefaultIssue issue) throws IOException {
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      DefaultIssueComment comment = new DefaultIssueComment()
+        .setKey(readString(input))
+        .setIssueKey(readString(input))
+        .setUserLogin(readString(input))
+        .setMarkdownText(readString(input))
+        .setCreatedAt(readDate(input))
+        .setUpdatedAt(readDate(input))
+        .setNew(input.readBoolean());
+      issue.addComment(comment);
+    }
+  }
+
+  /**
+   * The current change is usually also referenced in the list of all changes. References are kept
+   * when decoding.
+   */
+  private static void writeChanges(DataOutput output, @Nullable FieldDiffs currentChange, List<FieldDiffs> changes) throws IOException {
+    output.writeBoolean(currentChange != null);
+    if (currentChange != null) {
+      writeFieldDiffs(output, currentChange);
+    }
+    output.writeInt(changes.size());
+    for (FieldDiffs change : changes) {
+      boolean isCurrentChange = change == currentChange;
+      output.writeBoolean(isCurrentChange);
+      if (!isCurrentChange) {
+        writeFieldDiffs(output, change);
+      }
+    }
+  }
+
+  private static void readChanges(DataInput input, DefaultIssue issue) throws IOException {
+    FieldDiffs currentChange = null;
+    if (input.readBoolean()) {
+      currentChange = readFieldDiffs(input);
+      issue.setCurrentChange(currentChange);
+    }
+    int size = input.readInt();
+    List<FieldDiffs> changes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      changes.add(input.readBoolean() ? currentChange : readFieldDiffs(input));
+    }
+    issue.setChanges(changes.isEmpty() ? null : changes);
+  }
+
+  private static void writeFieldDiffs(DataOutput output, FieldDiffs diffs) throws IOException {
+    writeString(output, diffs.issueKey());
+    writeString(output, diffs.userLogin());
+    writeDate(output, diffs.creationDate());
+    output.writeInt(diffs.diffs().size());
+    for (Map.Entry<String, FieldDiffs.Diff> entry : diffs.diffs().entrySet()) {
+      writeString(output, entry.getKey());
+      writeString(output, toString(entry.getValue().oldValue()));
+      writeString(output, toString(entry.getValue().newValue()));
+    }
+  }
+
+  private static FieldDiffs readFieldDiffs(DataInput input) throws IOException {
+    FieldDiffs diffs = new FieldDiffs()
+      .setIssueKey(readString(input))
+      .setUserLogin(readString(input))
+      .setCreationDate(readDate(input));
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      diffs.setDiff(readString(input), readString(input), readString(input));
+    }
+    return diffs;
+  }
+
+  @CheckForNull
+  private static String toString(@Nullable Serializable value) {
+    return value != null ? value.toString() : null;
+  }
+}
@@ -34,11 +34,16 @@ import java.io.IOException;
  */
 public class IssueCache extends DiskCache<DefaultIssue> {
 
+  /**
+   * Issues of small projects are not written on disk
+   */
+  static final int MEMORY_THRESHOLD = 4 * 1024 * 1024;
+
   public IssueCache(TempFolder tempFolder, System2 system2) throws IOException {
-    super(tempFolder.newFile("issues", ".dat"), system2);
+    super(tempFolder.newFile("issues", ".dat"), system2, new DefaultIssueCodec(), MEMORY_THRESHOLD);
   }
 
   IssueCache(File file, System2 system2) {
-    super(file, system2);
+    super(file, system2, new DefaultIssueCodec(), MEMORY_THRESHOLD);
   }
 }
@@ -21,10 +21,8 @@ package org.sonar.server.computation.issue;
 
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
-import org.apache.commons.io.IOUtils;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.sonar.core.source.db.FileSourceDto;
 import org.sonar.server.db.DbClient;
 
@@ -101,22 +99,25 @@ public class SourceLinesCache {
   }
 
   class FileDataParser implements Function<Reader, Void> {
+    // only the column of authors is read, other fields are not loaded in memory
+    private final CsvColumnParser csvParser = new CsvColumnParser(FileSourceDto.CSV_INDEX_SCM_AUTHOR);
+
     @Override
     public Void apply(Reader input) {
-      CSVParser csvParser = null;
       try {
-        csvParser = new CSVParser(input, CSVFormat.DEFAULT);
         authors.clear();
-        for (CSVRecord csvRecord : csvParser) {
-          // do not keep all fields in memory
-          String author = csvRecord.get(FileSourceDto.CSV_INDEX_SCM_AUTHOR);
-          authors.add(author);
+        csvParser.parse(input, authors);
+        // the same authors are repeated on many lines
+        Interner<String> interner = Interners.newStrongInterner();
+        for (int index = 0; index < authors.size(); index++) {
+          String author = authors.get(index);
+          if (author != null) {
+            authors.set(index, interner.intern(author));
+          }
         }
         return null;
       } catch (Exception e) {
         throw new IllegalStateException("Fail to parse CSV data", e);
-      } finally {
-        IOUtils.closeQuietly(csvParser);
       }
     }
   }
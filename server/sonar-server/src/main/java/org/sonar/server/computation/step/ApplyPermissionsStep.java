@@ -22,17 +22,24 @@ package org.sonar.server.computation.step;
 
 import org.sonar.server.computation.ComputationContext;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
+import org.sonar.server.user.ProjectPermissionCache;
 
 public class ApplyPermissionsStep implements ComputationStep {
 
   private final IssueAuthorizationIndexer indexer;
+  private final ProjectPermissionCache projectPermissionCache;
 
-  public ApplyPermissionsStep(IssueAuthorizationIndexer indexer) {
+  public ApplyPermissionsStep(IssueAuthorizationIndexer indexer, ProjectPermissionCache projectPermissionCache) {
     this.indexer = indexer;
+    this.projectPermissionCache = projectPermissionCache;
   }
 
+  /**
+   * Default permissions of new projects are granted by the batch
+   */
   @Override
   public void execute(ComputationContext context) {
+    projectPermissionCache.invalidate();
     indexer.index();
   }
 
@@ -40,6 +40,7 @@ public class ComputationSteps {
       IndexComponentsStep.class,
       PurgeDatastoresStep.class,
       InvalidateBatchCacheStep.class,
+      InvalidateMeasureFilterCacheStep.class,
 
       // ES indexing is done after all db changes
       ApplyPermissionsStep.class,
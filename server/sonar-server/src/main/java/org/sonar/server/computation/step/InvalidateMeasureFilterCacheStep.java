@@ -17,37 +17,25 @@
  * along with this program; if not, write to the Free Software Foundation,
  * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
  */
-package org.sonar.server.util;
+package org.sonar.server.computation.step;
 
-import com.google.common.base.Throwables;
-import org.apache.commons.io.IOUtils;
+import org.sonar.server.computation.ComputationContext;
+import org.sonar.server.measure.MeasureFilterCache;
 
-import java.io.EOFException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
+public class InvalidateMeasureFilterCacheStep implements ComputationStep {
+  private final MeasureFilterCache measureFilterCache;
 
-public class ObjectInputStreamIterator<E> extends CloseableIterator<E> {
-
-  private ObjectInputStream stream;
-
-  public ObjectInputStreamIterator(InputStream stream) throws IOException {
-    this.stream = new ObjectInputStream(stream);
+  public InvalidateMeasureFilterCacheStep(MeasureFilterCache measureFilterCache) {
+    this.measureFilterCache = measureFilterCache;
   }
 
   @Override
-  protected E doNext() {
-    try {
-      return (E) stream.readObject();
-    } catch (EOFException e) {
-      return null;
-    } catch (Exception e) {
-      throw Throwables.propagate(e);
-    }
+  public void execute(ComputationContext context) {
+    measureFilterCache.invalidate(context.getProject().getId());
   }
 
   @Override
-  protected void doClose() {
-    IOUtils.closeQuietly(stream);
+  public String getDescription() {
+    return "Invalidate measure filter cache";
   }
 }
@@ -24,6 +24,7 @@ import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.RequestHandler;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.System2;
 import org.sonar.api.utils.text.JsonWriter;
 import org.sonar.core.computation.db.AnalysisReportDto;
 import org.sonar.server.computation.AnalysisReportQueue;
@@ -31,22 +32,26 @@ import org.sonar.server.computation.AnalysisReportQueue;
 import java.util.List;
 
 import static org.sonar.api.utils.DateUtils.timeToDate;
+import static org.sonar.core.computation.db.AnalysisReportDto.Status.PENDING;
+import static org.sonar.core.computation.db.AnalysisReportDto.Status.WORKING;
 
 /**
  * @since 5.0
  */
 public class QueueWsAction implements ComputationWsAction, RequestHandler {
   private final AnalysisReportQueue queue;
+  private final System2 system2;
 
-  public QueueWsAction(AnalysisReportQueue queue) {
+  public QueueWsAction(AnalysisReportQueue queue, System2 system2) {
     this.queue = queue;
+    this.system2 = system2;
   }
 
   @Override
   public void define(WebService.NewController controller) {
     controller
       .createAction("queue")
-      .setDescription("List all the active analysis reports")
+      .setDescription("List all the active analysis reports, with the number of pending reports and the waiting time of the oldest one (in milliseconds)")
       .setSince("5.0")
       .setInternal(true)
       .setHandler(this);
@@ -57,11 +62,31 @@ public class QueueWsAction implements ComputationWsAction, RequestHandler {
     List<AnalysisReportDto> reports = queue.all();
 
     JsonWriter json = response.newJsonWriter().beginObject();
+    writeStatistics(reports, json);
     writeReports(reports, json);
     json.endObject();
     json.close();
   }
 
+  private void writeStatistics(List<AnalysisReportDto> reports, JsonWriter json) {
+    int pending = 0;
+    int working = 0;
+    Long oldestSubmission = null;
+    for (AnalysisReportDto report : reports) {
+      if (report.getStatus() == PENDING) {
+        pending++;
+        if (oldestSubmission == null || report.getCreatedAt() < oldestSubmission) {
+          oldestSubmission = report.getCreatedAt();
+        }
+      } else if (report.getStatus() == WORKING) {
+        working++;
+      }
+    }
+    json.prop("pending", pending);
+    json.prop("working", working);
+    json.prop("maxWaitingTime", oldestSubmission == null ? 0L : Math.max(0L, system2.now() - oldestSubmission));
+  }
+
   private void writeReports(List<AnalysisReportDto> reports, JsonWriter json) {
     json.name("reports").beginArray();
     for (AnalysisReportDto report : reports) {
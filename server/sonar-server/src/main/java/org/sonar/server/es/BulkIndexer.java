@@ -19,9 +19,11 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequestBuilder;
@@ -36,14 +38,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.server.util.ProgressLogger;
 
+import javax.annotation.Nullable;
+
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Helper to bulk requests in an efficient way :
  * <ul>
  *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
+ *   <li>bulk requests are sent by background threads, so that the caller can prepare the next bulk
+ *   while the previous ones are processed by Elasticsearch. The number of bulks in flight is bounded:
+ *   {@link #add(ActionRequest)} blocks when the limit is reached.</li>
+ *   <li>the size of bulks decreases when Elasticsearch is slow to answer, and increases back to the
+ *   configured size when it's fast again</li>
+ *   <li>failed requests, for example rejected because Elasticsearch is overloaded, are sent again</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
  * </ul>
@@ -54,15 +69,47 @@ public class BulkIndexer implements Startable {
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
 
+  /**
+   * Bulks are sent sequentially, but the caller does not wait for the response
+   * of the current bulk to prepare the next one.
+   */
+  static final int DEFAULT_CONCURRENT_REQUESTS = 1;
+
+  /**
+   * Large indexing populates an index from scratch, so the order of bulks does not matter
+   */
+  static final int LARGE_CONCURRENT_REQUESTS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+  static final int MAX_ATTEMPTS = 3;
+  private static final long RETRY_DELAY_MS = 500L;
+
+  /**
+   * Size of bulks is divided by two when a bulk lasts more than {@link #SLOW_BULK_MS}, and multiplied by two
+   * when it lasts less than {@link #FAST_BULK_MS}. It can't exceed the flush size.
+   */
+  private static final long SLOW_BULK_MS = 2000L;
+  private static final long FAST_BULK_MS = 500L;
+  private static final long MIN_FLUSH_SIZE_DIVISOR = 8L;
+
   private final EsClient client;
   private final String indexName;
   private boolean large = false;
   private boolean refresh = true;
   private long flushByteSize = FLUSH_BYTE_SIZE;
+  private Integer concurrentRequests = null;
   private BulkRequestBuilder bulkRequest = null;
   private Map<String, Object> largeInitialSettings = null;
 
+  private ExecutorService executor = null;
+  private Semaphore inFlightBulks = null;
+  private int maxInFlightBulks = 0;
+  private final AtomicLong currentFlushByteSize = new AtomicLong(FLUSH_BYTE_SIZE);
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
   private final AtomicLong counter = new AtomicLong(0L);
+  private final AtomicLong bulkCounter = new AtomicLong(0L);
+  private final AtomicLong retryCounter = new AtomicLong(0L);
+  private final AtomicLong bulkDurationMs = new AtomicLong(0L);
   private final ProgressLogger progress;
 
   public BulkIndexer(EsClient client, String indexName) {
@@ -75,6 +122,7 @@ public class BulkIndexer implements Startable {
   /**
    * Large indexing is an heavy operation that populates an index generally from scratch. Replicas and
    * automatic refresh are disabled during bulk indexing and lucene segments are optimized at the end.
+   * Bulks are sent concurrently.
    */
 
   public BulkIndexer setLarge(boolean b) {
@@ -95,6 +143,20 @@ public class BulkIndexer implements Startable {
    */
   public BulkIndexer setFlushByteSize(long l) {
     this.flushByteSize = l;
+    this.currentFlushByteSize.set(l);
+    return this;
+  }
+
+  /**
+   * Maximum number of bulks sent to Elasticsearch without waiting for their response. Zero means that
+   * bulks are sent synchronously by the thread calling {@link #add(ActionRequest)}.
+   * Default value is {@link #DEFAULT_CONCURRENT_REQUESTS}, or {@link #LARGE_CONCURRENT_REQUESTS}
+   * for large indexing.
+   */
+  public BulkIndexer setConcurrentRequests(int i) {
+    Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
+    Preconditions.checkArgument(i >= 0, "Number of concurrent requests must be positive or zero: " + i);
+    this.concurrentRequests = i;
     return this;
   }
 
@@ -120,42 +182,132 @@ public class BulkIndexer implements Startable {
 
       updateSettings(bulkSettings);
     }
+    maxInFlightBulks = computeMaxInFlightBulks(large, concurrentRequests);
+    if (maxInFlightBulks > 0) {
+      inFlightBulks = new Semaphore(maxInFlightBulks);
+      executor = Executors.newFixedThreadPool(maxInFlightBulks,
+        new ThreadFactoryBuilder().setNameFormat(String.format("BulkIndexer[%s]-%%d", indexName)).setDaemon(true).build());
+    } else {
+      inFlightBulks = null;
+    }
     bulkRequest = client.prepareBulk();
+    currentFlushByteSize.set(flushByteSize);
+    failure.set(null);
     counter.set(0L);
+    bulkCounter.set(0L);
+    retryCounter.set(0L);
+    bulkDurationMs.set(0L);
     progress.start();
   }
 
+  /**
+   * Failures of bulks are not thrown by this method but by {@link #stop()}, which must be called
+   * in any case to restore index settings and to release threads.
+   */
   public void add(ActionRequest request) {
+    if (failure.get() != null) {
+      // indexing already failed, error is reported by stop()
+      return;
+    }
     bulkRequest.request().add(request);
     counter.getAndIncrement();
-    if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
-      executeBulk(bulkRequest);
+    if (bulkRequest.request().estimatedSizeInBytes() >= currentFlushByteSize.get()) {
+      BulkRequestBuilder bulk = bulkRequest;
       bulkRequest = client.prepareBulk();
+      try {
+        submitBulk(bulk);
+      } catch (RuntimeException e) {
+        failure.compareAndSet(null, e);
+      }
     }
   }
 
   @Override
   public void stop() {
     try {
-      if (bulkRequest.numberOfActions() > 0) {
-        executeBulk(bulkRequest);
+      if (failure.get() == null && bulkRequest.numberOfActions() > 0) {
+        submitBulk(bulkRequest);
       }
+      awaitInFlightBulks();
+    } catch (RuntimeException e) {
+      failure.compareAndSet(null, e);
     } finally {
       progress.stop();
+      if (executor != null) {
+        executor.shutdown();
+        executor = null;
+      }
     }
+    try {
+      checkFailure();
+      LOGGER.debug(String.format("%d requests sent to index %s in %d bulks (%d ms). %d requests retried.",
+        counter.get(), indexName, bulkCounter.get(), bulkDurationMs.get(), retryCounter.get()));
 
-    if (refresh) {
-      client.prepareRefresh(indexName).get();
+      if (refresh) {
+        client.prepareRefresh(indexName).get();
+      }
+      if (large) {
+        // optimize lucene segments before re-applying replicas:
+        // http://www.elasticsearch.org/blog/performance-considerations-elasticsearch-indexing/
+        client.prepareOptimize(indexName).get();
+      }
+    } finally {
+      bulkRequest = null;
+      if (large) {
+        // revert index settings, even if indexing failed
+        updateSettings(largeInitialSettings);
+      }
     }
-    if (large) {
-      // optimize lucene segments and revert index settings
-      // Optimization must be done before re-applying replicas:
-      // http://www.elasticsearch.org/blog/performance-considerations-elasticsearch-indexing/
-      client.prepareOptimize(indexName).get();
+  }
+
+  /**
+   * Number of requests added since startup
+   */
+  public long getRequestCount() {
+    return counter.get();
+  }
 
-      updateSettings(largeInitialSettings);
+  /**
+   * Number of bulks sent to Elasticsearch since startup, including retries
+   */
+  public long getBulkCount() {
+    return bulkCounter.get();
+  }
+
+  /**
+   * Number of requests that failed and were sent again
+   */
+  public long getRetriedRequestCount() {
+    return retryCounter.get();
+  }
+
+  /**
+   * Cumulated duration of bulks, in milliseconds
+   */
+  public long getBulkDurationMs() {
+    return bulkDurationMs.get();
+  }
+
+  /**
+   * Number of bulks currently sent to Elasticsearch and waiting for response
+   */
+  public int getInFlightBulkCount() {
+    Semaphore semaphore = inFlightBulks;
+    return semaphore == null ? 0 : maxInFlightBulks - semaphore.availablePermits();
+  }
+
+  /**
+   * Size of the next bulk. It's lower than the flush size when Elasticsearch is slow.
+   */
+  public long getCurrentFlushByteSize() {
+    return currentFlushByteSize.get();
+  }
+
+  private static int computeMaxInFlightBulks(boolean large, @Nullable Integer concurrentRequests) {
+    if (concurrentRequests != null) {
+      return concurrentRequests;
     }
-    bulkRequest = null;
+    return large ? LARGE_CONCURRENT_REQUESTS : DEFAULT_CONCURRENT_REQUESTS;
   }
 
   private void updateSettings(Map<String, Object> settings) {
@@ -164,38 +316,120 @@ public class BulkIndexer implements Startable {
     req.get();
   }
 
-  private void executeBulk(BulkRequestBuilder bulkRequest) {
-    List<ActionRequest> retries = Lists.newArrayList();
-    BulkResponse response = bulkRequest.get();
-
-    for (BulkItemResponse item : response.getItems()) {
-      if (item.isFailed()) {
-        ActionRequest retry = bulkRequest.request().requests().get(item.getItemId());
-        retries.add(retry);
+  private void submitBulk(final BulkRequestBuilder bulk) {
+    if (executor == null) {
+      executeBulk(bulk);
+      return;
+    }
+    try {
+      // back-pressure: wait for a bulk to be completed if too many are in flight
+      inFlightBulks.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for bulk requests on index " + indexName, e);
+    }
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          executeBulk(bulk);
+        } catch (RuntimeException e) {
+          failure.compareAndSet(null, e);
+        } finally {
+          inFlightBulks.release();
+        }
       }
+    });
+  }
+
+  private void awaitInFlightBulks() {
+    if (inFlightBulks != null) {
+      inFlightBulks.acquireUninterruptibly(maxInFlightBulks);
+      inFlightBulks.release(maxInFlightBulks);
     }
+  }
 
-    if (!retries.isEmpty()) {
+  private void checkFailure() {
+    RuntimeException e = failure.get();
+    if (e != null) {
+      throw new IllegalStateException("Fail to execute bulk requests on index " + indexName, e);
+    }
+  }
+
+  private void executeBulk(BulkRequestBuilder bulk) {
+    BulkRequestBuilder attempt = bulk;
+    for (int attemptIndex = 1; attemptIndex <= MAX_ATTEMPTS; attemptIndex++) {
+      BulkResponse response = executeAndAdaptFlushSize(attempt);
+      List<ActionRequest> retries = failedRequests(attempt, response);
+      if (retries.isEmpty()) {
+        if (attemptIndex > 1) {
+          LOGGER.info("New index attempt succeeded");
+        }
+        return;
+      }
+      if (attemptIndex == MAX_ATTEMPTS) {
+        logFailures(response);
+        return;
+      }
       LOGGER.warn(String.format("%d index requests failed. Trying again.", retries.size()));
-      BulkRequestBuilder retryBulk = client.prepareBulk();
+      retryCounter.addAndGet(retries.size());
+      waitBeforeRetry(attemptIndex);
+      attempt = client.prepareBulk();
       for (ActionRequest retry : retries) {
-        retryBulk.request().add(retry);
+        attempt.request().add(retry);
       }
-      BulkResponse retryBulkResponse = retryBulk.get();
-      if (retryBulkResponse.hasFailures()) {
-        LOGGER.error("New attempt to index documents failed");
-        for (int index = 0; index < retryBulkResponse.getItems().length; index++) {
-          BulkItemResponse item = retryBulkResponse.getItems()[index];
-          if (item.isFailed()) {
-            StringBuilder sb = new StringBuilder();
-            String msg = sb.append("\n[").append(index)
-              .append("]: index [").append(item.getIndex()).append("], type [").append(item.getType()).append("], id [").append(item.getId())
-              .append("], message [").append(item.getFailureMessage()).append("]").toString();
-            LOGGER.error(msg);
-          }
-        }
-      } else {
-        LOGGER.info("New index attempt succeeded");
+    }
+  }
+
+  private BulkResponse executeAndAdaptFlushSize(BulkRequestBuilder bulk) {
+    long start = System.currentTimeMillis();
+    BulkResponse response = bulk.get();
+    long duration = System.currentTimeMillis() - start;
+    bulkCounter.incrementAndGet();
+    bulkDurationMs.addAndGet(duration);
+    adaptFlushByteSize(duration);
+    return response;
+  }
+
+  @VisibleForTesting
+  void adaptFlushByteSize(long bulkDurationMs) {
+    long current = currentFlushByteSize.get();
+    if (bulkDurationMs > SLOW_BULK_MS) {
+      long minFlushByteSize = Math.max(1L, flushByteSize / MIN_FLUSH_SIZE_DIVISOR);
+      currentFlushByteSize.compareAndSet(current, Math.max(minFlushByteSize, current / 2));
+    } else if (bulkDurationMs < FAST_BULK_MS && current < flushByteSize) {
+      currentFlushByteSize.compareAndSet(current, Math.min(flushByteSize, current * 2));
+    }
+  }
+
+  private static List<ActionRequest> failedRequests(BulkRequestBuilder bulk, BulkResponse response) {
+    List<ActionRequest> failures = Lists.newArrayList();
+    for (BulkItemResponse item : response.getItems()) {
+      if (item.isFailed()) {
+        failures.add(bulk.request().requests().get(item.getItemId()));
+      }
+    }
+    return failures;
+  }
+
+  private static void waitBeforeRetry(int attemptIndex) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MS * attemptIndex);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void logFailures(BulkResponse response) {
+    LOGGER.error("New attempt to index documents failed");
+    for (int index = 0; index < response.getItems().length; index++) {
+      BulkItemResponse item = response.getItems()[index];
+      if (item.isFailed()) {
+        StringBuilder sb = new StringBuilder();
+        String msg = sb.append("\n[").append(index)
+          .append("]: index [").append(item.getIndex()).append("], type [").append(item.getType()).append("], id [").append(item.getId())
+          .append("], message [").append(item.getFailureMessage()).append("]").toString();
+        LOGGER.error(msg);
       }
     }
   }
@@ -55,6 +55,9 @@ public class MeasureFilter {
   // sort
   private MeasureFilterSort sort = new MeasureFilterSort();
 
+  // maximum number of rows, all rows are returned if null
+  private Integer limit = null;
+
   public String getBaseResourceKey() {
     return baseResourceKey;
   }
@@ -179,6 +182,20 @@ public class MeasureFilter {
     return sort;
   }
 
+  /**
+   * Only the first rows, according to sort, are displayed. The limit is applied by the web app
+   * after permissions are checked, so it is not applied to the rows returned by {@link MeasureFilterExecutor}.
+   */
+  public MeasureFilter setLimit(@Nullable Integer i) {
+    this.limit = i;
+    return this;
+  }
+
+  @CheckForNull
+  public Integer getLimit() {
+    return limit;
+  }
+
   public boolean isEmpty() {
     return resourceQualifiers.isEmpty() && resourceScopes.isEmpty() && StringUtils.isEmpty(baseResourceKey) && !userFavourites;
   }
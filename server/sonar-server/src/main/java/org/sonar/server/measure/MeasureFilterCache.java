@@ -0,0 +1,239 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rows of the measure filters that were recently executed. Rows are loaded before permissions
+ * are verified by the webapp, so they are shared by all users.
+ * <p/>
+ * Rows of filters on a base resource are invalidated when one of the projects they belong to is analyzed or deleted.
+ * Rows of the other filters are invalidated when any project is analyzed or deleted, as new projects can match them.
+ * Invalidated entries are evicted immediately.
+ * <p/>
+ * The cache is bounded by the total number of rows, as the memory used by an entry depends on its number of rows.
+ * The least recently used entries are evicted when the cache is full. Filters that return more than
+ * a tenth of the maximum number of rows are not cached. Guava 10 does not support weighted caches, so the bound is
+ * implemented on top of a {@link LinkedHashMap} in access order.
+ */
+public class MeasureFilterCache implements ServerComponent {
+
+  public static final String MAX_ROWS_PROPERTY = "sonar.measureFilters.cacheMaxRows";
+  static final int DEFAULT_MAX_ROWS = 100000;
+  private static final int MAX_ROWS_RATIO_PER_ENTRY = 10;
+
+  /**
+   * Criteria applied by the webapp on the rows returned by the executor, so they do not change the cached rows
+   */
+  private static final Set<String> WEBAPP_CRITERIA = ImmutableSet.of("page", "pageSize", "limit");
+
+  private final int maxRows;
+  private final int maxRowsPerEntry;
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final Map<Long, Long> versionsByProjectId = Maps.newHashMap();
+  private long version = 0L;
+  private long rows = 0L;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public MeasureFilterCache(Settings settings) {
+    this(maxRows(settings));
+  }
+
+  @VisibleForTesting
+  MeasureFilterCache(int maxRows) {
+    this.maxRows = maxRows;
+    this.maxRowsPerEntry = maxRows / MAX_ROWS_RATIO_PER_ENTRY;
+  }
+
+  private static int maxRows(Settings settings) {
+    if (!settings.hasKey(MAX_ROWS_PROPERTY)) {
+      return DEFAULT_MAX_ROWS;
+    }
+    int size = settings.getInt(MAX_ROWS_PROPERTY);
+    if (size < 0) {
+      throw new IllegalArgumentException(String.format("Bad value of %s: %d", MAX_ROWS_PROPERTY, size));
+    }
+    return size;
+  }
+
+  /**
+   * Filters on favourites are not cached, as they depend on the user and on his changes of favourites.
+   * Filters on age of snapshots are not cached either, as they depend on the current date.
+   */
+  boolean isCacheable(Map<String, Object> filterMap, MeasureFilter filter) {
+    return maxRows > 0 && !filter.isOnFavourites() && !filterMap.containsKey("ageMaxDays") && !filterMap.containsKey("ageMinDays");
+  }
+
+  static String key(Map<String, Object> filterMap) {
+    SortedMap<String, String> sorted = Maps.newTreeMap();
+    for (Map.Entry<String, Object> entry : filterMap.entrySet()) {
+      if (!WEBAPP_CRITERIA.contains(entry.getKey())) {
+        sorted.put(entry.getKey(), MeasureFilterFactory.toString(entry.getValue()));
+      }
+    }
+    return sorted.toString();
+  }
+
+  /**
+   * Must be read before executing the filter, then given to {@link #put(String, List, long, boolean)}.
+   */
+  synchronized long version() {
+    return version;
+  }
+
+  @CheckForNull
+  synchronized List<MeasureFilterRow> get(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null && isUpToDate(entry)) {
+      hits.incrementAndGet();
+      return entry.rows;
+    }
+    if (entry != null) {
+      remove(key);
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * @param version the value of {@link #version()} before the execution of the filter. Rows are not kept
+   *                if a project was analyzed in the meantime.
+   * @param onBaseResource rows depend only on the projects they belong to
+   */
+  synchronized void put(String key, List<MeasureFilterRow> rows, long version, boolean onBaseResource) {
+    if (version != this.version || weight(rows) > maxRowsPerEntry) {
+      return;
+    }
+    Map<Long, Long> projectVersions = null;
+    if (onBaseResource && !rows.isEmpty()) {
+      projectVersions = Maps.newHashMap();
+      for (MeasureFilterRow row : rows) {
+        projectVersions.put(row.getResourceRootId(), projectVersion(row.getResourceRootId()));
+      }
+    }
+    remove(key);
+    entries.put(key, new Entry(ImmutableList.copyOf(rows), version, projectVersions));
+    this.rows += weight(rows);
+    evictLeastRecentlyUsed();
+  }
+
+  /**
+   * Called when the analysis of a project is processed, or when a project is deleted
+   */
+  public synchronized void invalidate(long projectId) {
+    version++;
+    versionsByProjectId.put(projectId, projectVersion(projectId) + 1);
+    Iterator<Entry> it = entries.values().iterator();
+    while (it.hasNext()) {
+      Entry entry = it.next();
+      if (!isUpToDate(entry)) {
+        it.remove();
+        rows -= weight(entry.rows);
+      }
+    }
+  }
+
+  public long hits() {
+    return hits.get();
+  }
+
+  public long misses() {
+    return misses.get();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  synchronized long rows() {
+    return rows;
+  }
+
+  private void remove(String key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      rows -= weight(entry.rows);
+    }
+  }
+
+  private void evictLeastRecentlyUsed() {
+    Iterator<Entry> it = entries.values().iterator();
+    while (rows > maxRows && it.hasNext()) {
+      Entry entry = it.next();
+      it.remove();
+      rows -= weight(entry.rows);
+    }
+  }
+
+  /**
+   * Empty results count as one row, so that the number of entries is bounded too
+   */
+  private static int weight(List<MeasureFilterRow> rows) {
+    return Math.max(1, rows.size());
+  }
+
+  private boolean isUpToDate(Entry entry) {
+    if (entry.projectVersions == null) {
+      return entry.version == version;
+    }
+    for (Map.Entry<Long, Long> projectVersion : entry.projectVersions.entrySet()) {
+      if (projectVersion(projectVersion.getKey()) != projectVersion.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long projectVersion(long projectId) {
+    Long projectVersion = versionsByProjectId.get(projectId);
+    return projectVersion != null ? projectVersion : 0L;
+  }
+
+  private static class Entry {
+    private final List<MeasureFilterRow> rows;
+    private final long version;
+    // null if rows depend on all the projects
+    private final Map<Long, Long> projectVersions;
+
+    Entry(List<MeasureFilterRow> rows, long version, @Nullable Map<Long, Long> projectVersions) {
+      this.rows = rows;
+      this.version = version;
+      this.projectVersions = projectVersions;
+    }
+  }
+}
@@ -27,6 +27,7 @@ import org.sonar.api.ServerComponent;
 import org.sonar.core.profiling.Profiling;
 import org.sonar.core.profiling.Profiling.Level;
 import org.sonar.core.profiling.StopWatch;
+import org.sonar.server.exceptions.BadRequestException;
 
 import javax.annotation.Nullable;
 
@@ -39,27 +40,43 @@ public class MeasureFilterEngine implements ServerComponent {
 
   private final MeasureFilterFactory factory;
   private final MeasureFilterExecutor executor;
+  private final MeasureFilterCache cache;
   private final Profiling profiling;
 
-  public MeasureFilterEngine(MeasureFilterFactory factory, MeasureFilterExecutor executor, Profiling profiling) {
+  public MeasureFilterEngine(MeasureFilterFactory factory, MeasureFilterExecutor executor, MeasureFilterCache cache, Profiling profiling) {
     this.executor = executor;
     this.factory = factory;
+    this.cache = cache;
     this.profiling = profiling;
   }
 
   public MeasureFilterResult execute(Map<String, Object> filterMap, @Nullable Long userId) {
     StopWatch watch = profiling.start("measures", Level.BASIC);
     StopWatch sqlWatch = null;
+    boolean fromCache = false;
     MeasureFilterResult result = new MeasureFilterResult();
     MeasureFilterContext context = new MeasureFilterContext();
     context.setUserId(userId);
     context.setData(String.format("{%s}", Joiner.on('|').withKeyValueSeparator("=").join(filterMap)));
     try {
       MeasureFilter filter = factory.create(filterMap);
-      sqlWatch = profiling.start("sql", Level.FULL);
-      List<MeasureFilterRow> rows = executor.execute(filter, context);
+      String cacheKey = cache.isCacheable(filterMap, filter) ? MeasureFilterCache.key(filterMap) : null;
+      List<MeasureFilterRow> rows = cacheKey != null ? cache.get(cacheKey) : null;
+      if (rows == null) {
+        long cacheVersion = cache.version();
+        sqlWatch = profiling.start("sql", Level.FULL);
+        rows = executor.execute(filter, context);
+        if (cacheKey != null) {
+          cache.put(cacheKey, rows, cacheVersion, filter.getBaseResourceKey() != null);
+        }
+      } else {
+        fromCache = true;
+      }
       result.setRows(rows);
 
+    } catch (BadRequestException e) {
+      // invalid request, for example an invalid limit
+      throw e;
     } catch (NumberFormatException e) {
       result.setError(MeasureFilterResult.Error.VALUE_SHOULD_BE_A_NUMBER);
       LOG.debug("Value selected for the metric should be a number: " + context);
@@ -70,16 +87,19 @@ public class MeasureFilterEngine implements ServerComponent {
       if (sqlWatch != null) {
         sqlWatch.stop(context.getSql());
       }
-      watch.stop(log(context, result));
+      watch.stop(log(context, result, fromCache));
     }
     return result;
   }
 
-  private String log(MeasureFilterContext context, MeasureFilterResult result) {
+  private String log(MeasureFilterContext context, MeasureFilterResult result, boolean fromCache) {
     StringBuilder log = new StringBuilder();
     log.append(SystemUtils.LINE_SEPARATOR);
     log.append("request: ").append(context.getData()).append(SystemUtils.LINE_SEPARATOR);
     log.append(" result: ").append(result.toString());
+    if (fromCache) {
+      log.append(" from cache (").append(cache.hits()).append(" hits, ").append(cache.misses()).append(" misses)");
+    }
     return log.toString();
   }
 
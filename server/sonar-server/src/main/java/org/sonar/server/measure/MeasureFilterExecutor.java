@@ -85,6 +85,7 @@ public class MeasureFilterExecutor implements ServerComponent {
     valid &= !(filter.isOnFavourites() && context.getUserId() == null);
     valid &= validateMeasureConditions(filter);
     valid &= validateSort(filter);
+    valid &= filter.getLimit() == null || filter.getLimit() > 0;
     return valid;
   }
 
@@ -31,6 +31,7 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.System2;
+import org.sonar.server.exceptions.BadRequestException;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -71,9 +72,27 @@ public class MeasureFilterFactory implements ServerComponent {
     fillDateConditions(filter, properties);
     fillSorting(filter, properties);
     fillMeasureConditions(properties, filter);
+    filter.setLimit(toLimit((String) properties.get("limit")));
     return filter;
   }
 
+  @CheckForNull
+  private static Integer toLimit(@Nullable String s) {
+    if (s == null) {
+      return null;
+    }
+    int limit;
+    try {
+      limit = Integer.parseInt(s);
+    } catch (NumberFormatException e) {
+      limit = -1;
+    }
+    if (limit <= 0) {
+      throw new BadRequestException("Limit of measure filter must be a positive integer: " + s);
+    }
+    return limit;
+  }
+
   private void fillDateConditions(MeasureFilter filter, Map<String, Object> properties) {
     String fromDate = (String) properties.get("fromDate");
     if (fromDate != null) {
@@ -88,6 +88,15 @@ class MeasureFilterSort {
     return metric != null && metric.getKey().equals(CoreMetrics.ALERT_STATUS_KEY);
   }
 
+  /**
+   * Numeric measures and dates are compared in the same way by all databases, so rows
+   * can be sorted by the SQL request. Texts depend on database collation and alerts
+   * are not sorted alphabetically, so they are sorted programmatically.
+   */
+  boolean isSortedByDatabase() {
+    return isOnNumericMeasure() || isOnDate();
+  }
+
   boolean isAsc() {
     return asc;
   }
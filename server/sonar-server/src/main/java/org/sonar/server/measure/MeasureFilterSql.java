@@ -104,9 +104,20 @@ class MeasureFilterSql {
       condition.appendSqlCondition(sb, index);
     }
 
+    if (filter.sort().isSortedByDatabase()) {
+      appendOrderBy(sb);
+    }
+
     return sb.toString();
   }
 
+  private void appendOrderBy(StringBuilder sb) {
+    // null values are always the last ones, whatever the direction
+    String column = filter.sort().column();
+    sb.append(" ORDER BY CASE WHEN ").append(column).append(" IS NULL THEN 1 ELSE 0 END, ");
+    sb.append(column).append(filter.sort().isAsc() ? " ASC" : " DESC");
+  }
+
   private void appendResourceConditions(StringBuilder sb) {
     sb.append(" s.status='P' AND s.islast=").append(database.getDialect().getTrueSqlValue());
     if (context.getBaseSnapshot() == null) {
@@ -200,7 +211,9 @@ class MeasureFilterSql {
     while (rs.next()) {
       rows.add(rowProcessor.fetch(rs));
     }
-
+    if (filter.sort().isSortedByDatabase()) {
+      return rows;
+    }
     return rowProcessor.sort(rows, filter.sort().isAsc());
   }
 
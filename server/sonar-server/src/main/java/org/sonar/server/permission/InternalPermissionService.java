@@ -34,6 +34,7 @@ import org.sonar.server.db.DbClient;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
+import org.sonar.server.user.ProjectPermissionCache;
 import org.sonar.server.user.UserSession;
 
 import javax.annotation.CheckForNull;
@@ -59,13 +60,15 @@ public class InternalPermissionService implements ServerComponent {
   private final PermissionFacade permissionFacade;
   private final PermissionFinder finder;
   private final IssueAuthorizationIndexer issueAuthorizationIndexer;
+  private final ProjectPermissionCache projectPermissionCache;
 
   public InternalPermissionService(DbClient dbClient, PermissionFacade permissionFacade, PermissionFinder finder,
-    IssueAuthorizationIndexer issueAuthorizationIndexer) {
+    IssueAuthorizationIndexer issueAuthorizationIndexer, ProjectPermissionCache projectPermissionCache) {
     this.dbClient = dbClient;
     this.permissionFacade = permissionFacade;
     this.finder = finder;
     this.issueAuthorizationIndexer = issueAuthorizationIndexer;
+    this.projectPermissionCache = projectPermissionCache;
   }
 
   public List<String> globalPermissions() {
@@ -276,6 +279,7 @@ public class InternalPermissionService implements ServerComponent {
   }
 
   private void indexProjectPermissions() {
+    projectPermissionCache.invalidate();
     issueAuthorizationIndexer.index();
   }
 }
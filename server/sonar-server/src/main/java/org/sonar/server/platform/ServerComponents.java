@@ -89,6 +89,7 @@ import org.sonar.server.component.db.ComponentDao;
 import org.sonar.server.component.db.SnapshotDao;
 import org.sonar.server.component.ws.*;
 import org.sonar.server.computation.AnalysisReportQueue;
+import org.sonar.server.computation.AnalysisReportScheduler;
 import org.sonar.server.computation.AnalysisReportQueueCleaner;
 import org.sonar.server.computation.ComputationThreadLauncher;
 import org.sonar.server.computation.db.AnalysisReportDao;
@@ -127,6 +128,7 @@ import org.sonar.server.issue.notification.*;
 import org.sonar.server.issue.ws.*;
 import org.sonar.server.language.ws.LanguageWs;
 import org.sonar.server.language.ws.ListAction;
+import org.sonar.server.measure.MeasureFilterCache;
 import org.sonar.server.measure.MeasureFilterEngine;
 import org.sonar.server.measure.MeasureFilterExecutor;
 import org.sonar.server.measure.MeasureFilterFactory;
@@ -428,6 +430,7 @@ class ServerComponents {
     pico.addComponent(MeasuresDao.class, false);
     pico.addSingleton(MeasureFilterFactory.class);
     pico.addSingleton(MeasureFilterExecutor.class);
+    pico.addSingleton(MeasureFilterCache.class);
     pico.addSingleton(MeasureFilterEngine.class);
     pico.addSingleton(DefaultMetricFinder.class);
     pico.addSingleton(ServerLifecycleNotifier.class);
@@ -492,6 +495,7 @@ class ServerComponents {
 
     // permissions
     pico.addSingleton(PermissionFacade.class);
+    pico.addSingleton(ProjectPermissionCache.class);
     pico.addSingleton(InternalPermissionService.class);
     pico.addSingleton(InternalPermissionTemplateService.class);
     pico.addSingleton(PermissionFinder.class);
@@ -636,6 +640,7 @@ class ServerComponents {
     pico.addSingleton(FileDesignWidget.class);
 
     // Compute engine
+    pico.addSingleton(AnalysisReportScheduler.class);
     pico.addSingleton(AnalysisReportQueue.class);
     pico.addSingleton(ComputationThreadLauncher.class);
     pico.addSingleton(ComputationWebService.class);
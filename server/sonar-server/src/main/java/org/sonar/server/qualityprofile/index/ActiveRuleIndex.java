@@ -44,8 +44,8 @@ import java.util.Map;
 
 public class ActiveRuleIndex extends BaseIndex<ActiveRule, ActiveRuleDto, ActiveRuleKey> {
 
-  public ActiveRuleIndex(ActiveRuleNormalizer normalizer, SearchClient node) {
-    super(IndexDefinition.ACTIVE_RULE, normalizer, node);
+  public ActiveRuleIndex(ActiveRuleNormalizer normalizer, SearchClient node, IndexQueue indexQueue) {
+    super(IndexDefinition.ACTIVE_RULE, normalizer, node, indexQueue);
   }
 
   @Override
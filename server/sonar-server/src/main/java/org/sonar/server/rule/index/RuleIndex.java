@@ -59,6 +59,7 @@ import org.sonar.server.rule.Rule;
 import org.sonar.server.search.BaseIndex;
 import org.sonar.server.search.IndexDefinition;
 import org.sonar.server.search.IndexField;
+import org.sonar.server.search.IndexQueue;
 import org.sonar.server.search.QueryContext;
 import org.sonar.server.search.Result;
 import org.sonar.server.search.SearchClient;
@@ -106,8 +107,8 @@ public class RuleIndex extends BaseIndex<Rule, RuleDto, RuleKey> {
         }
       }));
 
-  public RuleIndex(RuleNormalizer normalizer, SearchClient client) {
-    super(IndexDefinition.RULE, normalizer, client);
+  public RuleIndex(RuleNormalizer normalizer, SearchClient client, IndexQueue indexQueue) {
+    super(IndexDefinition.RULE, normalizer, client, indexQueue);
   }
 
   @Override
@@ -63,11 +63,20 @@ public abstract class BaseIndex<DOMAIN, DTO extends Dto<KEY>, KEY extends Serial
   private final SearchClient client;
   private final BaseNormalizer<DTO, KEY> normalizer;
   private final IndexDefinition indexDefinition;
+  private final IndexQueue indexQueue;
 
   protected BaseIndex(IndexDefinition indexDefinition, BaseNormalizer<DTO, KEY> normalizer, SearchClient client) {
+    this(indexDefinition, normalizer, client, null);
+  }
+
+  /**
+   * @param indexQueue the queue that indexes the documents, if they are indexed when {@link org.sonar.core.persistence.DbSession} is committed
+   */
+  protected BaseIndex(IndexDefinition indexDefinition, BaseNormalizer<DTO, KEY> normalizer, SearchClient client, @Nullable IndexQueue indexQueue) {
     this.normalizer = normalizer;
     this.client = client;
     this.indexDefinition = indexDefinition;
+    this.indexQueue = indexQueue;
   }
 
   @Override
@@ -98,7 +107,14 @@ public abstract class BaseIndex<DOMAIN, DTO extends Dto<KEY>, KEY extends Serial
     // nothing to do
   }
 
+  /**
+   * Client to read the index. It waits for the indexing of the commits of the current thread, so that
+   * callers read their own writes when indexing is asynchronous.
+   */
   public SearchClient getClient() {
+    if (indexQueue != null) {
+      indexQueue.waitForIndex();
+    }
     return client;
   }
 
@@ -111,7 +127,7 @@ public abstract class BaseIndex<DOMAIN, DTO extends Dto<KEY>, KEY extends Serial
 
       private void fillQueue() {
         try {
-          SearchScrollRequestBuilder esRequest = client.prepareSearchScroll(scrollId)
+          SearchScrollRequestBuilder esRequest = getClient().prepareSearchScroll(scrollId)
             .setScroll(TimeValue.timeValueMinutes(3));
           Collections.addAll(hits, esRequest.get().getHits().getHits());
         } catch (Exception e) {
@@ -172,7 +188,7 @@ public abstract class BaseIndex<DOMAIN, DTO extends Dto<KEY>, KEY extends Serial
 
   @Override
   public IndexStat getIndexStat() {
-    CountRequestBuilder countRequest = client.prepareCount(this.getIndexName())
+    CountRequestBuilder countRequest = getClient().prepareCount(this.getIndexName())
       .setTypes(this.getIndexType())
       .setQuery(QueryBuilders.matchAllQuery());
     CountResponse response = countRequest.get();
@@ -190,7 +206,7 @@ public abstract class BaseIndex<DOMAIN, DTO extends Dto<KEY>, KEY extends Serial
   @Override
   @CheckForNull
   public Date getLastSynchronization(Map<String, String> params) {
-    SearchRequestBuilder request = client.prepareSearch(this.getIndexName())
+    SearchRequestBuilder request = getClient().prepareSearch(this.getIndexName())
       .setTypes(this.getIndexType())
       .setQuery(QueryBuilders.filteredQuery(
         QueryBuilders.matchAllQuery(),
@@ -408,7 +424,7 @@ public abstract class BaseIndex<DOMAIN, DTO extends Dto<KEY>, KEY extends Serial
   @CheckForNull
   @Override
   public DOMAIN getNullableByKey(KEY key) {
-    GetRequestBuilder request = client.prepareGet()
+    GetRequestBuilder request = getClient().prepareGet()
       .setType(this.getIndexType())
       .setIndex(this.getIndexName())
       .setId(this.getKeyValue(key))
@@ -428,7 +444,7 @@ public abstract class BaseIndex<DOMAIN, DTO extends Dto<KEY>, KEY extends Serial
       return Collections.emptyList();
     }
     List<DOMAIN> results = new ArrayList<DOMAIN>();
-    MultiGetRequestBuilder request = client.prepareMultiGet()
+    MultiGetRequestBuilder request = getClient().prepareMultiGet()
       .setPreference("_local");
     for (KEY key : keys) {
       request.add(new MultiGetRequest
@@ -475,7 +491,7 @@ public abstract class BaseIndex<DOMAIN, DTO extends Dto<KEY>, KEY extends Serial
   }
 
   public Long countAll() {
-    return client.prepareCount(this.getIndexName())
+    return getClient().prepareCount(this.getIndexName())
       .setTypes(this.getIndexType())
       .get().getCount();
   }
@@ -483,7 +499,7 @@ public abstract class BaseIndex<DOMAIN, DTO extends Dto<KEY>, KEY extends Serial
   public Map<String, Long> countByField(IndexField indexField, FilterBuilder filter) {
     Map<String, Long> counts = new HashMap<String, Long>();
 
-    SearchRequestBuilder request = client.prepareSearch(this.getIndexName())
+    SearchRequestBuilder request = getClient().prepareSearch(this.getIndexName())
       .setTypes(this.getIndexType())
       .setQuery(QueryBuilders.filteredQuery(
         QueryBuilders.matchAllQuery(),
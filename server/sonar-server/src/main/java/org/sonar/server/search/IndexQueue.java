@@ -19,6 +19,9 @@
  */
 package org.sonar.server.search;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder;
@@ -28,20 +31,47 @@ import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
+import org.picocontainer.Startable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
 import org.sonar.api.platform.ComponentContainer;
 import org.sonar.core.cluster.WorkQueue;
+import org.sonar.server.search.action.DeleteKey;
+import org.sonar.server.search.action.DeleteNestedItem;
 import org.sonar.server.search.action.IndexAction;
+import org.sonar.server.search.action.InsertDto;
+import org.sonar.server.search.action.UpsertDto;
+import org.sonar.server.search.action.UpsertNestedItem;
+
+import javax.annotation.CheckForNull;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
-public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
+/**
+ * Applies to Elasticsearch the actions enqueued on {@link org.sonar.core.persistence.DbSession} when the
+ * session is committed. The actions of a commit are sent in a single bulk request, after dropping the
+ * upserts of DTOs that are overridden by a later upsert of the same document.
+ * <p/>
+ * By default the actions are applied synchronously. When {@link #ASYNC_PROPERTY} is true, they are applied
+ * in background by a single thread, in the order of the commits. At most {@link #MAX_PENDING_COMMITS_PROPERTY}
+ * commits can wait for indexing, further commits are blocked until the lag decreases. Indexes wait for the
+ * commits of the current thread before reading (see {@link BaseIndex#getClient()}), so that a thread reads its own
+ * writes. Indexing failures are thrown to the thread that committed, when it reads the index or commits again.
+ * This state is dropped at the end of each HTTP request (see {@link #clearThreadCommits()}).
+ */
+public class IndexQueue implements ServerComponent, Startable, WorkQueue<IndexAction<?>> {
+
+  public static final String ASYNC_PROPERTY = "sonar.search.asyncIndexing";
+  public static final String MAX_PENDING_COMMITS_PROPERTY = "sonar.search.asyncIndexing.maxPendingCommits";
+  static final int DEFAULT_MAX_PENDING_COMMITS = 100;
 
   private final SearchClient searchClient;
   private final ComponentContainer container;
@@ -50,9 +80,53 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
 
   private static final Integer CONCURRENT_NORMALIZATION_FACTOR = 1;
 
-  public IndexQueue(SearchClient searchClient, ComponentContainer container) {
+  /**
+   * Null when indexing is synchronous
+   */
+  private final ExecutorService indexingExecutor;
+  private final Semaphore pendingCommits;
+  private final ThreadLocal<ThreadCommits> threadCommits = new ThreadLocal<ThreadCommits>() {
+    @Override
+    protected ThreadCommits initialValue() {
+      return new ThreadCommits();
+    }
+  };
+
+  public IndexQueue(SearchClient searchClient, ComponentContainer container, Settings settings) {
     this.searchClient = searchClient;
     this.container = container;
+    if (settings.getBoolean(ASYNC_PROPERTY)) {
+      this.indexingExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("index-queue-%d").setDaemon(true).build());
+      this.pendingCommits = new Semaphore(maxPendingCommits(settings));
+    } else {
+      this.indexingExecutor = null;
+      this.pendingCommits = null;
+    }
+  }
+
+  private static int maxPendingCommits(Settings settings) {
+    int max = settings.getInt(MAX_PENDING_COMMITS_PROPERTY);
+    if (max < 0) {
+      throw new IllegalArgumentException(String.format("Bad value of %s: %d", MAX_PENDING_COMMITS_PROPERTY, max));
+    }
+    return max == 0 ? DEFAULT_MAX_PENDING_COMMITS : max;
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    if (indexingExecutor != null) {
+      indexingExecutor.shutdown();
+      try {
+        indexingExecutor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 
   @Override
@@ -60,6 +134,105 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
     if (actions.isEmpty()) {
       return;
     }
+    final List<IndexAction<?>> coalescedActions = coalesce(actions);
+    if (indexingExecutor == null) {
+      index(coalescedActions);
+      return;
+    }
+
+    final ThreadCommits commits = threadCommits.get();
+    commits.checkFailure();
+    try {
+      pendingCommits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the indexing of previous commits", e);
+    }
+    commits.last = indexingExecutor.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          index(coalescedActions);
+        } catch (Exception e) {
+          LOGGER.error("Failed to index " + coalescedActions.size() + " actions", e);
+          commits.fail(e);
+        } finally {
+          pendingCommits.release();
+        }
+      }
+    });
+  }
+
+  /**
+   * Blocks until the actions of the commits done by the current thread are applied to the index.
+   * Does nothing when indexing is synchronous.
+   *
+   * @throws IllegalStateException if the indexing of one of these commits failed
+   */
+  public void waitForIndex() {
+    if (indexingExecutor == null) {
+      return;
+    }
+    ThreadCommits commits = threadCommits.get();
+    Future<?> last = commits.last;
+    if (last != null) {
+      try {
+        // the executor has a single thread, so the previous commits are indexed too
+        last.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for index", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Failed to wait for index", e);
+      }
+      commits.last = null;
+    }
+    commits.checkFailure();
+  }
+
+  /**
+   * Forgets the commits done by the current thread, so that a pooled thread does not wait for the commits
+   * of a previous HTTP request, nor report their failures. These failures are logged anyway.
+   */
+  public void clearThreadCommits() {
+    threadCommits.remove();
+  }
+
+  /**
+   * Drops the upserts of DTOs that are followed by an upsert of the same document, as they are
+   * overridden. Other actions on the document (deletion, nested items) are kept in order.
+   */
+  @VisibleForTesting
+  static List<IndexAction<?>> coalesce(List<IndexAction<?>> actions) {
+    Map<String, IndexAction<?>> laterUpserts = new HashMap<String, IndexAction<?>>();
+    LinkedList<IndexAction<?>> result = Lists.newLinkedList();
+    for (ListIterator<IndexAction<?>> it = actions.listIterator(actions.size()); it.hasPrevious();) {
+      IndexAction<?> action = it.previous();
+      String document = documentKey(action);
+      if (action instanceof UpsertDto) {
+        IndexAction<?> laterUpsert = laterUpserts.get(document);
+        if (laterUpsert != null && (laterUpsert.needsRefresh() || !action.needsRefresh())) {
+          continue;
+        }
+        laterUpserts.put(document, action);
+      } else if (document != null) {
+        laterUpserts.remove(document);
+      }
+      result.addFirst(action);
+    }
+    return result;
+  }
+
+  @CheckForNull
+  private static String documentKey(IndexAction<?> action) {
+    if (action instanceof UpsertDto || action instanceof InsertDto || action instanceof DeleteKey
+      || action instanceof UpsertNestedItem || action instanceof DeleteNestedItem) {
+      return action.getIndexType() + "/" + action.getKey();
+    }
+    return null;
+  }
+
+  private void index(List<IndexAction<?>> actions) {
     boolean refreshRequired = false;
 
     Map<String, Index> indexes = getIndexMap();
@@ -115,9 +288,10 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
 
   private long processActionsIntoQueries(BulkRequestBuilder bulkRequestBuilder, List<IndexAction<?>> actions) {
     long normTime = System.currentTimeMillis();
+    // one pool per commit, so that the normalization of a commit does not wait for the ones of concurrent commits
+    ExecutorService executorService = Executors.newFixedThreadPool(CONCURRENT_NORMALIZATION_FACTOR);
     try {
       boolean hasInlineRefreshRequest = false;
-      ExecutorService executorService = Executors.newFixedThreadPool(CONCURRENT_NORMALIZATION_FACTOR);
       // invokeAll() blocks until ALL tasks submitted to executor complete
       List<Future<List<? extends ActionRequest>>> requests = (List) executorService.invokeAll(actions, 20, TimeUnit.MINUTES);
       for (Future<List<? extends ActionRequest>> updates : requests) {
@@ -136,10 +310,11 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
           }
         }
       }
-      executorService.shutdown();
       bulkRequestBuilder.setRefresh(hasInlineRefreshRequest);
     } catch (Exception e) {
       throw new IllegalStateException("Could not execute normalization for stack", e);
+    } finally {
+      executorService.shutdown();
     }
     return System.currentTimeMillis() - normTime;
   }
@@ -151,4 +326,26 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
     }
     return indexes;
   }
+
+  /**
+   * Asynchronous commits of a thread
+   */
+  private static class ThreadCommits {
+    private volatile Future<?> last;
+    private volatile Exception failure;
+
+    void fail(Exception e) {
+      if (failure == null) {
+        failure = e;
+      }
+    }
+
+    void checkFailure() {
+      Exception e = failure;
+      if (e != null) {
+        failure = null;
+        throw new IllegalStateException("Failed to index previous commits", e);
+      }
+    }
+  }
 }
@@ -20,6 +20,8 @@
 package org.sonar.server.source.index;
 
 import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.index.query.BoolFilterBuilder;
+import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.sonar.core.persistence.DbSession;
@@ -29,13 +31,20 @@ import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
 
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.sonar.server.source.index.SourceLineIndexDefinition.FIELD_FILE_UUID;
 import static org.sonar.server.source.index.SourceLineIndexDefinition.FIELD_PROJECT_UUID;
 
 public class SourceLineIndexer extends BaseIndexer {
 
+  /**
+   * Lines removed from files are unindexed by batches of files, in a single delete-by-query request
+   */
+  static final int MAX_FILES_PER_DELETE = 500;
+
   private final DbClient dbClient;
 
   public SourceLineIndexer(DbClient dbClient, EsClient esClient) {
@@ -52,7 +61,9 @@ public class SourceLineIndexer extends BaseIndexer {
     Connection dbConnection = dbSession.getConnection();
     try {
       SourceLineResultSetIterator rowIt = SourceLineResultSetIterator.create(dbClient, dbConnection, lastUpdatedAt);
-      long maxUpdatedAt = doIndex(bulk, rowIt);
+      // index is empty, so there are no stale lines to remove
+      boolean deleteStaleLines = lastUpdatedAt > 0L;
+      long maxUpdatedAt = doIndex(bulk, rowIt, deleteStaleLines);
       rowIt.close();
       return maxUpdatedAt;
 
@@ -63,20 +74,30 @@ public class SourceLineIndexer extends BaseIndexer {
 
   public long index(Iterator<SourceLineResultSetIterator.SourceFile> sourceFiles) {
     final BulkIndexer bulk = new BulkIndexer(esClient, SourceLineIndexDefinition.INDEX);
-    return doIndex(bulk, sourceFiles);
+    return doIndex(bulk, sourceFiles, true);
   }
 
-  private long doIndex(BulkIndexer bulk, Iterator<SourceLineResultSetIterator.SourceFile> files) {
+  private long doIndex(BulkIndexer bulk, Iterator<SourceLineResultSetIterator.SourceFile> files, boolean deleteStaleLines) {
     long maxUpdatedAt = 0L;
+    List<FilterBuilder> staleLines = new ArrayList<>();
     bulk.start();
     while (files.hasNext()) {
       SourceLineResultSetIterator.SourceFile file = files.next();
       for (SourceLineDoc line : file.getLines()) {
         bulk.add(newUpsertRequest(line));
       }
-      deleteLinesFromFileAbove(file.getFileUuid(), file.getLines().size());
+      if (deleteStaleLines) {
+        staleLines.add(linesFromFileAbove(file.getFileUuid(), file.getLines().size()));
+        if (staleLines.size() >= MAX_FILES_PER_DELETE) {
+          deleteLines(staleLines);
+          staleLines.clear();
+        }
+      }
       maxUpdatedAt = Math.max(maxUpdatedAt, file.getUpdatedAt());
     }
+    if (!staleLines.isEmpty()) {
+      deleteLines(staleLines);
+    }
     bulk.stop();
     return maxUpdatedAt;
   }
@@ -90,15 +111,26 @@ public class SourceLineIndexer extends BaseIndexer {
   }
 
   /**
-   * Unindex all lines in file with UUID <code>fileUuid</code> above line <code>lastLine</code>
+   * All lines in file with UUID <code>fileUuid</code> above line <code>lastLine</code>
    */
-  private void deleteLinesFromFileAbove(String fileUuid, int lastLine) {
+  private static FilterBuilder linesFromFileAbove(String fileUuid, int lastLine) {
+    return FilterBuilders.boolFilter()
+      .must(FilterBuilders.termFilter(FIELD_FILE_UUID, fileUuid).cache(false))
+      .must(FilterBuilders.rangeFilter(SourceLineIndexDefinition.FIELD_LINE).gt(lastLine).cache(false));
+  }
+
+  /**
+   * Unindex the lines matching at least one of the filters
+   */
+  private void deleteLines(List<FilterBuilder> filters) {
+    BoolFilterBuilder filter = FilterBuilders.boolFilter();
+    for (FilterBuilder fileFilter : filters) {
+      filter.should(fileFilter);
+    }
     esClient.prepareDeleteByQuery(SourceLineIndexDefinition.INDEX)
       .setTypes(SourceLineIndexDefinition.TYPE)
-      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), FilterBuilders.boolFilter()
-        .must(FilterBuilders.termFilter(FIELD_FILE_UUID, fileUuid).cache(false))
-        .must(FilterBuilders.rangeFilter(SourceLineIndexDefinition.FIELD_LINE).gt(lastLine).cache(false))
-        )).get();
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), filter))
+      .get();
   }
 
   public void deleteByFile(String fileUuid) {
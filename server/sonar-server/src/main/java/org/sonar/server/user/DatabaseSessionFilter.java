@@ -21,6 +21,7 @@ package org.sonar.server.user;
 
 import org.sonar.jpa.session.DatabaseSessionFactory;
 import org.sonar.server.platform.Platform;
+import org.sonar.server.search.IndexQueue;
 
 import javax.servlet.*;
 import java.io.IOException;
@@ -33,7 +34,15 @@ public class DatabaseSessionFilter implements Filter {
 
   @Override
   public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
-    chain.doFilter(request, response);
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      // commits of this request must not be waited for by the next request executed by the same thread
+      IndexQueue indexQueue = Platform.component(IndexQueue.class);
+      if (indexQueue != null) {
+        indexQueue.clearThreadCommits();
+      }
+    }
 
     DatabaseSessionFactory sessionFactory = Platform.component(DatabaseSessionFactory.class);
     if (sessionFactory != null) {
@@ -0,0 +1,169 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.core.user.AuthorizationDao;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Root projects on which users have a permission, shared by the HTTP requests of all users so that
+ * {@link UserSession} does not load them from database on each request.
+ * <p/>
+ * Entries are keyed by user id, as the groups of a user are resolved by the database query. They are invalidated
+ * when project permissions or group memberships are changed from the webapp, and expire after
+ * {@link #TTL_PROPERTY} seconds to take into account the other changes, for example the default permissions
+ * granted to projects created by analyses. The least recently used entries are evicted when the cache is full.
+ */
+public class ProjectPermissionCache implements ServerComponent {
+
+  public static final String SIZE_PROPERTY = "sonar.authorization.cacheSize";
+  public static final String TTL_PROPERTY = "sonar.authorization.cacheTtlSeconds";
+  static final int DEFAULT_SIZE = 1000;
+  static final int DEFAULT_TTL_SECONDS = 30;
+
+  private final AuthorizationDao authorizationDao;
+  private final System2 system2;
+  private final int maxSize;
+  private final long ttlMs;
+  private final Map<List<Object>, Entry> entries;
+  private long version = 0L;
+
+  public ProjectPermissionCache(AuthorizationDao authorizationDao, Settings settings, System2 system2) {
+    this(authorizationDao, intProperty(settings, SIZE_PROPERTY, DEFAULT_SIZE), intProperty(settings, TTL_PROPERTY, DEFAULT_TTL_SECONDS) * 1000L, system2);
+  }
+
+  @VisibleForTesting
+  ProjectPermissionCache(AuthorizationDao authorizationDao, final int maxSize, long ttlMs, System2 system2) {
+    this.authorizationDao = authorizationDao;
+    this.system2 = system2;
+    this.maxSize = maxSize;
+    this.ttlMs = ttlMs;
+    this.entries = new LinkedHashMap<List<Object>, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<List<Object>, Entry> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  private static int intProperty(Settings settings, String key, int defaultValue) {
+    if (!settings.hasKey(key)) {
+      return defaultValue;
+    }
+    int value = settings.getInt(key);
+    if (value < 0) {
+      throw new IllegalArgumentException(String.format("Bad value of %s: %d", key, value));
+    }
+    return value;
+  }
+
+  /**
+   * Keys of the root projects on which the user has the permission
+   *
+   * @param userId null for anonymous
+   */
+  public Set<String> projectKeys(@Nullable Integer userId, String permission) {
+    List<Object> key = Arrays.<Object>asList("key", userId, permission);
+    Set<String> result = get(key);
+    if (result == null) {
+      long loadedVersion = version();
+      result = ImmutableSet.copyOf(authorizationDao.selectAuthorizedRootProjectsKeys(userId, permission));
+      put(key, result, loadedVersion);
+    }
+    return result;
+  }
+
+  /**
+   * UUIDs of the root projects on which the user has the permission
+   *
+   * @param userId null for anonymous
+   */
+  public Set<String> projectUuids(@Nullable Integer userId, String permission) {
+    List<Object> key = Arrays.<Object>asList("uuid", userId, permission);
+    Set<String> result = get(key);
+    if (result == null) {
+      long loadedVersion = version();
+      result = ImmutableSet.copyOf(authorizationDao.selectAuthorizedRootProjectsUuids(userId, permission));
+      put(key, result, loadedVersion);
+    }
+    return result;
+  }
+
+  /**
+   * Must be called when project permissions, permission templates applied to projects or group memberships change
+   */
+  public synchronized void invalidate() {
+    version++;
+    entries.clear();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  private synchronized long version() {
+    return version;
+  }
+
+  @CheckForNull
+  private synchronized Set<String> get(List<Object> key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (system2.now() - entry.loadedAt >= ttlMs) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.projects;
+  }
+
+  /**
+   * Projects are not kept if permissions changed while they were loaded
+   */
+  private synchronized void put(List<Object> key, Set<String> projects, long loadedVersion) {
+    if (maxSize > 0 && ttlMs > 0 && loadedVersion == version) {
+      entries.put(key, new Entry(projects, system2.now()));
+    }
+  }
+
+  private static class Entry {
+    private final Set<String> projects;
+    private final long loadedAt;
+
+    Entry(Set<String> projects, long loadedAt) {
+      this.projects = projects;
+      this.loadedAt = loadedAt;
+    }
+  }
+}
@@ -178,7 +178,7 @@ public class UserSession {
    */
   public boolean hasProjectPermission(String permission, String projectKey) {
     if (!projectPermissions.contains(permission)) {
-      Collection<String> projectKeys = authorizationDao().selectAuthorizedRootProjectsKeys(userId, permission);
+      Collection<String> projectKeys = projectPermissionCache().projectKeys(userId, permission);
       for (String key : projectKeys) {
         projectKeyByPermission.put(permission, key);
       }
@@ -193,7 +193,7 @@ public class UserSession {
    */
   public boolean hasProjectPermissionByUuid(String permission, String projectUuid) {
     if (!projectPermissions.contains(permission)) {
-      Collection<String> projectUuids = authorizationDao().selectAuthorizedRootProjectsUuids(userId, permission);
+      Collection<String> projectUuids = projectPermissionCache().projectUuids(userId, permission);
       for (String key : projectUuids) {
         projectUuidByPermission.put(permission, key);
       }
@@ -240,6 +240,10 @@ public class UserSession {
     return Platform.component(ResourceDao.class);
   }
 
+  ProjectPermissionCache projectPermissionCache() {
+    return Platform.component(ProjectPermissionCache.class);
+  }
+
   public static UserSession get() {
     return Objects.firstNonNull(THREAD_LOCAL.get(), ANONYMOUS);
   }
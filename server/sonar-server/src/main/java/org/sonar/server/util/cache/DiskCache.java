@@ -19,36 +19,64 @@
  */
 package org.sonar.server.util.cache;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.server.util.CloseableIterator;
-import org.sonar.server.util.ObjectInputStreamIterator;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
- * Serialize and deserialize objects on disk. No search capabilities, only traversal (full scan).
+ * Encode and decode objects on disk with an {@link ObjectCodec}. No search capabilities, only traversal (full scan).
+ * The cache can be traversed multiple times.
+ * <p/>
+ * An optional in-memory tier keeps the encoded objects in heap as long as their size does not exceed
+ * a threshold, so that the file is not written for small caches.
  */
-public class DiskCache<O extends Serializable> {
+public class DiskCache<O> {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int NEXT_OBJECT_MARKER = 1;
 
   private final File file;
   private final System2 system2;
+  private final ObjectCodec<O> codec;
+  private final int memoryThreshold;
+
+  // null when objects are written on disk
+  private MemoryBuffer memory;
+
+  public DiskCache(File file, System2 system2, ObjectCodec<O> codec) {
+    this(file, system2, codec, 0);
+  }
 
-  public DiskCache(File file, System2 system2) {
+  /**
+   * @param memoryThreshold maximum size in bytes of encoded objects kept in memory before being written
+   *                        on disk. Zero to always write on disk.
+   */
+  public DiskCache(File file, System2 system2, ObjectCodec<O> codec, int memoryThreshold) {
     this.system2 = system2;
     this.file = file;
+    this.codec = codec;
+    this.memoryThreshold = memoryThreshold;
+    this.memory = memoryThreshold > 0 ? new MemoryBuffer() : null;
     OutputStream output = null;
     try {
-      // writes the serialization stream header required when calling "traverse()"
-      // on empty stream. Moreover it allows to call multiple times "newAppender()"
-      output = new ObjectOutputStream(new FileOutputStream(file));
-      output.flush();
+      // truncate file and fail fast if it is not writable
+      output = new FileOutputStream(file);
 
       // raise an exception if can't close
       system2.close(output);
@@ -64,32 +92,38 @@ public class DiskCache<O extends Serializable> {
   }
 
   public CloseableIterator<O> traverse() {
-    try {
-      return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
-    } catch (IOException e) {
-      throw new IllegalStateException("Fail to traverse file: " + file, e);
+    InputStream input;
+    if (memory != null) {
+      input = memory.newInputStream();
+    } else {
+      try {
+        input = new BufferedInputStream(Channels.newInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ)), BUFFER_SIZE);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to traverse file: " + file, e);
+      }
     }
+    return new DecodingIterator(new DataInputStream(input));
+  }
+
+  /**
+   * Whether objects have been written on disk or are still in memory
+   */
+  public boolean isSpilledToDisk() {
+    return memory == null;
   }
 
   public class DiskAppender implements AutoCloseable {
-    private final ObjectOutputStream output;
+    private final SpillOutputStream spill = new SpillOutputStream();
+    private final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(spill, BUFFER_SIZE));
 
     private DiskAppender() {
-      try {
-        this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
-          @Override
-          protected void writeStreamHeader() throws IOException {
-            // do not write stream headers as it's already done in constructor of DiskCache
-          }
-        };
-      } catch (IOException e) {
-        throw new IllegalStateException("Fail to open file " + file, e);
-      }
+      // use DiskCache#newAppender()
     }
 
     public DiskAppender append(O object) {
       try {
-        output.writeObject(object);
+        output.writeByte(NEXT_OBJECT_MARKER);
+        codec.write(object, output);
         return this;
       } catch (IOException e) {
         throw new IllegalStateException("Fail to write into file " + file, e);
@@ -101,4 +135,81 @@ public class DiskCache<O extends Serializable> {
       system2.close(output);
     }
   }
+
+  /**
+   * Writes into memory until threshold is reached, then copies memory to file and
+   * writes the next bytes directly to file channel.
+   */
+  private class SpillOutputStream extends OutputStream {
+    private FileChannel channel;
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (memory != null && memory.size() + length <= memoryThreshold) {
+        memory.write(bytes, offset, length);
+        return;
+      }
+      if (channel == null) {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      }
+      if (memory != null) {
+        writeToChannel(memory.toByteBuffer());
+        memory = null;
+      }
+      writeToChannel(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    private void writeToChannel(ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (channel != null) {
+        channel.close();
+      }
+    }
+  }
+
+  private class DecodingIterator extends CloseableIterator<O> {
+    private final DataInputStream input;
+
+    DecodingIterator(DataInputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    protected O doNext() {
+      try {
+        if (input.read() != NEXT_OBJECT_MARKER) {
+          return null;
+        }
+        return codec.read(input);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read file " + file, e);
+      }
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static class MemoryBuffer extends ByteArrayOutputStream {
+    InputStream newInputStream() {
+      return new ByteArrayInputStream(buf, 0, count);
+    }
+
+    ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
 }
@@ -68,13 +68,13 @@ public class ProjectCleanerTest {
   }
 
   @Test
-  public void no_profiling_when_property_is_false() throws Exception {
+  public void profiling_even_when_property_is_false() throws Exception {
     when(settings.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY)).thenReturn(false);
     when(projectSettingsFactory.newProjectSettings(any(DbSession.class), any(Long.class))).thenReturn(settings);
 
     sut.purge(mock(DbSession.class), mock(IdUuidPair.class));
 
-    verify(profiler, never()).dump(anyLong(), any(Logger.class));
+    verify(profiler).dump(anyLong(), any(Logger.class));
   }
 
   @Test
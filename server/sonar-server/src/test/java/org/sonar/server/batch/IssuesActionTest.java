@@ -103,6 +103,19 @@ public class IssuesActionTest {
     request.execute().assertJson(getClass(), "issues_on_module-expected.json", false);
   }
 
+  @Test
+  public void return_only_issues_of_given_components() throws Exception {
+    db.prepareDbUnit(getClass(), "shared.xml");
+
+    MockUserSession.set().setLogin("henry").setGlobalPermissions(GlobalPermissions.PREVIEW_EXECUTION).addComponentPermission(UserRole.USER, PROJECT_KEY, PROJECT_KEY);
+
+    WsTester.TestRequest request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY).setParam("components", "Action.java,Other.java");
+    request.execute().assertJson(getClass(), "issues_on_project-expected.json", false);
+
+    request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY).setParam("components", MODULE_KEY);
+    request.execute().assertJson("[]");
+  }
+
   @Test(expected = ForbiddenException.class)
   public void fail_without_preview_permission() throws Exception {
     db.prepareDbUnit(getClass(), "shared.xml");
@@ -20,16 +20,19 @@
 
 package org.sonar.server.batch;
 
+import com.google.common.collect.ImmutableMap;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.sonar.batch.protocol.input.FileData;
 import org.sonar.batch.protocol.input.ProjectRepository;
 import org.sonar.server.ws.WsTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -68,4 +71,24 @@ public class ProjectRepositoryActionTest {
     assertThat(queryArgumentCaptor.getValue().isPreview()).isFalse();
   }
 
+  @Test
+  public void do_not_return_sections_already_known_by_batch() throws Exception {
+    ProjectRepository ref = new ProjectRepository();
+    ref.addSettings("foo", ImmutableMap.of("prop", "value"));
+    ref.addFileData("foo", "src/Foo.java", new FileData("xyz", true, null, null, null));
+    String settingsDigest = new ProjectRepository().addSettings("foo", ImmutableMap.of("prop", "value")).computeDigests()
+      .digestsBySection().get(ProjectRepository.SETTINGS_SECTION);
+    when(projectRepositoryLoader.load(any(ProjectRepositoryQuery.class))).thenReturn(ref);
+
+    WsTester.TestRequest request = tester.newGetRequest("batch", "project")
+      .setParam("key", "foo")
+      .setParam("digests", "settings:" + settingsDigest + ",fileData:unknown");
+    ProjectRepository result = ProjectRepository.fromJson(request.execute().outputAsString());
+
+    assertThat(result.unchangedSections()).containsOnly(ProjectRepository.SETTINGS_SECTION);
+    assertThat(result.settings("foo")).isEmpty();
+    assertThat(result.fileData("foo", "src/Foo.java").hash()).isEqualTo("xyz");
+    assertThat(result.digestsBySection().get(ProjectRepository.SETTINGS_SECTION)).isEqualTo(settingsDigest);
+  }
+
 }
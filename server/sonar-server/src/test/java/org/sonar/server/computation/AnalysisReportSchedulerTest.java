@@ -0,0 +1,118 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation;
+
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.WildcardPattern;
+import org.sonar.core.computation.db.AnalysisReportDto;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.core.computation.db.AnalysisReportDto.Status.PENDING;
+
+public class AnalysisReportSchedulerTest {
+
+  private static final WildcardPattern[] NO_PRIORITY = new WildcardPattern[0];
+
+  @Test
+  public void oldest_report_first_by_default() {
+    AnalysisReportScheduler sut = new AnalysisReportScheduler(new Settings());
+
+    assertThat(sut.isSkippingSupersededReports()).isFalse();
+    assertThat(sut.select(reports("P1", "P2", "P1")).getId()).isEqualTo(1L);
+  }
+
+  @Test
+  public void reports_of_priority_projects_first() {
+    Settings settings = new Settings().setProperty(AnalysisReportScheduler.PRIORITY_PROJECTS_PROPERTY, "org.foo:*,bar");
+    AnalysisReportScheduler sut = new AnalysisReportScheduler(settings);
+
+    assertThat(sut.select(reports("P1", "bar", "org.foo:baz")).getId()).isEqualTo(2L);
+    assertThat(sut.select(reports("P1", "org.foo:baz", "bar")).getId()).isEqualTo(2L);
+    assertThat(sut.select(reports("P1", "P2")).getId()).isEqualTo(1L);
+  }
+
+  @Test
+  public void fair_share_serves_first_the_project_processed_the_longest_time_ago() {
+    AnalysisReportScheduler sut = new AnalysisReportScheduler(NO_PRIORITY, true, false);
+
+    List<AnalysisReportDto> reports = reports("P1", "P1", "P2", "P3");
+    AnalysisReportDto first = sut.select(reports);
+    assertThat(first.getId()).isEqualTo(1L);
+    sut.booked(first);
+
+    // P1 has just been served, so P2 and P3 go first even if P1 has an older pending report
+    AnalysisReportDto second = sut.select(reports("P1", "P2", "P3"));
+    assertThat(second.getProjectKey()).isEqualTo("P2");
+    sut.booked(second);
+
+    AnalysisReportDto third = sut.select(reports("P1", "P3"));
+    assertThat(third.getProjectKey()).isEqualTo("P3");
+    sut.booked(third);
+
+    assertThat(sut.select(reports("P2", "P1", "P3")).getProjectKey()).isEqualTo("P1");
+  }
+
+  @Test
+  public void no_fair_share_by_default() {
+    AnalysisReportScheduler sut = new AnalysisReportScheduler(new Settings());
+
+    AnalysisReportDto first = sut.select(reports("P1", "P1", "P2"));
+    sut.booked(first);
+
+    assertThat(sut.select(reports("P1", "P2")).getProjectKey()).isEqualTo("P1");
+  }
+
+  @Test
+  public void priority_projects_go_before_fair_share() {
+    AnalysisReportScheduler sut = new AnalysisReportScheduler(WildcardPattern.create(new String[] {"P1"}), true, false);
+
+    sut.booked(sut.select(reports("P1", "P2")));
+
+    assertThat(sut.select(reports("P2", "P1")).getProjectKey()).isEqualTo("P1");
+  }
+
+  @Test
+  public void select_most_recent_report_of_project_when_skipping_superseded_reports() {
+    Settings settings = new Settings().setProperty(AnalysisReportScheduler.SKIP_SUPERSEDED_PROPERTY, true);
+    AnalysisReportScheduler sut = new AnalysisReportScheduler(settings);
+
+    assertThat(sut.isSkippingSupersededReports()).isTrue();
+    // project is chosen according to its oldest pending report
+    assertThat(sut.select(reports("P1", "P2", "P1", "P2", "P1")).getId()).isEqualTo(5L);
+  }
+
+  /**
+   * Pending reports sorted by submission date. Ids start from 1.
+   */
+  private List<AnalysisReportDto> reports(String... projectKeys) {
+    AnalysisReportDto[] reports = new AnalysisReportDto[projectKeys.length];
+    for (int i = 0; i < projectKeys.length; i++) {
+      reports[i] = AnalysisReportDto.newForTests(i + 1L)
+        .setProjectKey(projectKeys[i])
+        .setStatus(PENDING)
+        .setCreatedAt(1000L + i);
+    }
+    return Arrays.asList(reports);
+  }
+}
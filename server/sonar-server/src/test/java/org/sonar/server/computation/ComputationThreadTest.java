@@ -24,6 +24,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.sonar.core.computation.db.AnalysisReportDto;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 public class ComputationThreadTest {
@@ -54,6 +55,14 @@ public class ComputationThreadTest {
     verify(queue).pop();
   }
 
+  @Test
+  public void processNextReport_returns_whether_a_report_was_popped() {
+    assertThat(sut.processNextReport()).isFalse();
+
+    when(queue.pop()).thenReturn(AnalysisReportDto.newForTests(1L));
+    assertThat(sut.processNextReport()).isTrue();
+  }
+
   @Test
   public void when_the_analysis_throws_an_exception_it_does_not_break_the_task() throws Exception {
     when(queue.pop()).thenThrow(new IllegalStateException());
@@ -20,6 +20,7 @@
 
 package org.sonar.server.computation.db;
 
+import com.google.common.base.Function;
 import org.apache.commons.io.IOUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -34,9 +35,12 @@ import org.sonar.core.persistence.DbTester;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.test.DbTests;
 
-import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -152,6 +156,36 @@ public class AnalysisReportDaoTest {
     assertThat(nextAvailableReport.getProjectKey()).isEqualTo("P2");
   }
 
+  @Test
+  public void pop_report_chosen_by_selector() {
+    db.prepareDbUnit(getClass(), "pop_oldest_pending.xml");
+
+    AnalysisReportDto nextAvailableReport = sut.pop(session, new AnalysisReportDao.ReportSelector() {
+      @Override
+      public AnalysisReportDto select(List<AnalysisReportDto> availableReports) {
+        assertThat(availableReports).hasSize(2);
+        return availableReports.get(1);
+      }
+    });
+
+    assertThat(nextAvailableReport.getId()).isEqualTo(4);
+    assertThat(nextAvailableReport.getStatus()).isEqualTo(WORKING);
+  }
+
+  @Test
+  public void pop_null_if_selector_does_not_choose_any_report() {
+    db.prepareDbUnit(getClass(), "pop_oldest_pending.xml");
+
+    AnalysisReportDto nextAvailableReport = sut.pop(session, new AnalysisReportDao.ReportSelector() {
+      @Override
+      public AnalysisReportDto select(List<AnalysisReportDto> availableReports) {
+        return null;
+      }
+    });
+
+    assertThat(nextAvailableReport).isNull();
+  }
+
   @Test
   public void pop_null_if_no_pending_reports() {
     db.prepareDbUnit(getClass(), "pop_null_if_no_pending_reports.xml");
@@ -224,23 +258,36 @@ public class AnalysisReportDaoTest {
   }
 
   @Test
-  public void insert_and_then_retrieve_report_data_with_decompressed_files_medium_test() throws Exception {
+  public void insert_and_then_read_report_data_medium_test() throws Exception {
     // ARRANGE
     db.prepareDbUnit(getClass(), "empty.xml");
     AnalysisReportDto report = newDefaultAnalysisReport();
     InputStream zip = getClass().getResource("/org/sonar/server/computation/db/AnalysisReportDaoTest/zip.zip").openStream();
     report.setData(zip);
 
-    File toDir = temp.newFolder();
     sut.insert(session, report);
     session.commit();
     IOUtils.closeQuietly(zip);
 
     // ACT
-    sut.selectAndDecompressToDir(session, 1L, toDir);
+    final List<String> entries = new ArrayList<>();
+    sut.readData(session, 1L, new Function<InputStream, Void>() {
+      @Override
+      public Void apply(InputStream input) {
+        try (ZipInputStream zipInput = new ZipInputStream(input)) {
+          ZipEntry entry;
+          while ((entry = zipInput.getNextEntry()) != null) {
+            entries.add(entry.getName());
+          }
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+        return null;
+      }
+    });
 
     // ASSERT
-    assertThat(toDir.list()).hasSize(3);
+    assertThat(entries).containsOnly("bar.txt", "dir/", "dir/hello.properties", "foo.txt");
   }
 
   private AnalysisReportDto newDefaultAnalysisReport() {
@@ -0,0 +1,64 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CsvColumnParserTest {
+
+  @Test
+  public void read_single_column() throws Exception {
+    assertThat(parse(1, "r1,alice,2014\nr2,bob,2015\n")).containsExactly("alice", "bob");
+    assertThat(parse(0, "r1,alice,2014\nr2,bob,2015")).containsExactly("r1", "r2");
+    assertThat(parse(2, "r1,alice,2014\r\nr2,bob,2015\r\n")).containsExactly("2014", "2015");
+  }
+
+  @Test
+  public void read_quoted_values() throws Exception {
+    assertThat(parse(1, "r1,\"alice, \"\"al\"\"\",2014\nr2,\"\",2015")).containsExactly("alice, \"al\"", "");
+  }
+
+  @Test
+  public void skip_line_breaks_of_quoted_values_of_other_columns() throws Exception {
+    assertThat(parse(1, "r1,alice,\"int a;\nint b;\r\"\nr2,bob,\"\"")).containsExactly("alice", "bob");
+  }
+
+  @Test
+  public void ignore_empty_lines() throws Exception {
+    assertThat(parse(1, "\nr1,alice\n\n,,\n")).containsExactly("alice", "");
+  }
+
+  @Test
+  public void null_if_missing_column() throws Exception {
+    assertThat(parse(1, "r1\nr2,bob")).containsExactly(null, "bob");
+  }
+
+  private List<String> parse(int columnIndex, String csv) throws Exception {
+    List<String> values = new ArrayList<>();
+    new CsvColumnParser(columnIndex).parse(new StringReader(csv), values);
+    return values;
+  }
+}
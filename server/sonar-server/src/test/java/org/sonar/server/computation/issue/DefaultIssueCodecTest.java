@@ -0,0 +1,165 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import org.junit.Test;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.issue.internal.DefaultIssueComment;
+import org.sonar.api.issue.internal.FieldDiffs;
+import org.sonar.api.issue.internal.IssueChangeContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Duration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Date;
+
+import static com.google.common.collect.ImmutableMap.of;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultIssueCodecTest {
+
+  DefaultIssueCodec codec = new DefaultIssueCodec();
+
+  @Test
+  public void encode_and_decode_all_fields() throws Exception {
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ABCDE")
+      .setComponentUuid("COMPONENT_UUID")
+      .setComponentKey("COMPONENT_KEY")
+      .setComponentId(123L)
+      .setModuleUuid("MODULE_UUID")
+      .setModuleUuidPath(".MODULE_UUID.")
+      .setProjectUuid("PROJECT_UUID")
+      .setProjectKey("PROJECT_KEY")
+      .setRuleKey(RuleKey.of("squid", "AvoidCycle"))
+      .setLanguage("java")
+      .setSeverity("MAJOR")
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(42)
+      .setEffortToFix(2.5)
+      .setDebt(Duration.create(30L))
+      .setStatus("RESOLVED")
+      .setResolution("FIXED")
+      .setReporter("julien")
+      .setAssignee("simon")
+      .setChecksum("CHECKSUM")
+      .setAttributes(of("JIRA", "FOO-123"))
+      .setAuthorLogin("eric")
+      .setActionPlanKey("PLAN")
+      .setTags(Arrays.asList("bug", "cwe"))
+      .setCreationDate(new Date(1000000L))
+      .setUpdateDate(new Date(2000000L))
+      .setCloseDate(new Date(3000000L))
+      .setNew(false)
+      .setEndOfLife(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(4000L)
+      .addComment(new DefaultIssueComment().setKey("COMMENT").setIssueKey("ABCDE").setMarkdownText("text").setUserLogin("julien")
+        .setCreatedAt(new Date(5000000L)).setNew(true));
+    issue.setFieldChange(IssueChangeContext.createUser(new Date(6000000L), "julien"), "severity", "MINOR", "MAJOR");
+    issue.addChange(new FieldDiffs().setUserLogin("simon").setDiff("status", "OPEN", "CONFIRMED"));
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.key()).isEqualTo("ABCDE");
+    assertThat(decoded.componentUuid()).isEqualTo("COMPONENT_UUID");
+    assertThat(decoded.componentKey()).isEqualTo("COMPONENT_KEY");
+    assertThat(decoded.componentId()).isEqualTo(123L);
+    assertThat(decoded.moduleUuid()).isEqualTo("MODULE_UUID");
+    assertThat(decoded.moduleUuidPath()).isEqualTo(".MODULE_UUID.");
+    assertThat(decoded.projectUuid()).isEqualTo("PROJECT_UUID");
+    assertThat(decoded.projectKey()).isEqualTo("PROJECT_KEY");
+    assertThat(decoded.ruleKey()).isEqualTo(RuleKey.of("squid", "AvoidCycle"));
+    assertThat(decoded.language()).isEqualTo("java");
+    assertThat(decoded.severity()).isEqualTo("MAJOR");
+    assertThat(decoded.manualSeverity()).isTrue();
+    assertThat(decoded.message()).isEqualTo("the message");
+    assertThat(decoded.line()).isEqualTo(42);
+    assertThat(decoded.effortToFix()).isEqualTo(2.5);
+    assertThat(decoded.debtInMinutes()).isEqualTo(30L);
+    assertThat(decoded.status()).isEqualTo("RESOLVED");
+    assertThat(decoded.resolution()).isEqualTo("FIXED");
+    assertThat(decoded.reporter()).isEqualTo("julien");
+    assertThat(decoded.assignee()).isEqualTo("simon");
+    assertThat(decoded.checksum()).isEqualTo("CHECKSUM");
+    assertThat(decoded.attributes()).containsEntry("JIRA", "FOO-123");
+    assertThat(decoded.authorLogin()).isEqualTo("eric");
+    assertThat(decoded.actionPlanKey()).isEqualTo("PLAN");
+    assertThat(decoded.tags()).containsOnly("bug", "cwe");
+    assertThat(decoded.creationDate()).isEqualTo(new Date(1000000L));
+    assertThat(decoded.updateDate()).isEqualTo(new Date(2000000L));
+    assertThat(decoded.closeDate()).isEqualTo(new Date(3000000L));
+    assertThat(decoded.isNew()).isFalse();
+    assertThat(decoded.isEndOfLife()).isTrue();
+    assertThat(decoded.isOnDisabledRule()).isTrue();
+    assertThat(decoded.isChanged()).isTrue();
+    assertThat(decoded.mustSendNotifications()).isTrue();
+    assertThat(decoded.selectedAt()).isEqualTo(4000L);
+
+    assertThat(decoded.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) decoded.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT");
+    assertThat(comment.markdownText()).isEqualTo("text");
+    assertThat(comment.userLogin()).isEqualTo("julien");
+    assertThat(comment.createdAt()).isEqualTo(new Date(5000000L));
+    assertThat(comment.isNew()).isTrue();
+
+    FieldDiffs currentChange = decoded.currentChange();
+    assertThat(currentChange.userLogin()).isEqualTo("julien");
+    assertThat(currentChange.creationDate()).isEqualTo(new Date(6000000L));
+    assertThat(currentChange.get("severity").oldValue()).isEqualTo("MINOR");
+    assertThat(currentChange.get("severity").newValue()).isEqualTo("MAJOR");
+    assertThat(decoded.changes()).hasSize(2);
+    assertThat(decoded.changes().get(0)).isSameAs(currentChange);
+    assertThat(decoded.changes().get(1).get("status").newValue()).isEqualTo("CONFIRMED");
+  }
+
+  @Test
+  public void encode_and_decode_null_fields() throws Exception {
+    DefaultIssue decoded = encodeAndDecode(new DefaultIssue());
+
+    assertThat(decoded.key()).isNull();
+    assertThat(decoded.ruleKey()).isNull();
+    assertThat(decoded.line()).isNull();
+    assertThat(decoded.debt()).isNull();
+    assertThat(decoded.creationDate()).isNull();
+    assertThat(decoded.attributes()).isEmpty();
+    assertThat(decoded.tags()).isEmpty();
+    assertThat(decoded.comments()).isEmpty();
+    assertThat(decoded.currentChange()).isNull();
+    assertThat(decoded.changes()).isEmpty();
+    assertThat(decoded.isNew()).isTrue();
+  }
+
+  private DefaultIssue encodeAndDecode(DefaultIssue issue) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    codec.write(issue, output);
+    output.close();
+    return codec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+}
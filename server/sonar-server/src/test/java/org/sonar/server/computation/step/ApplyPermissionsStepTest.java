@@ -21,6 +21,7 @@ package org.sonar.server.computation.step;
 
 import org.junit.Test;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
+import org.sonar.server.user.ProjectPermissionCache;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -30,7 +31,9 @@ public class ApplyPermissionsStepTest {
   @Test
   public void index_issue_permissions() throws Exception {
     IssueAuthorizationIndexer indexer = mock(IssueAuthorizationIndexer.class);
-    new ApplyPermissionsStep(indexer).execute(null);
+    ProjectPermissionCache projectPermissionCache = mock(ProjectPermissionCache.class);
+    new ApplyPermissionsStep(indexer, projectPermissionCache).execute(null);
     verify(indexer).index();
+    verify(projectPermissionCache).invalidate();
   }
 }
@@ -55,7 +55,7 @@ public class DigestReportStepTest {
   public void call_service_method() throws Exception {
     AnalysisReportService service = mock(AnalysisReportService.class);
     DigestReportStep sut = new DigestReportStep(service);
-    ComputationContext context = new ComputationContext(mock(AnalysisReportDto.class), mock(ComponentDto.class), null);
+    ComputationContext context = new ComputationContext(mock(AnalysisReportDto.class), mock(ComponentDto.class));
 
     sut.execute(context);
 
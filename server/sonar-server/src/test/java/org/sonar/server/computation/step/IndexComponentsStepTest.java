@@ -21,9 +21,7 @@
 package org.sonar.server.computation.step;
 
 import org.junit.Before;
-import org.junit.Rule;
 import org.junit.Test;
-import org.junit.rules.TemporaryFolder;
 import org.sonar.core.component.ComponentDto;
 import org.sonar.core.computation.db.AnalysisReportDto;
 import org.sonar.core.resource.ResourceIndexerDao;
@@ -35,9 +33,6 @@ import static org.mockito.Mockito.*;
 
 public class IndexComponentsStepTest {
 
-  @Rule
-  public TemporaryFolder temp = new TemporaryFolder();
-
   IndexComponentsStep sut;
   ResourceIndexerDao resourceIndexerDao;
 
@@ -51,7 +46,7 @@ public class IndexComponentsStepTest {
   public void call_indexProject_of_dao() throws IOException {
     ComponentDto project = mock(ComponentDto.class);
     when(project.getId()).thenReturn(123L);
-    ComputationContext context = new ComputationContext(mock(AnalysisReportDto.class), project, temp.newFolder());
+    ComputationContext context = new ComputationContext(mock(AnalysisReportDto.class), project);
 
     sut.execute(context);
 
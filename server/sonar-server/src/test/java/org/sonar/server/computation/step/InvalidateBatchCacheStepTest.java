@@ -44,7 +44,7 @@ public class InvalidateBatchCacheStepTest {
 
   @Test
   public void update_property_to_invalidate_cache() {
-    ComputationContext context = new ComputationContext(mock(AnalysisReportDto.class), mock(ComponentDto.class), null);
+    ComputationContext context = new ComputationContext(mock(AnalysisReportDto.class), mock(ComponentDto.class));
 
     sut.execute(context);
 
@@ -21,9 +21,7 @@
 package org.sonar.server.computation.step;
 
 import org.junit.Before;
-import org.junit.Rule;
 import org.junit.Test;
-import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import org.sonar.core.component.ComponentDto;
 import org.sonar.core.computation.db.AnalysisReportDto;
@@ -43,9 +41,6 @@ public class PurgeDatastoresStepTest {
   PurgeDatastoresStep sut;
   ProjectCleaner projectCleaner;
 
-  @Rule
-  public TemporaryFolder temp = new TemporaryFolder();
-
   @Before
   public void before() {
     this.projectCleaner = mock(ProjectCleaner.class);
@@ -58,8 +53,7 @@ public class PurgeDatastoresStepTest {
     ComponentDto project = mock(ComponentDto.class);
     when(project.getId()).thenReturn(123L);
     when(project.uuid()).thenReturn("UUID-1234");
-    ComputationContext context = new ComputationContext(mock(AnalysisReportDto.class), project,
-      temp.newFolder());
+    ComputationContext context = new ComputationContext(mock(AnalysisReportDto.class), project);
 
     sut.execute(context);
 
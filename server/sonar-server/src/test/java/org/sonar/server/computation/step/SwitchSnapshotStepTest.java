@@ -24,7 +24,6 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
-import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.core.computation.db.AnalysisReportDto;
@@ -46,9 +45,6 @@ public class SwitchSnapshotStepTest {
   @Rule
   public DbTester db = new DbTester();
 
-  @Rule
-  public TemporaryFolder temp = new TemporaryFolder();
-
   private SwitchSnapshotStep sut;
 
   @Before
@@ -62,7 +58,7 @@ public class SwitchSnapshotStepTest {
   public void one_switch_with_a_snapshot_and_his_children() throws IOException {
     db.prepareDbUnit(getClass(), "snapshots.xml");
     ComputationContext context = new ComputationContext(AnalysisReportDto.newForTests(1L).setSnapshotId(1L),
-      ComponentTesting.newProjectDto(), temp.newFolder());
+      ComponentTesting.newProjectDto());
 
     sut.execute(context);
 
@@ -73,7 +69,7 @@ public class SwitchSnapshotStepTest {
   public void throw_IllegalStateException_when_not_finding_snapshot() throws IOException {
     db.prepareDbUnit(getClass(), "empty.xml");
     ComputationContext context = new ComputationContext(AnalysisReportDto.newForTests(1L).setSnapshotId(1L),
-      ComponentTesting.newProjectDto(), temp.newFolder());
+      ComponentTesting.newProjectDto());
 
     sut.execute(context);
   }
@@ -24,6 +24,7 @@ import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.utils.DateUtils;
+import org.sonar.api.utils.System2;
 import org.sonar.core.computation.db.AnalysisReportDto;
 import org.sonar.server.computation.AnalysisReportQueue;
 import org.sonar.server.ws.WsTester;
@@ -34,6 +35,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.sonar.core.computation.db.AnalysisReportDto.Status.PENDING;
+import static org.sonar.core.computation.db.AnalysisReportDto.Status.WORKING;
 
 public class QueueWsActionTest {
 
@@ -43,7 +45,9 @@ public class QueueWsActionTest {
   @Before
   public void setup() throws Exception {
     queue = mock(AnalysisReportQueue.class);
-    tester = new WsTester(new ComputationWebService(new QueueWsAction(queue)));
+    System2 system2 = mock(System2.class);
+    when(system2.now()).thenReturn(DateUtils.parseDateTime("2014-10-13T00:05:00+0200").getTime());
+    tester = new WsTester(new ComputationWebService(new QueueWsAction(queue, system2)));
   }
 
   @Test
@@ -63,6 +67,29 @@ public class QueueWsActionTest {
     request.execute().assertJson(getClass(), "list_queue_reports.json", false);
   }
 
+  @Test
+  public void count_reports_and_compute_waiting_time_of_oldest_pending_report() throws Exception {
+    List<AnalysisReportDto> reports = Lists.newArrayList(
+      AnalysisReportDto.newForTests(1L).setProjectKey("P1").setStatus(WORKING)
+        .setCreatedAt(DateUtils.parseDateTime("2014-10-13T00:00:00+0200").getTime()),
+      AnalysisReportDto.newForTests(2L).setProjectKey("P1").setStatus(PENDING)
+        .setCreatedAt(DateUtils.parseDateTime("2014-10-13T00:02:00+0200").getTime()),
+      AnalysisReportDto.newForTests(3L).setProjectKey("P2").setStatus(PENDING)
+        .setCreatedAt(DateUtils.parseDateTime("2014-10-13T00:01:00+0200").getTime()));
+    when(queue.all()).thenReturn(reports);
+
+    WsTester.TestRequest request = tester.newGetRequest(ComputationWebService.API_ENDPOINT, "queue");
+    request.execute().assertJson("{\"pending\": 2, \"working\": 1, \"maxWaitingTime\": 240000}", false);
+  }
+
+  @Test
+  public void no_waiting_time_when_queue_is_empty() throws Exception {
+    when(queue.all()).thenReturn(Lists.<AnalysisReportDto>newArrayList());
+
+    WsTester.TestRequest request = tester.newGetRequest(ComputationWebService.API_ENDPOINT, "queue");
+    request.execute().assertJson("{\"pending\": 0, \"working\": 0, \"maxWaitingTime\": 0, \"reports\": []}");
+  }
+
   @Test
   public void define() throws Exception {
     assertThat(tester.controller(ComputationWebService.API_ENDPOINT).action("queue")).isNotNull();
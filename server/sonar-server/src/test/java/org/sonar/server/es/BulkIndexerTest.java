@@ -29,6 +29,7 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class BulkIndexerTest {
 
@@ -84,6 +85,98 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void send_concurrent_bulks() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setConcurrentRequests(3)
+      .setFlushByteSize(new ByteSizeValue(1, ByteSizeUnit.BYTES).bytes());
+    indexer.start();
+    for (int i = 0; i < 50; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(50);
+    assertThat(indexer.getRequestCount()).isEqualTo(50);
+    assertThat(indexer.getBulkCount()).isEqualTo(50);
+    assertThat(indexer.getRetriedRequestCount()).isEqualTo(0);
+    assertThat(indexer.getInFlightBulkCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void send_bulks_synchronously() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setConcurrentRequests(0)
+      .setFlushByteSize(new ByteSizeValue(1, ByteSizeUnit.BYTES).bytes());
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    assertThat(indexer.getBulkCount()).isEqualTo(1);
+    indexer.add(newIndexRequest(78));
+    assertThat(indexer.getBulkCount()).isEqualTo(2);
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(2);
+  }
+
+  @Test
+  public void report_failure_and_restore_settings_on_stop() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setLarge(true)
+      .setFlushByteSize(new ByteSizeValue(1, ByteSizeUnit.BYTES).bytes());
+    indexer.start();
+    assertThat(replicas()).isEqualTo(0);
+
+    // request without source is rejected by the bulk
+    // failure is not thrown by add()
+    indexer.add(new IndexRequest(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE));
+    try {
+      indexer.stop();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to execute bulk requests on index " + FakeIndexDefinition.INDEX);
+    }
+
+    // replicas are re-enabled and indexer can be started again
+    assertThat(replicas()).isEqualTo(1);
+    indexer.start();
+    indexer.add(newIndexRequest(78));
+    indexer.stop();
+    assertThat(count()).isEqualTo(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fail_if_negative_concurrent_requests() throws Exception {
+    new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX).setConcurrentRequests(-1);
+  }
+
+  @Test
+  public void adapt_flush_size_to_bulk_duration() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(800L);
+    assertThat(indexer.getCurrentFlushByteSize()).isEqualTo(800L);
+
+    // slow bulks
+    indexer.adaptFlushByteSize(5000L);
+    assertThat(indexer.getCurrentFlushByteSize()).isEqualTo(400L);
+    indexer.adaptFlushByteSize(5000L);
+    indexer.adaptFlushByteSize(5000L);
+    indexer.adaptFlushByteSize(5000L);
+    indexer.adaptFlushByteSize(5000L);
+    assertThat(indexer.getCurrentFlushByteSize()).isEqualTo(100L);
+
+    // normal bulk
+    indexer.adaptFlushByteSize(1000L);
+    assertThat(indexer.getCurrentFlushByteSize()).isEqualTo(100L);
+
+    // fast bulks
+    indexer.adaptFlushByteSize(10L);
+    assertThat(indexer.getCurrentFlushByteSize()).isEqualTo(200L);
+    indexer.adaptFlushByteSize(10L);
+    indexer.adaptFlushByteSize(10L);
+    indexer.adaptFlushByteSize(10L);
+    assertThat(indexer.getCurrentFlushByteSize()).isEqualTo(800L);
+  }
+
   private long count() {
     return esTester.countDocuments("fakes", "fake");
   }
@@ -0,0 +1,173 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class MeasureFilterCacheTest {
+
+  static final long PROJECT_1 = 10L;
+  static final long PROJECT_2 = 20L;
+
+  MeasureFilterCache cache = new MeasureFilterCache(30);
+
+  @Test
+  public void keep_rows_until_any_project_is_analyzed() {
+    List<MeasureFilterRow> rows = Arrays.asList(new MeasureFilterRow(1L, 2L, PROJECT_1));
+    cache.put("key", rows, cache.version(), false);
+
+    assertThat(cache.get("key")).isEqualTo(rows);
+    assertThat(cache.get("other")).isNull();
+
+    cache.invalidate(PROJECT_2);
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.rows()).isEqualTo(0L);
+    assertThat(cache.get("key")).isNull();
+    assertThat(cache.hits()).isEqualTo(1L);
+    assertThat(cache.misses()).isEqualTo(2L);
+  }
+
+  @Test
+  public void keep_rows_of_base_resource_until_its_project_is_analyzed() {
+    List<MeasureFilterRow> rows = Arrays.asList(new MeasureFilterRow(1L, 2L, PROJECT_1));
+    cache.put("key", rows, cache.version(), true);
+
+    cache.invalidate(PROJECT_2);
+    assertThat(cache.get("key")).isEqualTo(rows);
+
+    cache.invalidate(PROJECT_1);
+    assertThat(cache.get("key")).isNull();
+  }
+
+  @Test
+  public void empty_rows_of_base_resource_depend_on_all_projects() {
+    cache.put("key", Collections.<MeasureFilterRow>emptyList(), cache.version(), true);
+    assertThat(cache.get("key")).isEmpty();
+
+    cache.invalidate(PROJECT_2);
+    assertThat(cache.get("key")).isNull();
+  }
+
+  @Test
+  public void do_not_keep_rows_if_a_project_is_analyzed_during_execution() {
+    long version = cache.version();
+    cache.invalidate(PROJECT_1);
+    cache.put("key", Arrays.asList(new MeasureFilterRow(1L, 2L, PROJECT_1)), version, false);
+
+    assertThat(cache.get("key")).isNull();
+  }
+
+  @Test
+  public void evict_least_recently_used_rows() {
+    for (int i = 0; i < 10; i++) {
+      cache.put("key" + i, rows(3), cache.version(), false);
+    }
+    assertThat(cache.rows()).isEqualTo(30L);
+    cache.get("key0");
+    cache.put("other", rows(2), cache.version(), false);
+
+    assertThat(cache.rows()).isEqualTo(29L);
+    assertThat(cache.size()).isEqualTo(10);
+    assertThat(cache.get("key1")).isNull();
+    assertThat(cache.get("key0")).isNotNull();
+  }
+
+  @Test
+  public void do_not_cache_rows_of_big_filters() {
+    cache.put("key", rows(4), cache.version(), false);
+
+    assertThat(cache.get("key")).isNull();
+    assertThat(cache.rows()).isEqualTo(0L);
+  }
+
+  @Test
+  public void evict_invalidated_rows_of_base_resource() {
+    cache.put("project1", Arrays.asList(new MeasureFilterRow(1L, 2L, PROJECT_1)), cache.version(), true);
+    cache.put("project2", Arrays.asList(new MeasureFilterRow(3L, 4L, PROJECT_2)), cache.version(), true);
+
+    cache.invalidate(PROJECT_1);
+
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.get("project2")).isNotNull();
+  }
+
+  @Test
+  public void key_does_not_depend_on_order_of_criteria() {
+    Map<String, Object> map1 = ImmutableMap.<String, Object>of("qualifiers", Arrays.asList("TRK", "VW"), "sort", "name");
+    Map<String, Object> map2 = ImmutableMap.<String, Object>of("sort", "name", "qualifiers", new String[] {"TRK", "VW"});
+
+    assertThat(MeasureFilterCache.key(map1)).isEqualTo(MeasureFilterCache.key(map2));
+  }
+
+  @Test
+  public void key_does_not_depend_on_pagination_nor_limit() {
+    Map<String, Object> map1 = ImmutableMap.<String, Object>of("qualifiers", "TRK", "page", "1", "pageSize", "20");
+    Map<String, Object> map2 = ImmutableMap.<String, Object>of("qualifiers", "TRK", "page", "3", "limit", "100");
+    Map<String, Object> map3 = ImmutableMap.<String, Object>of("qualifiers", "VW", "page", "1", "pageSize", "20");
+
+    assertThat(MeasureFilterCache.key(map1)).isEqualTo(MeasureFilterCache.key(map2));
+    assertThat(MeasureFilterCache.key(map1)).isNotEqualTo(MeasureFilterCache.key(map3));
+  }
+
+  @Test
+  public void do_not_cache_favourites_nor_age_of_snapshots() {
+    Map<String, Object> map = ImmutableMap.<String, Object>of("qualifiers", "TRK");
+    assertThat(cache.isCacheable(map, new MeasureFilter())).isTrue();
+    assertThat(cache.isCacheable(map, new MeasureFilter().setUserFavourites(true))).isFalse();
+    assertThat(cache.isCacheable(ImmutableMap.<String, Object>of("ageMaxDays", "3"), new MeasureFilter())).isFalse();
+    assertThat(new MeasureFilterCache(0).isCacheable(map, new MeasureFilter())).isFalse();
+  }
+
+  @Test
+  public void max_rows_is_configurable() {
+    Settings settings = new Settings();
+    assertThat(new MeasureFilterCache(settings).isCacheable(ImmutableMap.<String, Object>of(), new MeasureFilter())).isTrue();
+
+    settings.setProperty(MeasureFilterCache.MAX_ROWS_PROPERTY, 0);
+    assertThat(new MeasureFilterCache(settings).isCacheable(ImmutableMap.<String, Object>of(), new MeasureFilter())).isFalse();
+
+    settings.setProperty(MeasureFilterCache.MAX_ROWS_PROPERTY, -1);
+    try {
+      new MeasureFilterCache(settings);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Bad value of sonar.measureFilters.cacheMaxRows: -1");
+    }
+  }
+
+  private static List<MeasureFilterRow> rows(int count) {
+    List<MeasureFilterRow> rows = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      rows.add(new MeasureFilterRow(i, i, PROJECT_1));
+    }
+    return rows;
+  }
+}
@@ -24,14 +24,22 @@ import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.junit.Test;
 import org.sonar.api.config.Settings;
+import org.sonar.api.measures.MetricFinder;
+import org.sonar.api.utils.System2;
 import org.sonar.core.profiling.Profiling;
+import org.sonar.server.exceptions.BadRequestException;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.refEq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -45,7 +53,7 @@ public class MeasureFilterEngineTest {
     when(factory.create(filterMap)).thenReturn(filter);
     MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
 
-    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, new Profiling(new Settings()));
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, new MeasureFilterCache(10), new Profiling(new Settings()));
 
     final long userId = 50L;
     engine.execute(filterMap, userId);
@@ -60,6 +68,27 @@ public class MeasureFilterEngineTest {
     }));
   }
 
+  @Test
+  public void execute_filter_only_once_until_cache_is_invalidated() throws Exception {
+    Map<String, Object> filterMap = ImmutableMap.of("qualifiers", (Object) "TRK");
+    MeasureFilterFactory factory = mock(MeasureFilterFactory.class);
+    MeasureFilter filter = new MeasureFilter();
+    when(factory.create(filterMap)).thenReturn(filter);
+    MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
+    List<MeasureFilterRow> rows = Arrays.asList(new MeasureFilterRow(1L, 2L, 3L));
+    when(executor.execute(eq(filter), any(MeasureFilterContext.class))).thenReturn(rows);
+    MeasureFilterCache cache = new MeasureFilterCache(10);
+
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, cache, new Profiling(new Settings()));
+    assertThat(engine.execute(filterMap, 50L).getRows()).isEqualTo(rows);
+    assertThat(engine.execute(filterMap, 51L).getRows()).isEqualTo(rows);
+    verify(executor, times(1)).execute(eq(filter), any(MeasureFilterContext.class));
+
+    cache.invalidate(3L);
+    engine.execute(filterMap, 50L);
+    verify(executor, times(2)).execute(eq(filter), any(MeasureFilterContext.class));
+  }
+
   @Test
   public void keep_error_but_do_not_fail() throws Exception {
     Map<String, Object> filterMap = ImmutableMap.of("qualifiers", (Object) "TRK");
@@ -67,11 +96,20 @@ public class MeasureFilterEngineTest {
     when(factory.create(filterMap)).thenThrow(new IllegalArgumentException());
     MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
 
-    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, new Profiling(new Settings()));
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, new MeasureFilterCache(10), new Profiling(new Settings()));
     MeasureFilterResult result = engine.execute(filterMap, 50L);
 
     assertThat(result.isSuccess()).isFalse();
     assertThat(result.getError()).isEqualTo(MeasureFilterResult.Error.UNKNOWN);
     assertThat(result.getRows()).isNull();
   }
+
+  @Test(expected = BadRequestException.class)
+  public void fail_if_bad_request() throws Exception {
+    Map<String, Object> filterMap = ImmutableMap.of("limit", (Object) "-1");
+    MeasureFilterFactory factory = new MeasureFilterFactory(mock(MetricFinder.class), System2.INSTANCE);
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, mock(MeasureFilterExecutor.class), new MeasureFilterCache(10), new Profiling(new Settings()));
+
+    engine.execute(filterMap, 50L);
+  }
 }
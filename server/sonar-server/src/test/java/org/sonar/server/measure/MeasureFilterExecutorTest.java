@@ -157,6 +157,16 @@ public class MeasureFilterExecutorTest {
     assertThat(filter.sort().metric()).isNull();
   }
 
+  @Test
+  public void filter_is_not_valid_if_limit_is_not_positive() {
+    MeasureFilterContext context = new MeasureFilterContext();
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setLimit(0);
+    assertThat(MeasureFilterExecutor.isValid(filter, context)).isFalse();
+
+    filter.setLimit(1);
+    assertThat(MeasureFilterExecutor.isValid(filter, context)).isTrue();
+  }
+
   @Test
   public void sort_by_ascending_resource_name() throws SQLException {
     db.prepareDbUnit(getClass(), "shared.xml");
@@ -287,6 +297,18 @@ public class MeasureFilterExecutorTest {
     verifyPhpProject(rows.get(1));
   }
 
+  @Test
+  public void limit_is_not_applied_to_rows_before_permissions_are_checked() throws SQLException {
+    db.prepareDbUnit(getClass(), "shared.xml");
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("CLA")).setSortOnMetric(METRIC_LINES).setSortAsc(false).setLimit(1);
+    List<MeasureFilterRow> rows = executor.execute(filter, new MeasureFilterContext());
+
+    // Big -> Tiny, sorted by database
+    assertThat(rows).hasSize(2);
+    verifyJavaBigFile(rows.get(0));
+    verifyJavaTinyFile(rows.get(1));
+  }
+
   @Test
   public void sort_by_missing_numeric_measure() throws SQLException {
     db.prepareDbUnit(getClass(), "shared.xml");
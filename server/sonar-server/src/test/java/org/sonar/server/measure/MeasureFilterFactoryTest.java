@@ -28,6 +28,7 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.System2;
+import org.sonar.server.exceptions.BadRequestException;
 
 import java.util.Arrays;
 import java.util.List;
@@ -126,6 +127,28 @@ public class MeasureFilterFactoryTest {
     assertThat(filter.sort().isAsc()).isTrue();
   }
 
+  @Test
+  public void limit() {
+    MeasureFilterFactory factory = new MeasureFilterFactory(newMetricFinder(), system);
+    MeasureFilter filter = factory.create(ImmutableMap.<String, Object>of("limit", "20"));
+    assertThat(filter.getLimit()).isEqualTo(20);
+
+    filter = factory.create(Maps.<String, Object>newHashMap());
+    assertThat(filter.getLimit()).isNull();
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void fail_if_limit_is_not_a_number() {
+    MeasureFilterFactory factory = new MeasureFilterFactory(newMetricFinder(), system);
+    factory.create(ImmutableMap.<String, Object>of("limit", "ten"));
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void fail_if_limit_is_negative() {
+    MeasureFilterFactory factory = new MeasureFilterFactory(newMetricFinder(), system);
+    factory.create(ImmutableMap.<String, Object>of("limit", "-5"));
+  }
+
   @Test
   public void date_conditions() {
     MeasureFilterFactory factory = new MeasureFilterFactory(newMetricFinder(), system);
@@ -0,0 +1,137 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.search;
+
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.platform.ComponentContainer;
+import org.sonar.core.persistence.Dto;
+import org.sonar.server.search.action.DeleteKey;
+import org.sonar.server.search.action.IndexAction;
+import org.sonar.server.search.action.RefreshIndex;
+import org.sonar.server.search.action.UpsertDto;
+import org.sonar.server.search.action.UpsertNestedItem;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class IndexQueueTest {
+
+  @Test
+  public void coalesce_upserts_of_same_document() {
+    IndexAction<?> upsertA1 = new UpsertDto<FakeDto>("TYPE", new FakeDto("A"));
+    IndexAction<?> upsertB = new UpsertDto<FakeDto>("TYPE", new FakeDto("B"));
+    IndexAction<?> upsertA2 = new UpsertDto<FakeDto>("TYPE", new FakeDto("A"));
+    IndexAction<?> upsertOtherTypeA = new UpsertDto<FakeDto>("OTHER_TYPE", new FakeDto("A"));
+
+    List<IndexAction<?>> actions = IndexQueue.coalesce(Arrays.<IndexAction<?>>asList(upsertA1, upsertB, upsertA2, upsertOtherTypeA));
+
+    assertThat(actions).containsExactly(upsertB, upsertA2, upsertOtherTypeA);
+  }
+
+  @Test
+  public void do_not_coalesce_upserts_separated_by_other_action_on_same_document() {
+    IndexAction<?> upsertA1 = new UpsertDto<FakeDto>("TYPE", new FakeDto("A"));
+    IndexAction<?> deleteA = new DeleteKey<String>("TYPE", "A");
+    IndexAction<?> upsertA2 = new UpsertDto<FakeDto>("TYPE", new FakeDto("A"));
+    IndexAction<?> nestedA = new UpsertNestedItem<String>("TYPE", "A", "item");
+    IndexAction<?> upsertA3 = new UpsertDto<FakeDto>("TYPE", new FakeDto("A"));
+    IndexAction<?> refresh = new RefreshIndex("TYPE");
+
+    List<IndexAction<?>> actions = IndexQueue.coalesce(Arrays.<IndexAction<?>>asList(upsertA1, deleteA, upsertA2, nestedA, upsertA3, refresh));
+
+    assertThat(actions).containsExactly(upsertA1, deleteA, upsertA2, nestedA, upsertA3, refresh);
+  }
+
+  @Test
+  public void keep_upsert_requiring_refresh() {
+    IndexAction<?> upsertWithRefresh = new UpsertDto<FakeDto>("TYPE", new FakeDto("A"), true);
+    IndexAction<?> upsertWithoutRefresh = new UpsertDto<FakeDto>("TYPE", new FakeDto("A"), false);
+
+    List<IndexAction<?>> actions = IndexQueue.coalesce(Arrays.<IndexAction<?>>asList(upsertWithRefresh, upsertWithoutRefresh));
+
+    assertThat(actions).containsExactly(upsertWithRefresh, upsertWithoutRefresh);
+  }
+
+  @Test
+  public void report_asynchronous_indexing_failure_to_committing_thread() throws Exception {
+    Settings settings = new Settings().setProperty(IndexQueue.ASYNC_PROPERTY, true);
+    // no index is registered, so indexing fails
+    final IndexQueue queue = new IndexQueue(mock(SearchClient.class), mock(ComponentContainer.class), settings);
+    try {
+      queue.enqueue(Arrays.<IndexAction<?>>asList(new UpsertDto<FakeDto>("TYPE", new FakeDto("A"))));
+
+      // other threads are not impacted
+      Thread otherThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          queue.waitForIndex();
+        }
+      });
+      otherThread.start();
+      otherThread.join();
+
+      try {
+        queue.waitForIndex();
+        fail();
+      } catch (IllegalStateException e) {
+        assertThat(e).hasMessage("Failed to index previous commits");
+      }
+      // failure is reported only once
+      queue.waitForIndex();
+    } finally {
+      queue.stop();
+    }
+  }
+
+  @Test
+  public void do_not_report_failures_of_commits_once_cleared() throws Exception {
+    Settings settings = new Settings().setProperty(IndexQueue.ASYNC_PROPERTY, true);
+    IndexQueue queue = new IndexQueue(mock(SearchClient.class), mock(ComponentContainer.class), settings);
+    try {
+      queue.enqueue(Arrays.<IndexAction<?>>asList(new UpsertDto<FakeDto>("TYPE", new FakeDto("A"))));
+
+      // end of HTTP request, the thread is reused by another request
+      queue.clearThreadCommits();
+
+      // does not wait for nor fail because of the commit of the previous request
+      queue.waitForIndex();
+    } finally {
+      queue.stop();
+    }
+  }
+
+  private static class FakeDto extends Dto<String> {
+    private final String key;
+
+    FakeDto(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+  }
+}
@@ -119,6 +119,28 @@ public class SourceLineIndexerTest {
       );
   }
 
+  @Test
+  public void unindex_lines_removed_from_files() throws Exception {
+    addSource("line2.json");
+    addSource("line3.json");
+    addSource("line2_other_file.json");
+    es.client().prepareRefresh(INDEX).get();
+
+    // both files have now only one line
+    SourceLineResultSetIterator.SourceFile file1 = new SourceLineResultSetIterator.SourceFile("efgh", System.currentTimeMillis());
+    file1.addLine(newLine("efgh", 1));
+    SourceLineResultSetIterator.SourceFile file2 = new SourceLineResultSetIterator.SourceFile("fdsq", System.currentTimeMillis());
+    file2.addLine(newLine("fdsq", 1));
+    indexer.index(Iterators.forArray(file1, file2));
+
+    assertThat(countDocuments()).isEqualTo(2L);
+    SearchResponse fileSearch = prepareSearch()
+      .setQuery(QueryBuilders.termQuery(FIELD_FILE_UUID, "efgh"))
+      .get();
+    assertThat(fileSearch.getHits().getTotalHits()).isEqualTo(1L);
+    assertThat(fileSearch.getHits().getHits()[0].sourceAsMap().get(FIELD_LINE)).isEqualTo(1);
+  }
+
   @Test
   public void delete_file_uuid() throws Exception {
     addSource("line2.json");
@@ -186,6 +208,16 @@ public class SourceLineIndexerTest {
     assertThat(document.get(FIELD_OVERALL_COVERED_CONDITIONS)).isEqualTo(bigValue);
   }
 
+  private SourceLineDoc newLine(String fileUuid, int line) {
+    return new SourceLineDoc(ImmutableMap.<String, Object>builder()
+      .put(FIELD_PROJECT_UUID, "abcd")
+      .put(FIELD_FILE_UUID, fileUuid)
+      .put(FIELD_LINE, line)
+      .put(FIELD_SOURCE, "// line " + line)
+      .put(BaseNormalizer.UPDATED_AT_FIELD, new Date())
+      .build());
+  }
+
   private void addSource(String fileName) throws Exception {
     prepareIndex()
       .setSource(IOUtils.toString(new FileInputStream(TestUtils.getResource(this.getClass(), fileName))))
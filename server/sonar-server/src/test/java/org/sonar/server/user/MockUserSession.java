@@ -20,6 +20,7 @@
 package org.sonar.server.user;
 
 import com.google.common.collect.HashMultimap;
+import org.sonar.api.utils.System2;
 import org.sonar.core.resource.ResourceDao;
 import org.sonar.core.user.AuthorizationDao;
 
@@ -113,4 +114,9 @@ public class MockUserSession extends UserSession {
   ResourceDao resourceDao() {
     return resourceDao;
   }
+
+  @Override
+  ProjectPermissionCache projectPermissionCache() {
+    return new ProjectPermissionCache(authorizationDao, 0, 0L, System2.INSTANCE);
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.api.web.UserRole;
+import org.sonar.core.user.AuthorizationDao;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ProjectPermissionCacheTest {
+
+  AuthorizationDao dao = mock(AuthorizationDao.class);
+  System2 system2 = mock(System2.class);
+
+  @Before
+  public void setUp() throws Exception {
+    when(system2.now()).thenReturn(1000L);
+    when(dao.selectAuthorizedRootProjectsKeys(1, UserRole.USER)).thenReturn(newArrayList("P1", "P2"));
+    when(dao.selectAuthorizedRootProjectsUuids(1, UserRole.USER)).thenReturn(newArrayList("UUID1"));
+  }
+
+  @Test
+  public void load_projects_once() throws Exception {
+    ProjectPermissionCache cache = new ProjectPermissionCache(dao, new Settings(), system2);
+
+    assertThat(cache.projectKeys(1, UserRole.USER)).containsOnly("P1", "P2");
+    assertThat(cache.projectKeys(1, UserRole.USER)).containsOnly("P1", "P2");
+    assertThat(cache.projectUuids(1, UserRole.USER)).containsOnly("UUID1");
+    assertThat(cache.projectUuids(1, UserRole.USER)).containsOnly("UUID1");
+
+    verify(dao, times(1)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+    verify(dao, times(1)).selectAuthorizedRootProjectsUuids(1, UserRole.USER);
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void entries_are_per_user_and_permission() throws Exception {
+    ProjectPermissionCache cache = new ProjectPermissionCache(dao, new Settings(), system2);
+    when(dao.selectAuthorizedRootProjectsKeys(2, UserRole.USER)).thenReturn(newArrayList("P3"));
+    when(dao.selectAuthorizedRootProjectsKeys(null, UserRole.USER)).thenReturn(newArrayList("P4"));
+
+    assertThat(cache.projectKeys(1, UserRole.USER)).containsOnly("P1", "P2");
+    assertThat(cache.projectKeys(2, UserRole.USER)).containsOnly("P3");
+    assertThat(cache.projectKeys(null, UserRole.USER)).containsOnly("P4");
+    assertThat(cache.projectKeys(1, UserRole.ADMIN)).isEmpty();
+    assertThat(cache.size()).isEqualTo(4);
+  }
+
+  @Test
+  public void reload_projects_after_invalidation() throws Exception {
+    ProjectPermissionCache cache = new ProjectPermissionCache(dao, new Settings(), system2);
+    cache.projectKeys(1, UserRole.USER);
+
+    cache.invalidate();
+    when(dao.selectAuthorizedRootProjectsKeys(1, UserRole.USER)).thenReturn(newArrayList("P1"));
+
+    assertThat(cache.projectKeys(1, UserRole.USER)).containsOnly("P1");
+  }
+
+  @Test
+  public void reload_projects_when_entry_expires() throws Exception {
+    ProjectPermissionCache cache = new ProjectPermissionCache(dao, 10, 100L, system2);
+    cache.projectKeys(1, UserRole.USER);
+
+    when(system2.now()).thenReturn(1099L);
+    cache.projectKeys(1, UserRole.USER);
+    verify(dao, times(1)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+
+    when(system2.now()).thenReturn(1100L);
+    cache.projectKeys(1, UserRole.USER);
+    verify(dao, times(2)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+  }
+
+  @Test
+  public void evict_least_recently_used_entries() throws Exception {
+    ProjectPermissionCache cache = new ProjectPermissionCache(dao, 2, 1000L, system2);
+
+    cache.projectKeys(1, UserRole.USER);
+    cache.projectKeys(2, UserRole.USER);
+    cache.projectKeys(1, UserRole.USER);
+    cache.projectKeys(3, UserRole.USER);
+
+    assertThat(cache.size()).isEqualTo(2);
+    cache.projectKeys(1, UserRole.USER);
+    verify(dao, times(1)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+    cache.projectKeys(2, UserRole.USER);
+    verify(dao, times(2)).selectAuthorizedRootProjectsKeys(2, UserRole.USER);
+  }
+
+  @Test
+  public void disable_cache() throws Exception {
+    ProjectPermissionCache cache = new ProjectPermissionCache(dao, new Settings().setProperty(ProjectPermissionCache.SIZE_PROPERTY, 0), system2);
+
+    cache.projectKeys(1, UserRole.USER);
+    cache.projectKeys(1, UserRole.USER);
+
+    verify(dao, times(2)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void fail_if_negative_ttl() throws Exception {
+    try {
+      new ProjectPermissionCache(dao, new Settings().setProperty(ProjectPermissionCache.TTL_PROPERTY, -1), system2);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Bad value of sonar.authorization.cacheTtlSeconds: -1");
+    }
+  }
+}
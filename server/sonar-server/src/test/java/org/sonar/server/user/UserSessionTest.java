@@ -21,6 +21,7 @@ package org.sonar.server.user;
 
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.System2;
 import org.sonar.api.web.UserRole;
 import org.sonar.core.permission.GlobalPermissions;
 import org.sonar.core.resource.ResourceDao;
@@ -222,5 +223,10 @@ public class UserSessionTest {
       return resourceDao;
     }
 
+    @Override
+    ProjectPermissionCache projectPermissionCache() {
+      return new ProjectPermissionCache(authorizationDao, 0, 0L, System2.INSTANCE);
+    }
+
   }
 }
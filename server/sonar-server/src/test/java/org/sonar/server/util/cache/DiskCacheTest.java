@@ -25,9 +25,10 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.System2;
 import org.sonar.server.util.CloseableIterator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
@@ -39,7 +40,7 @@ public class DiskCacheTest {
 
   @Test
   public void write_and_read() throws Exception {
-    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE);
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec());
     try (CloseableIterator<String> traverse = cache.traverse()) {
       assertThat(traverse).isEmpty();
     }
@@ -51,12 +52,50 @@ public class DiskCacheTest {
     try (CloseableIterator<String> traverse = cache.traverse()) {
       assertThat(traverse).containsExactly("foo", "bar");
     }
+    assertThat(cache.isSpilledToDisk()).isTrue();
+  }
+
+  @Test
+  public void traverse_multiple_times() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec());
+    cache.newAppender().append("foo").close();
+    cache.newAppender().append("bar").close();
+
+    for (int i = 0; i < 3; i++) {
+      try (CloseableIterator<String> traverse = cache.traverse()) {
+        assertThat(traverse).containsExactly("foo", "bar");
+      }
+    }
+  }
+
+  @Test
+  public void keep_in_memory_until_threshold_is_reached() throws Exception {
+    File file = temp.newFile();
+    DiskCache<String> cache = new DiskCache<>(file, System2.INSTANCE, new StringCodec(), 100);
+
+    cache.newAppender().append("foo").append("bar").close();
+    assertThat(cache.isSpilledToDisk()).isFalse();
+    assertThat(file.length()).isEqualTo(0L);
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar");
+    }
+
+    DiskCache<String>.DiskAppender appender = cache.newAppender();
+    for (int i = 0; i < 100; i++) {
+      appender.append("value" + i);
+    }
+    appender.close();
+    assertThat(cache.isSpilledToDisk()).isTrue();
+    assertThat(file.length()).isGreaterThan(100L);
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).hasSize(102);
+    }
   }
 
   @Test
   public void fail_if_file_is_not_writable() throws Exception {
     try {
-      new DiskCache<>(temp.newFolder(), System2.INSTANCE);
+      new DiskCache<>(temp.newFolder(), System2.INSTANCE, new StringCodec());
       fail();
     } catch (IllegalStateException e) {
       assertThat(e).hasMessageContaining("Fail to write into file");
@@ -64,18 +103,30 @@ public class DiskCacheTest {
   }
 
   @Test
-  public void fail_to_serialize() throws Exception {
-    class Unserializable implements Serializable {
-      private void writeObject(ObjectOutputStream out) throws IOException {
-        throw new UnsupportedOperationException("expected error");
+  public void fail_to_encode() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec() {
+      @Override
+      public void write(String object, DataOutput output) throws IOException {
+        throw new IOException("expected error");
       }
-    }
-    DiskCache<Serializable> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE);
+    });
     try {
-      cache.newAppender().append(new Unserializable());
+      cache.newAppender().append("foo");
       fail();
-    } catch (UnsupportedOperationException e) {
-      assertThat(e).hasMessage("expected error");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Fail to write into file");
+    }
+  }
+
+  private static class StringCodec implements ObjectCodec<String> {
+    @Override
+    public void write(String object, DataOutput output) throws IOException {
+      Codecs.writeString(output, object);
+    }
+
+    @Override
+    public String read(DataInput input) throws IOException {
+      return Codecs.readString(input);
     }
   }
 }
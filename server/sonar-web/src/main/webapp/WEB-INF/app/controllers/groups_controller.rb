@@ -78,6 +78,7 @@ class GroupsController < ApplicationController
     call_backend do
       Internal.permission_templates.removeGroupFromTemplates(group.name)
       if group.destroy
+        Internal.project_permission_cache.invalidate()
         flash[:notice] = 'Group is deleted.'
       end
     end
@@ -163,6 +164,7 @@ class GroupsController < ApplicationController
     if user && group
       group.users << user
       status = 200 if group.save
+      Internal.project_permission_cache.invalidate()
     end
     render :status => status, :text => '{}'
   end
@@ -180,6 +182,7 @@ class GroupsController < ApplicationController
       if user_from_group
         group.users.delete(user_from_group)
         status = 200 if group.save
+        Internal.project_permission_cache.invalidate()
       else
         status = 200  
       end
@@ -58,6 +58,10 @@ class Internal
     component(Java::OrgSonarServerUser::GroupMembershipService.java_class)
   end
 
+  def self.project_permission_cache
+    component(Java::OrgSonarServerUser::ProjectPermissionCache.java_class)
+  end
+
   def self.quality_profiles
     component(Java::OrgSonarServerQualityprofile::QProfiles.java_class)
   end
@@ -245,6 +245,9 @@ class MeasureFilter < ActiveRecord::Base
     authorized_project_ids = controller.select_authorized(:user, project_ids)
     snapshot_ids = rows.map { |row| row.getSnapshotId() if authorized_project_ids.include?(row.getResourceRootId()) }.compact
     @security_exclusions = (snapshot_ids.size<rows.size)
+    # the limit is applied after permissions, so that it does not depend on the projects the user can browse
+    limit = criteria(:limit)
+    snapshot_ids = snapshot_ids[0...limit.to_i] if limit
     @pagination = Api::Pagination.new
     @pagination.per_page=(criteria(:pageSize)||999999).to_i
     @pagination.page=(criteria(:page)||1).to_i
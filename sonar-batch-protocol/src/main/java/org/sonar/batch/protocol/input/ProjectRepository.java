@@ -19,25 +19,39 @@
  */
 package org.sonar.batch.protocol.input;
 
+import com.google.gson.Gson;
 import org.sonar.batch.protocol.GsonHelper;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 /**
  * Container for all project data going from server to batch.
  * This is not an API since server and batch always share the same version.
+ * <p/>
+ * Data is split into sections (settings, quality profiles with active rules, file data). Each section
+ * can be identified by a digest of its content, so that a batch which already knows a section
+ * does not need to download it again (see {@link #removeUnchangedSections(Map)} and {@link #restoreUnchangedSections(ProjectRepository)}).
  */
 public class ProjectRepository {
 
+  public static final String SETTINGS_SECTION = "settings";
+  public static final String QPROFILES_SECTION = "qprofiles";
+  public static final String FILE_DATA_SECTION = "fileData";
+
   private long timestamp;
   private Map<String, QProfile> qprofilesByLanguage = new HashMap<String, QProfile>();
   private Collection<ActiveRule> activeRules = new ArrayList<ActiveRule>();
   private Map<String, Map<String, String>> settingsByModule = new HashMap<String, Map<String, String>>();
   private Map<String, Map<String, FileData>> fileDataByModuleAndPath = new HashMap<String, Map<String, FileData>>();
   private Date lastAnalysisDate;
+  private Map<String, String> digestsBySection;
+  private Set<String> unchangedSections;
 
   public Map<String, String> settings(String moduleKey) {
     return settingsByModule.containsKey(moduleKey) ? settingsByModule.get(moduleKey) : Collections.<String, String>emptyMap();
@@ -107,6 +121,125 @@ public class ProjectRepository {
     this.lastAnalysisDate = lastAnalysisDate;
   }
 
+  /**
+   * Digests of sections, as computed by {@link #computeDigests()}. Empty if digests were never computed.
+   */
+  public Map<String, String> digestsBySection() {
+    return digestsBySection != null ? digestsBySection : Collections.<String, String>emptyMap();
+  }
+
+  /**
+   * Sections that were not sent because they did not change since the digests given by the batch.
+   */
+  public Set<String> unchangedSections() {
+    return unchangedSections != null ? unchangedSections : Collections.<String>emptySet();
+  }
+
+  public ProjectRepository computeDigests() {
+    Gson gson = GsonHelper.create();
+    digestsBySection = new HashMap<>();
+    digestsBySection.put(SETTINGS_SECTION, digest(gson.toJson(sortedSettings())));
+    digestsBySection.put(QPROFILES_SECTION, digest(gson.toJson(new TreeMap<>(qprofilesByLanguage)) + gson.toJson(sortedActiveRules())));
+    digestsBySection.put(FILE_DATA_SECTION, digest(gson.toJson(sortedFileData())));
+    return this;
+  }
+
+  /**
+   * Empty the sections whose digest is the same as the one known by the batch. Requires {@link #computeDigests()}
+   * to be called before.
+   */
+  public ProjectRepository removeUnchangedSections(Map<String, String> knownDigestsBySection) {
+    unchangedSections = new HashSet<>();
+    for (Map.Entry<String, String> entry : digestsBySection().entrySet()) {
+      if (entry.getValue().equals(knownDigestsBySection.get(entry.getKey()))) {
+        unchangedSections.add(entry.getKey());
+      }
+    }
+    if (unchangedSections.contains(SETTINGS_SECTION)) {
+      settingsByModule = new HashMap<>();
+    }
+    if (unchangedSections.contains(QPROFILES_SECTION)) {
+      qprofilesByLanguage = new HashMap<>();
+      activeRules = new ArrayList<>();
+    }
+    if (unchangedSections.contains(FILE_DATA_SECTION)) {
+      fileDataByModuleAndPath = new HashMap<>();
+    }
+    return this;
+  }
+
+  /**
+   * Copy the sections that were not sent by server from the repository downloaded during a previous analysis.
+   */
+  public ProjectRepository restoreUnchangedSections(ProjectRepository previous) {
+    if (unchangedSections().contains(SETTINGS_SECTION)) {
+      settingsByModule = previous.settingsByModule;
+    }
+    if (unchangedSections().contains(QPROFILES_SECTION)) {
+      qprofilesByLanguage = previous.qprofilesByLanguage;
+      activeRules = previous.activeRules;
+    }
+    if (unchangedSections().contains(FILE_DATA_SECTION)) {
+      fileDataByModuleAndPath = previous.fileDataByModuleAndPath;
+    }
+    unchangedSections = null;
+    return this;
+  }
+
+  /**
+   * Copy of this repository without the settings section, which can contain secured properties and
+   * must not be stored by the batch.
+   */
+  public ProjectRepository withoutSettings() {
+    ProjectRepository copy = fromJson(toJson());
+    copy.settingsByModule = new HashMap<>();
+    if (copy.digestsBySection != null) {
+      copy.digestsBySection.remove(SETTINGS_SECTION);
+    }
+    return copy;
+  }
+
+  private Map<String, Map<String, String>> sortedSettings() {
+    Map<String, Map<String, String>> sorted = new TreeMap<>();
+    for (Map.Entry<String, Map<String, String>> entry : settingsByModule.entrySet()) {
+      sorted.put(entry.getKey(), new TreeMap<>(entry.getValue()));
+    }
+    return sorted;
+  }
+
+  private Map<String, Map<String, FileData>> sortedFileData() {
+    Map<String, Map<String, FileData>> sorted = new TreeMap<>();
+    for (Map.Entry<String, Map<String, FileData>> entry : fileDataByModuleAndPath.entrySet()) {
+      sorted.put(entry.getKey(), new TreeMap<>(entry.getValue()));
+    }
+    return sorted;
+  }
+
+  private List<ActiveRule> sortedActiveRules() {
+    List<ActiveRule> sorted = new ArrayList<>(activeRules);
+    Collections.sort(sorted, new Comparator<ActiveRule>() {
+      @Override
+      public int compare(ActiveRule o1, ActiveRule o2) {
+        int result = o1.repositoryKey().compareTo(o2.repositoryKey());
+        return result != 0 ? result : o1.ruleKey().compareTo(o2.ruleKey());
+      }
+    });
+    return sorted;
+  }
+
+  private static String digest(String json) {
+    try {
+      byte[] bytes = MessageDigest.getInstance("MD5").digest(json.getBytes("UTF-8"));
+      StringBuilder sb = new StringBuilder();
+      for (byte b : bytes) {
+        sb.append(String.format("%02x", b));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+      throw new IllegalStateException("Fail to compute digest", e);
+    }
+  }
+
   public String toJson() {
     return GsonHelper.create().toJson(this);
   }
@@ -40,8 +40,8 @@ public class PreviousIssueHelper implements Closeable {
 
   private PreviousIssueHelper(Writer out) {
     try {
+      // no indentation, as the stream can contain hundreds of thousands of issues
       this.writer = new JsonWriter(out);
-      writer.setIndent("  ");
       writer.beginArray();
     } catch (IOException e) {
       throw new IllegalStateException("Unable to open writer", e);
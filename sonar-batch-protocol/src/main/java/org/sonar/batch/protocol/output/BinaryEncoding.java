@@ -0,0 +1,95 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import org.apache.commons.io.Charsets;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-length encoding of numbers and strings used by the binary report format.
+ * Numbers are encoded on 7 bits per byte, the highest bit flagging that more bytes follow.
+ */
+class BinaryEncoding {
+
+  private BinaryEncoding() {
+    // only static stuff
+  }
+
+  static void writeVarLong(OutputStream out, long value) throws IOException {
+    long v = value;
+    while ((v & ~0x7FL) != 0L) {
+      out.write((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.write((int) v);
+  }
+
+  static long readVarLong(ByteBuffer buffer) {
+    long result = 0L;
+    int shift = 0;
+    while (shift < 64) {
+      byte b = buffer.get();
+      result |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+      shift += 7;
+    }
+    throw new IllegalStateException("Malformed variable-length number");
+  }
+
+  static int readVarInt(ByteBuffer buffer) {
+    return (int) readVarLong(buffer);
+  }
+
+  /**
+   * Zigzag encoding, so that small negative values are encoded on a few bytes
+   */
+  static void writeSignedVarLong(OutputStream out, long value) throws IOException {
+    writeVarLong(out, (value << 1) ^ (value >> 63));
+  }
+
+  static long readSignedVarLong(ByteBuffer buffer) {
+    long v = readVarLong(buffer);
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  static void writeString(OutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(Charsets.UTF_8);
+    writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(ByteBuffer buffer) {
+    int length = readVarInt(buffer);
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  static void writeLong(OutputStream out, long value) throws IOException {
+    for (int i = 56; i >= 0; i -= 8) {
+      out.write((int) (value >>> i) & 0xFF);
+    }
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import org.apache.commons.io.IOUtils;
+import org.sonar.batch.protocol.output.issue.ReportIssue;
+
+import javax.annotation.CheckForNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.sonar.batch.protocol.output.BinaryEncoding.readSignedVarLong;
+import static org.sonar.batch.protocol.output.BinaryEncoding.readString;
+import static org.sonar.batch.protocol.output.BinaryEncoding.readVarInt;
+import static org.sonar.batch.protocol.output.BinaryEncoding.readVarLong;
+import static org.sonar.batch.protocol.output.BinaryIssuesWriter.*;
+
+/**
+ * Reads the file written by {@link BinaryIssuesWriter}. The file is memory-mapped, so blocks of
+ * components are accessed without being copied in heap. Only the index of blocks and the table of
+ * interned strings are loaded when opening the file.
+ * <p/>
+ * Once opened, the reader can be used by multiple threads.
+ */
+public class BinaryIssuesReader implements Closeable {
+
+  private final File file;
+  private final RandomAccessFile randomAccessFile;
+  private final ByteBuffer buffer;
+  private final String[] strings;
+  private final Map<Long, Block> blocks = new LinkedHashMap<>();
+
+  public BinaryIssuesReader(File file) {
+    this.file = file;
+    try {
+      this.randomAccessFile = new RandomAccessFile(file, "r");
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read " + file, e);
+    }
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalStateException("File is too big to be memory-mapped: " + file);
+      }
+      this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      long tableOffset = readTrailer();
+      this.strings = readStrings(tableOffset);
+      indexBlocks(tableOffset);
+    } catch (IOException e) {
+      IOUtils.closeQuietly(randomAccessFile);
+      throw new IllegalStateException("Unable to read " + file, e);
+    } catch (RuntimeException e) {
+      IOUtils.closeQuietly(randomAccessFile);
+      throw e;
+    }
+  }
+
+  private long readTrailer() {
+    int size = buffer.limit();
+    if (size < 5 + TRAILER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(size - 4) != MAGIC) {
+      throw new IllegalStateException("Not a binary issues file or file is truncated: " + file);
+    }
+    int version = buffer.get(4);
+    if (version != VERSION) {
+      throw new IllegalStateException(String.format("Unsupported version %d of binary issues file %s", version, file));
+    }
+    return buffer.getLong(size - TRAILER_SIZE);
+  }
+
+  private String[] readStrings(long tableOffset) {
+    ByteBuffer table = buffer.duplicate();
+    table.position((int) tableOffset);
+    String[] result = new String[readVarInt(table)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = readString(table);
+    }
+    return result;
+  }
+
+  private void indexBlocks(long tableOffset) {
+    ByteBuffer index = buffer.duplicate();
+    index.position(5);
+    while (index.position() < tableOffset) {
+      long componentBatchId = readVarLong(index);
+      int count = readVarInt(index);
+      int size = readVarInt(index);
+      if (blocks.put(componentBatchId, new Block(index.position(), count)) != null) {
+        throw new IllegalStateException(String.format("Issues of component %d are written twice in %s", componentBatchId, file));
+      }
+      index.position(index.position() + size);
+    }
+  }
+
+  /**
+   * Batch ids of components, in the order they have been written
+   */
+  public Collection<Long> componentBatchIds() {
+    return Collections.unmodifiableSet(blocks.keySet());
+  }
+
+  /**
+   * @return the number of issues of component, without decoding them
+   */
+  public int countIssues(long componentBatchId) {
+    Block block = blocks.get(componentBatchId);
+    return block == null ? 0 : block.count;
+  }
+
+  public Iterable<ReportIssue> getIssues(long componentBatchId) {
+    final Block block = blocks.get(componentBatchId);
+    if (block == null) {
+      return Collections.emptyList();
+    }
+    return new Iterable<ReportIssue>() {
+      @Override
+      public Iterator<ReportIssue> iterator() {
+        return new BlockIterator(block);
+      }
+    };
+  }
+
+  /**
+   * Decodes all the issues of a component. Convenient for tests and small components.
+   */
+  public List<ReportIssue> readIssues(long componentBatchId) {
+    List<ReportIssue> result = new ArrayList<>(countIssues(componentBatchId));
+    for (ReportIssue issue : getIssues(componentBatchId)) {
+      result.add(issue);
+    }
+    return result;
+  }
+
+  @Override
+  public void close() {
+    try {
+      randomAccessFile.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to close " + file, e);
+    }
+  }
+
+  private static class Block {
+    private final int offset;
+    private final int count;
+
+    Block(int offset, int count) {
+      this.offset = offset;
+      this.count = count;
+    }
+  }
+
+  private class BlockIterator implements Iterator<ReportIssue> {
+    private final ByteBuffer input;
+    private int remaining;
+    private int previousLine = 0;
+
+    BlockIterator(Block block) {
+      this.input = buffer.duplicate();
+      this.input.position(block.offset);
+      this.remaining = block.count;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    public ReportIssue next() {
+      if (remaining <= 0) {
+        throw new NoSuchElementException();
+      }
+      remaining--;
+      return readIssue();
+    }
+
+    private ReportIssue readIssue() {
+      int bits = readVarInt(input);
+      int flags = input.get();
+      ReportIssue issue = new ReportIssue()
+        .setNew((flags & NEW_FLAG) != 0)
+        .setManualSeverity((flags & MANUAL_SEVERITY_FLAG) != 0)
+        .setChanged((flags & CHANGED_FLAG) != 0);
+
+      String ruleRepo = readInterned();
+      String ruleKey = readInterned();
+      issue.setRuleKey(ruleRepo, ruleKey);
+      issue.setSeverity(readInterned());
+      issue.setStatus(readInterned());
+      issue.setResolution(readInterned());
+      issue.setReporter(readInterned());
+      issue.setAssignee(readInterned());
+      issue.setActionPlanKey(readInterned());
+      issue.setAuthorLogin(readInterned());
+
+      if (isSet(bits, COMPONENT_BIT)) {
+        issue.setComponentBatchId(readVarLong(input));
+      }
+      if (isSet(bits, LINE_BIT)) {
+        previousLine += (int) readSignedVarLong(input);
+        issue.setLine(previousLine);
+      }
+      if (isSet(bits, MESSAGE_BIT)) {
+        issue.setMessage(readString(input));
+      }
+      if (isSet(bits, EFFORT_BIT)) {
+        issue.setEffortToFix(Double.longBitsToDouble(input.getLong()));
+      }
+      if (isSet(bits, DEBT_BIT)) {
+        issue.setDebt(readVarLong(input));
+      }
+      if (isSet(bits, CHECKSUM_BIT)) {
+        issue.setChecksum(readString(input));
+      }
+      if (isSet(bits, KEY_BIT)) {
+        issue.setKey(readString(input));
+      }
+      if (isSet(bits, ATTRIBUTES_BIT)) {
+        issue.setAttributes(readString(input));
+      }
+      if (isSet(bits, DIFF_FIELDS_BIT)) {
+        issue.setDiffFields(readString(input));
+      }
+      if (isSet(bits, CREATION_DATE_BIT)) {
+        issue.setCreationDate(new Date(readVarLong(input)));
+      }
+      if (isSet(bits, CLOSE_DATE_BIT)) {
+        issue.setCloseDate(new Date(readVarLong(input)));
+      }
+      if (isSet(bits, UPDATE_DATE_BIT)) {
+        issue.setUpdateDate(new Date(readVarLong(input)));
+      }
+      if (isSet(bits, SELECTED_AT_BIT)) {
+        issue.setSelectedAt(readVarLong(input));
+      }
+      if (isSet(bits, TAGS_BIT)) {
+        int size = readVarInt(input);
+        List<String> tags = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          tags.add(readInterned());
+        }
+        issue.setTags(tags);
+      }
+      return issue;
+    }
+
+    @CheckForNull
+    private String readInterned() {
+      int id = readVarInt(input);
+      return id == 0 ? null : strings[id - 1];
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+
+  private static boolean isSet(int bits, int bit) {
+    return (bits & bit) != 0;
+  }
+}
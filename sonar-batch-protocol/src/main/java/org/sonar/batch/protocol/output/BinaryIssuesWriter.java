@@ -0,0 +1,268 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import org.sonar.batch.protocol.output.issue.ReportIssue;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.sonar.batch.protocol.output.BinaryEncoding.writeLong;
+import static org.sonar.batch.protocol.output.BinaryEncoding.writeSignedVarLong;
+import static org.sonar.batch.protocol.output.BinaryEncoding.writeString;
+import static org.sonar.batch.protocol.output.BinaryEncoding.writeVarLong;
+
+/**
+ * Writes the issues of all the components of a report in a single append-only binary file. It is a compact
+ * alternative to the JSON files written by {@link ReportHelper#saveIssues(long, Iterable)}. The file is read
+ * by {@link BinaryIssuesReader}.
+ * <p/>
+ * Layout of file:
+ * <ul>
+ *   <li>header: magic number and version</li>
+ *   <li>one block per component: batch id, number of issues, size in bytes of issues, issues. The issues
+ *   of a component must be appended at once.</li>
+ *   <li>table of interned strings (rule keys, severities, statuses, logins...)</li>
+ *   <li>trailer: offset of the table of strings and magic number</li>
+ * </ul>
+ * Numbers are variable-length encoded. Lines are encoded as the delta with the line of the previous
+ * issue of the same component.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public class BinaryIssuesWriter implements Closeable {
+
+  static final int MAGIC = 0x534F4E49;
+  static final int VERSION = 1;
+  static final int TRAILER_SIZE = 12;
+
+  // bits of the nullable fields which are present
+  static final int COMPONENT_BIT = 1;
+  static final int LINE_BIT = 1 << 1;
+  static final int MESSAGE_BIT = 1 << 2;
+  static final int EFFORT_BIT = 1 << 3;
+  static final int DEBT_BIT = 1 << 4;
+  static final int CHECKSUM_BIT = 1 << 5;
+  static final int KEY_BIT = 1 << 6;
+  static final int ATTRIBUTES_BIT = 1 << 7;
+  static final int DIFF_FIELDS_BIT = 1 << 8;
+  static final int CREATION_DATE_BIT = 1 << 9;
+  static final int CLOSE_DATE_BIT = 1 << 10;
+  static final int UPDATE_DATE_BIT = 1 << 11;
+  static final int SELECTED_AT_BIT = 1 << 12;
+  static final int TAGS_BIT = 1 << 13;
+
+  // boolean fields
+  static final int NEW_FLAG = 1;
+  static final int MANUAL_SEVERITY_FLAG = 1 << 1;
+  static final int CHANGED_FLAG = 1 << 2;
+
+  private final File file;
+  private final OutputStream output;
+  private final ByteArrayOutputStream block = new ByteArrayOutputStream(4096);
+  private final Map<String, Integer> stringIds = new HashMap<>();
+  private final List<String> strings = new ArrayList<>();
+  private final Set<Long> componentBatchIds = new HashSet<>();
+  private long offset = 0L;
+
+  public BinaryIssuesWriter(File file) {
+    this.file = file;
+    try {
+      this.output = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+      writeInt(MAGIC);
+      write(VERSION);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to create " + file, e);
+    }
+  }
+
+  public BinaryIssuesWriter append(long componentBatchId, Iterable<ReportIssue> issues) {
+    if (!componentBatchIds.add(componentBatchId)) {
+      throw new IllegalArgumentException("Issues of component " + componentBatchId + " are already written in " + file);
+    }
+    try {
+      block.reset();
+      int count = 0;
+      int previousLine = 0;
+      for (ReportIssue issue : issues) {
+        previousLine = writeIssue(issue, previousLine);
+        count++;
+      }
+      ByteArrayOutputStream header = new ByteArrayOutputStream(16);
+      writeVarLong(header, componentBatchId);
+      writeVarLong(header, count);
+      writeVarLong(header, block.size());
+      header.writeTo(output);
+      block.writeTo(output);
+      offset += header.size() + block.size();
+      return this;
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to write issues of component " + componentBatchId + " in " + file, e);
+    }
+  }
+
+  /**
+   * @return the line of the issue if not null, else the line of previous issue
+   */
+  private int writeIssue(ReportIssue issue, int previousLine) throws IOException {
+    writeVarLong(block, presenceBits(issue));
+    int flags = (issue.isNew() ? NEW_FLAG : 0) | (issue.isManualSeverity() ? MANUAL_SEVERITY_FLAG : 0) | (issue.isChanged() ? CHANGED_FLAG : 0);
+    block.write(flags);
+
+    writeInterned(issue.ruleRepo());
+    writeInterned(issue.ruleKey());
+    writeInterned(issue.severity());
+    writeInterned(issue.status());
+    writeInterned(issue.resolution());
+    writeInterned(issue.reporter());
+    writeInterned(issue.assignee());
+    writeInterned(issue.actionPlanKey());
+    writeInterned(issue.authorLogin());
+
+    if (issue.componentBatchId() != null) {
+      writeVarLong(block, issue.componentBatchId());
+    }
+    int line = previousLine;
+    if (issue.line() != null) {
+      line = issue.line();
+      writeSignedVarLong(block, (long) line - previousLine);
+    }
+    writeNullableString(issue.message());
+    if (issue.effortToFix() != null) {
+      writeLong(block, Double.doubleToLongBits(issue.effortToFix()));
+    }
+    if (issue.debt() != null) {
+      writeVarLong(block, issue.debt());
+    }
+    writeNullableString(issue.checksum());
+    writeNullableString(issue.key());
+    writeNullableString(issue.issueAttributes());
+    writeNullableString(issue.diffFields());
+    writeNullableDate(issue.creationDate());
+    writeNullableDate(issue.closeDate());
+    writeNullableDate(issue.updateDate());
+    if (issue.selectedAt() != null) {
+      writeVarLong(block, issue.selectedAt());
+    }
+    if (issue.tags() != null) {
+      writeVarLong(block, issue.tags().size());
+      for (String tag : issue.tags()) {
+        writeInterned(tag);
+      }
+    }
+    return line;
+  }
+
+  private static int presenceBits(ReportIssue issue) {
+    int bits = 0;
+    bits |= issue.componentBatchId() != null ? COMPONENT_BIT : 0;
+    bits |= issue.line() != null ? LINE_BIT : 0;
+    bits |= issue.message() != null ? MESSAGE_BIT : 0;
+    bits |= issue.effortToFix() != null ? EFFORT_BIT : 0;
+    bits |= issue.debt() != null ? DEBT_BIT : 0;
+    bits |= issue.checksum() != null ? CHECKSUM_BIT : 0;
+    bits |= issue.key() != null ? KEY_BIT : 0;
+    bits |= issue.issueAttributes() != null ? ATTRIBUTES_BIT : 0;
+    bits |= issue.diffFields() != null ? DIFF_FIELDS_BIT : 0;
+    bits |= issue.creationDate() != null ? CREATION_DATE_BIT : 0;
+    bits |= issue.closeDate() != null ? CLOSE_DATE_BIT : 0;
+    bits |= issue.updateDate() != null ? UPDATE_DATE_BIT : 0;
+    bits |= issue.selectedAt() != null ? SELECTED_AT_BIT : 0;
+    bits |= issue.tags() != null ? TAGS_BIT : 0;
+    return bits;
+  }
+
+  /**
+   * 0 is null, else the id of string in table plus one
+   */
+  private void writeInterned(@Nullable String s) throws IOException {
+    if (s == null) {
+      block.write(0);
+      return;
+    }
+    Integer id = stringIds.get(s);
+    if (id == null) {
+      id = strings.size();
+      strings.add(s);
+      stringIds.put(s, id);
+    }
+    writeVarLong(block, id + 1L);
+  }
+
+  private void writeNullableString(@Nullable String s) throws IOException {
+    if (s != null) {
+      writeString(block, s);
+    }
+  }
+
+  private void writeNullableDate(@Nullable Date date) throws IOException {
+    if (date != null) {
+      writeVarLong(block, date.getTime());
+    }
+  }
+
+  /**
+   * Writes the table of strings and the trailer
+   */
+  @Override
+  public void close() {
+    try {
+      long tableOffset = offset;
+      ByteArrayOutputStream table = new ByteArrayOutputStream();
+      writeVarLong(table, strings.size());
+      for (String s : strings) {
+        writeString(table, s);
+      }
+      table.writeTo(output);
+      writeLong(output, tableOffset);
+      writeInt(MAGIC);
+      output.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to close " + file, e);
+    }
+  }
+
+  private void writeInt(int i) throws IOException {
+    output.write(i >>> 24);
+    output.write((i >>> 16) & 0xFF);
+    output.write((i >>> 8) & 0xFF);
+    output.write(i & 0xFF);
+    offset += 4;
+  }
+
+  private void write(int b) throws IOException {
+    output.write(b);
+    offset++;
+  }
+}
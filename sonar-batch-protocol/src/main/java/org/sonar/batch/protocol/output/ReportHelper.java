@@ -20,30 +20,35 @@
 package org.sonar.batch.protocol.output;
 
 import com.google.gson.Gson;
-import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import org.apache.commons.io.Charsets;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.sonar.batch.protocol.GsonHelper;
 import org.sonar.batch.protocol.output.component.ReportComponents;
 import org.sonar.batch.protocol.output.issue.ReportIssue;
 
+import javax.annotation.CheckForNull;
+
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class ReportHelper {
 
-  private static final String COMPONENTS_JSON = "components.json";
+  static final String COMPONENTS_JSON = "components.json";
+  private static final Pattern ISSUES_FILE_PATTERN = Pattern.compile("(?:.*/)?issues-(\\d+)\\.json");
+
   private final File reportRootDir;
   private final Gson gson = GsonHelper.create();
 
@@ -89,7 +94,23 @@ public class ReportHelper {
   }
 
   private File getIssuesFile(long componentBatchId) {
-    return new File(getComponentFolder(componentBatchId), "issues-" + componentBatchId + ".json");
+    return new File(getComponentFolder(componentBatchId), issuesFileName(componentBatchId));
+  }
+
+  private static String issuesFileName(long componentBatchId) {
+    return "issues-" + componentBatchId + ".json";
+  }
+
+  /**
+   * @return the batch id of the component if the path is the one of an issues file, else null
+   */
+  @CheckForNull
+  static Long componentBatchIdOfIssuesFile(String path) {
+    Matcher matcher = ISSUES_FILE_PATTERN.matcher(path);
+    if (matcher.matches()) {
+      return Long.parseLong(matcher.group(1));
+    }
+    return null;
   }
 
   private File getComponentFolder(long componentBatchId) {
@@ -103,9 +124,8 @@ public class ReportHelper {
   public ReportComponents getComponents() {
     File file = new File(reportRootDir, COMPONENTS_JSON);
 
-    try (InputStream resourcesStream = new FileInputStream(file)) {
-      String json = IOUtils.toString(resourcesStream);
-      return ReportComponents.fromJson(json);
+    try (Reader reader = new InputStreamReader(new BufferedInputStream(new FileInputStream(file)), Charsets.UTF_8)) {
+      return ReportComponents.fromJson(reader);
     } catch (IOException e) {
       throw new IllegalStateException("Failed to read issues", e);
     }
@@ -116,55 +136,49 @@ public class ReportHelper {
     return new Iterable<ReportIssue>() {
       @Override
       public Iterator<ReportIssue> iterator() {
-        return new ReportIssueIterator(getIssuesFile(componentBatchId));
+        File issuesFile = getIssuesFile(componentBatchId);
+        try {
+          return new ReportIssueIterator(gson, new InputStreamReader(new BufferedInputStream(new FileInputStream(issuesFile)), Charsets.UTF_8));
+        } catch (IOException e) {
+          throw new IllegalStateException("Unable to read " + issuesFile, e);
+        }
       }
     };
   }
 
-  private final class ReportIssueIterator implements Iterator<ReportIssue> {
-
-    private JsonReader reader;
-
-    public ReportIssueIterator(File issuesFile) {
-      try {
-        reader = new JsonReader(new InputStreamReader(new BufferedInputStream(new FileInputStream(issuesFile)), Charsets.UTF_8));
-        reader.beginArray();
-      } catch (IOException e) {
-        throw new IllegalStateException("Unable to read " + issuesFile, e);
-      }
-    }
-
-    @Override
-    public boolean hasNext() {
-      try {
-        if (reader.hasNext()) {
-          return true;
+  /**
+   * Compresses the report into a single file. The components are written in the first entry,
+   * so that the zip file can be read sequentially without being extracted, see {@link ZippedReportReader}.
+   */
+  public void zip(File zipFile) {
+    try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+      addToZip(out, COMPONENTS_JSON, new File(reportRootDir, COMPONENTS_JSON));
+      File[] files = reportRootDir.listFiles();
+      if (files != null) {
+        for (File componentFolder : files) {
+          if (componentFolder.isDirectory()) {
+            addComponentFolderToZip(out, componentFolder);
+          }
         }
-        reader.endArray();
-        reader.close();
-        return false;
-      } catch (IOException e) {
-        IOUtils.closeQuietly(reader);
-        throw new IllegalStateException("Unable to iterate over JSON file ", e);
       }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to zip report to " + zipFile, e);
     }
+  }
 
-    @Override
-    public ReportIssue next() {
-      try {
-        if (!reader.hasNext()) {
-          throw new NoSuchElementException();
-        }
-      } catch (IOException e) {
-        throw new IllegalStateException("Unable to iterate over JSON file ", e);
+  private static void addComponentFolderToZip(ZipOutputStream out, File componentFolder) throws IOException {
+    File[] files = componentFolder.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        addToZip(out, componentFolder.getName() + "/" + file.getName(), file);
       }
-      return gson.fromJson(reader, ReportIssue.class);
     }
+  }
 
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException("remove");
-    }
+  private static void addToZip(ZipOutputStream out, String entryName, File file) throws IOException {
+    out.putNextEntry(new ZipEntry(entryName));
+    FileUtils.copyFile(file, out);
+    out.closeEntry();
   }
 
 }
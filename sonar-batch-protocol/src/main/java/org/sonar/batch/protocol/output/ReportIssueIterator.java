@@ -0,0 +1,77 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.apache.commons.io.IOUtils;
+import org.sonar.batch.protocol.output.issue.ReportIssue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pull parser of a JSON array of issues. The reader is closed when the end of array is reached.
+ */
+class ReportIssueIterator implements Iterator<ReportIssue> {
+
+  private final Gson gson;
+  private final JsonReader reader;
+
+  ReportIssueIterator(Gson gson, Reader reader) throws IOException {
+    this.gson = gson;
+    this.reader = new JsonReader(reader);
+    this.reader.beginArray();
+  }
+
+  @Override
+  public boolean hasNext() {
+    try {
+      if (reader.hasNext()) {
+        return true;
+      }
+      reader.endArray();
+      reader.close();
+      return false;
+    } catch (IOException e) {
+      IOUtils.closeQuietly(reader);
+      throw new IllegalStateException("Unable to iterate over JSON file ", e);
+    }
+  }
+
+  @Override
+  public ReportIssue next() {
+    try {
+      if (!reader.hasNext()) {
+        throw new NoSuchElementException();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to iterate over JSON file ", e);
+    }
+    return gson.fromJson(reader, ReportIssue.class);
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import com.google.gson.Gson;
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.sonar.batch.protocol.GsonHelper;
+import org.sonar.batch.protocol.output.component.ReportComponents;
+import org.sonar.batch.protocol.output.issue.ReportIssue;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the report zipped by {@link ReportHelper#zip(java.io.File)} sequentially, entry after entry,
+ * without extracting it on disk. Components and issues are parsed while the stream is decompressed, so
+ * memory does not depend on the size of the report, except for the tree of components.
+ */
+public class ZippedReportReader {
+
+  public interface Visitor {
+    /**
+     * Always called before {@link #visitIssues(long, Iterable)}
+     */
+    void visitComponents(ReportComponents components);
+
+    /**
+     * Issues are parsed on the fly. They can be iterated only once, and only during this call.
+     */
+    void visitIssues(long componentBatchId, Iterable<ReportIssue> issues);
+  }
+
+  private final Gson gson = GsonHelper.create();
+
+  /**
+   * The stream is not closed by this method.
+   */
+  public void read(InputStream zippedReport, Visitor visitor) {
+    ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new CloseShieldInputStream(zippedReport)));
+    boolean componentsVisited = false;
+    try {
+      ZipEntry entry = zip.getNextEntry();
+      while (entry != null) {
+        if (!entry.isDirectory()) {
+          componentsVisited |= readEntry(zip, entry.getName(), componentsVisited, visitor);
+        }
+        entry = zip.getNextEntry();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read zipped report", e);
+    }
+    if (!componentsVisited) {
+      throw new IllegalStateException("Zipped report does not contain " + ReportHelper.COMPONENTS_JSON);
+    }
+  }
+
+  /**
+   * @return true if the entry is the components
+   */
+  private boolean readEntry(ZipInputStream zip, String entryName, boolean componentsVisited, Visitor visitor) {
+    if (ReportHelper.COMPONENTS_JSON.equals(entryName)) {
+      visitor.visitComponents(ReportComponents.fromJson(entryReader(zip)));
+      return true;
+    }
+    Long componentBatchId = ReportHelper.componentBatchIdOfIssuesFile(entryName);
+    if (componentBatchId != null) {
+      if (!componentsVisited) {
+        throw new IllegalStateException(String.format("Entry %s must be located after %s in zipped report", entryName, ReportHelper.COMPONENTS_JSON));
+      }
+      visitor.visitIssues(componentBatchId, new EntryIssues(zip));
+    }
+    return false;
+  }
+
+  private static Reader entryReader(ZipInputStream zip) {
+    // closing the reader must not close the zip stream
+    return new InputStreamReader(new CloseShieldInputStream(zip), Charsets.UTF_8);
+  }
+
+  private class EntryIssues implements Iterable<ReportIssue> {
+    private final ZipInputStream zip;
+    private boolean iterated = false;
+
+    EntryIssues(ZipInputStream zip) {
+      this.zip = zip;
+    }
+
+    @Override
+    public Iterator<ReportIssue> iterator() {
+      if (iterated) {
+        throw new IllegalStateException("Issues of zipped report can be iterated only once");
+      }
+      iterated = true;
+      try {
+        return new ReportIssueIterator(gson, entryReader(zip));
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to read issues of zipped report", e);
+      }
+    }
+  }
+}
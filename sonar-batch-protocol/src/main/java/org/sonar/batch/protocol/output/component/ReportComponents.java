@@ -21,6 +21,7 @@ package org.sonar.batch.protocol.output.component;
 
 import org.sonar.batch.protocol.GsonHelper;
 
+import java.io.Reader;
 import java.util.Date;
 
 public class ReportComponents {
@@ -54,4 +55,11 @@ public class ReportComponents {
     return GsonHelper.create().fromJson(json, ReportComponents.class);
   }
 
+  /**
+   * The reader is not closed by this method.
+   */
+  public static ReportComponents fromJson(Reader json) {
+    return GsonHelper.create().fromJson(json, ReportComponents.class);
+  }
+
 }
@@ -25,6 +25,7 @@ import org.skyscreamer.jsonassert.JSONAssert;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.HashMap;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -101,4 +102,73 @@ public class ProjectRepositoryTest {
 
     assertThat(ref.lastAnalysisDate()).isEqualTo(new SimpleDateFormat("dd/MM/yyyy").parse("31/10/2014"));
   }
+
+  @Test
+  public void digests_do_not_depend_on_order() {
+    ProjectRepository ref1 = new ProjectRepository();
+    ref1.addActiveRule(new ActiveRule("repo", "rule1", "Rule1", "MAJOR", "rule1", "java"));
+    ref1.addActiveRule(new ActiveRule("repo", "rule2", "Rule2", "MAJOR", "rule2", "java"));
+    ref1.addFileData("foo", "src/A.java", new FileData("a", true, null, null, null));
+    ref1.addFileData("foo", "src/B.java", new FileData("b", true, null, null, null));
+
+    ProjectRepository ref2 = new ProjectRepository();
+    ref2.addActiveRule(new ActiveRule("repo", "rule2", "Rule2", "MAJOR", "rule2", "java"));
+    ref2.addActiveRule(new ActiveRule("repo", "rule1", "Rule1", "MAJOR", "rule1", "java"));
+    ref2.addFileData("foo", "src/B.java", new FileData("b", true, null, null, null));
+    ref2.addFileData("foo", "src/A.java", new FileData("a", true, null, null, null));
+
+    assertThat(ref1.digestsBySection()).isEmpty();
+    assertThat(ref1.computeDigests().digestsBySection()).isEqualTo(ref2.computeDigests().digestsBySection());
+    assertThat(ref1.digestsBySection()).hasSize(3);
+
+    ref2.addFileData("foo", "src/B.java", new FileData("changed", true, null, null, null));
+    ref2.computeDigests();
+    assertThat(ref2.digestsBySection().get(ProjectRepository.FILE_DATA_SECTION)).isNotEqualTo(ref1.digestsBySection().get(ProjectRepository.FILE_DATA_SECTION));
+    assertThat(ref2.digestsBySection().get(ProjectRepository.QPROFILES_SECTION)).isEqualTo(ref1.digestsBySection().get(ProjectRepository.QPROFILES_SECTION));
+  }
+
+  @Test
+  public void remove_and_restore_unchanged_sections() {
+    ProjectRepository previous = new ProjectRepository();
+    previous.addSettings("foo", Collections.singletonMap("prop", "value"));
+    previous.addActiveRule(new ActiveRule("repo", "rule", "Rule", "MAJOR", "rule", "java"));
+    previous.addFileData("foo", "src/A.java", new FileData("a", true, null, null, null));
+    previous.computeDigests();
+
+    ProjectRepository ref = new ProjectRepository();
+    ref.addSettings("foo", Collections.singletonMap("prop", "value"));
+    ref.addActiveRule(new ActiveRule("repo", "rule", "Rule", "MAJOR", "rule", "java"));
+    ref.addFileData("foo", "src/A.java", new FileData("changed", true, null, null, null));
+    ref.computeDigests().removeUnchangedSections(previous.digestsBySection());
+
+    ProjectRepository received = ProjectRepository.fromJson(ref.toJson());
+    assertThat(received.unchangedSections()).containsOnly(ProjectRepository.SETTINGS_SECTION, ProjectRepository.QPROFILES_SECTION);
+    assertThat(received.settings("foo")).isEmpty();
+    assertThat(received.activeRules()).isEmpty();
+    assertThat(received.fileData("foo", "src/A.java").hash()).isEqualTo("changed");
+
+    received.restoreUnchangedSections(previous);
+    assertThat(received.unchangedSections()).isEmpty();
+    assertThat(received.settings("foo")).containsEntry("prop", "value");
+    assertThat(received.activeRules()).hasSize(1);
+    assertThat(received.fileData("foo", "src/A.java").hash()).isEqualTo("changed");
+  }
+
+  @Test
+  public void copy_without_settings() {
+    ProjectRepository ref = new ProjectRepository();
+    ref.addSettings("foo", Collections.singletonMap("sonar.login.secured", "secret"));
+    ref.addFileData("foo", "src/A.java", new FileData("a", true, null, null, null));
+    ref.computeDigests();
+
+    ProjectRepository copy = ref.withoutSettings();
+    assertThat(copy.settings("foo")).isEmpty();
+    assertThat(copy.digestsBySection()).containsOnlyKeys(ProjectRepository.QPROFILES_SECTION, ProjectRepository.FILE_DATA_SECTION);
+    assertThat(copy.fileData("foo", "src/A.java").hash()).isEqualTo("a");
+    assertThat(copy.toJson()).doesNotContain("secret");
+
+    // original is not modified
+    assertThat(ref.settings("foo")).containsEntry("sonar.login.secured", "secret");
+    assertThat(ref.digestsBySection()).containsKey(ProjectRepository.SETTINGS_SECTION);
+  }
 }
@@ -0,0 +1,166 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.batch.protocol.output.issue.ReportIssue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class BinaryIssuesWriterTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void write_and_read_issues() throws Exception {
+    File file = temp.newFile();
+    BinaryIssuesWriter writer = new BinaryIssuesWriter(file);
+    ReportIssue fullIssue = new ReportIssue()
+      .setKey("ABCDE")
+      .setComponentBatchId(1L)
+      .setRuleKey("squid", "AvoidCycle")
+      .setLine(150)
+      .setMessage("Do not do that \u00e9")
+      .setEffortToFix(2.5)
+      .setDebt(30L)
+      .setSeverity("MAJOR")
+      .setStatus("OPEN")
+      .setResolution("FIXED")
+      .setChecksum("123456")
+      .setManualSeverity(true)
+      .setReporter("julien")
+      .setAssignee("simon")
+      .setActionPlanKey("PLAN")
+      .setAttributes("JIRA=FOO-123")
+      .setAuthorLogin("eric")
+      .setCreationDate(new Date(1000L))
+      .setUpdateDate(new Date(2000L))
+      .setCloseDate(new Date(3000L))
+      .setSelectedAt(4000L)
+      .setDiffFields("severity=MINOR|MAJOR")
+      .setTags(Arrays.asList("bug", "cwe"))
+      .setNew(true)
+      .setChanged(true);
+    writer.append(1L, Arrays.asList(
+      fullIssue,
+      new ReportIssue().setRuleKey("squid", "AvoidCycle").setLine(10),
+      new ReportIssue().setRuleKey("squid", "S123")));
+    writer.append(2L, Collections.<ReportIssue>emptyList());
+    writer.append(3L, Arrays.asList(new ReportIssue().setRuleKey("squid", "S123").setSeverity("MAJOR").setLine(3)));
+    writer.close();
+
+    BinaryIssuesReader reader = new BinaryIssuesReader(file);
+    assertThat(reader.componentBatchIds()).containsExactly(1L, 2L, 3L);
+    assertThat(reader.countIssues(1L)).isEqualTo(3);
+    assertThat(reader.countIssues(2L)).isEqualTo(0);
+    assertThat(reader.countIssues(4L)).isEqualTo(0);
+    assertThat(reader.getIssues(4L)).isEmpty();
+
+    List<ReportIssue> issues = reader.readIssues(1L);
+    assertThat(issues).hasSize(3);
+    ReportIssue issue = issues.get(0);
+    assertThat(issue.key()).isEqualTo("ABCDE");
+    assertThat(issue.componentBatchId()).isEqualTo(1L);
+    assertThat(issue.ruleRepo()).isEqualTo("squid");
+    assertThat(issue.ruleKey()).isEqualTo("AvoidCycle");
+    assertThat(issue.line()).isEqualTo(150);
+    assertThat(issue.message()).isEqualTo("Do not do that \u00e9");
+    assertThat(issue.effortToFix()).isEqualTo(2.5);
+    assertThat(issue.debt()).isEqualTo(30L);
+    assertThat(issue.severity()).isEqualTo("MAJOR");
+    assertThat(issue.status()).isEqualTo("OPEN");
+    assertThat(issue.resolution()).isEqualTo("FIXED");
+    assertThat(issue.checksum()).isEqualTo("123456");
+    assertThat(issue.isManualSeverity()).isTrue();
+    assertThat(issue.reporter()).isEqualTo("julien");
+    assertThat(issue.assignee()).isEqualTo("simon");
+    assertThat(issue.actionPlanKey()).isEqualTo("PLAN");
+    assertThat(issue.issueAttributes()).isEqualTo("JIRA=FOO-123");
+    assertThat(issue.authorLogin()).isEqualTo("eric");
+    assertThat(issue.creationDate()).isEqualTo(new Date(1000L));
+    assertThat(issue.updateDate()).isEqualTo(new Date(2000L));
+    assertThat(issue.closeDate()).isEqualTo(new Date(3000L));
+    assertThat(issue.selectedAt()).isEqualTo(4000L);
+    assertThat(issue.diffFields()).isEqualTo("severity=MINOR|MAJOR");
+    assertThat(issue.tags()).containsExactly("bug", "cwe");
+    assertThat(issue.isNew()).isTrue();
+    assertThat(issue.isChanged()).isTrue();
+
+    // lines are delta-encoded
+    assertThat(issues.get(1).line()).isEqualTo(10);
+    assertThat(issues.get(2).line()).isNull();
+    assertThat(issues.get(2).key()).isNull();
+    assertThat(issues.get(2).severity()).isNull();
+    assertThat(issues.get(2).tags()).isNull();
+    assertThat(issues.get(2).isNew()).isFalse();
+
+    ReportIssue otherComponentIssue = reader.readIssues(3L).get(0);
+    assertThat(otherComponentIssue.ruleKey()).isEqualTo("S123");
+    assertThat(otherComponentIssue.severity()).isEqualTo("MAJOR");
+    assertThat(otherComponentIssue.line()).isEqualTo(3);
+    reader.close();
+  }
+
+  @Test
+  public void fail_to_append_issues_of_component_twice() throws Exception {
+    File file = temp.newFile();
+    BinaryIssuesWriter writer = new BinaryIssuesWriter(file);
+    writer.append(1L, Arrays.asList(new ReportIssue().setRuleKey("squid", "S123")));
+    try {
+      writer.append(1L, Arrays.asList(new ReportIssue().setRuleKey("squid", "S456")));
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).startsWith("Issues of component 1 are already written");
+    } finally {
+      writer.close();
+    }
+
+    // first block is kept
+    BinaryIssuesReader reader = new BinaryIssuesReader(file);
+    assertThat(reader.readIssues(1L)).hasSize(1);
+    assertThat(reader.readIssues(1L).get(0).ruleKey()).isEqualTo("S123");
+    reader.close();
+  }
+
+  @Test
+  public void fail_to_read_truncated_file() throws Exception {
+    File file = temp.newFile();
+    BinaryIssuesWriter writer = new BinaryIssuesWriter(file);
+    writer.append(1L, Arrays.asList(new ReportIssue().setRuleKey("squid", "S123")));
+    // not closed
+
+    try {
+      new BinaryIssuesReader(file);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).startsWith("Not a binary issues file or file is truncated");
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.batch.protocol.output.component.ReportComponent;
+import org.sonar.batch.protocol.output.component.ReportComponents;
+import org.sonar.batch.protocol.output.issue.ReportIssue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ZippedReportReaderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void read_zipped_report_sequentially() throws Exception {
+    ReportHelper helper = ReportHelper.create(temp.newFolder());
+    helper.saveComponents(new ReportComponents().setRoot(new ReportComponent().setBatchId(1L)
+      .addChild(new ReportComponent().setBatchId(2L))));
+    helper.saveIssues(1L, Arrays.asList(new ReportIssue().setRuleKey("foo", "bar")));
+    helper.saveIssues(2L, Arrays.asList(new ReportIssue().setRuleKey("foo", "bar"), new ReportIssue().setRuleKey("foo", "baz")));
+    File zip = temp.newFile();
+    helper.zip(zip);
+
+    final List<Long> visitedComponents = new ArrayList<>();
+    final List<ReportIssue> visitedIssues = new ArrayList<>();
+    try (InputStream input = new FileInputStream(zip)) {
+      new ZippedReportReader().read(input, new ZippedReportReader.Visitor() {
+        @Override
+        public void visitComponents(ReportComponents components) {
+          assertThat(visitedIssues).isEmpty();
+          visitedComponents.add(components.root().batchId());
+        }
+
+        @Override
+        public void visitIssues(long componentBatchId, Iterable<ReportIssue> issues) {
+          for (ReportIssue issue : issues) {
+            visitedIssues.add(issue);
+          }
+        }
+      });
+    }
+
+    assertThat(visitedComponents).containsExactly(1L);
+    assertThat(visitedIssues).hasSize(3);
+  }
+
+  @Test
+  public void fail_if_issues_are_zipped_before_components() throws Exception {
+    File zip = temp.newFile();
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      out.putNextEntry(new ZipEntry("1/issues-1.json"));
+      out.write("[]".getBytes());
+      out.closeEntry();
+    }
+
+    try (InputStream input = new FileInputStream(zip)) {
+      new ZippedReportReader().read(input, new ZippedReportReader.Visitor() {
+        @Override
+        public void visitComponents(ReportComponents components) {
+        }
+
+        @Override
+        public void visitIssues(long componentBatchId, Iterable<ReportIssue> issues) {
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Entry 1/issues-1.json must be located after components.json in zipped report");
+    }
+  }
+
+  @Test
+  public void component_batch_id_of_issues_file() {
+    assertThat(ReportHelper.componentBatchIdOfIssuesFile("12/issues-12.json")).isEqualTo(12L);
+    assertThat(ReportHelper.componentBatchIdOfIssuesFile("issues-3.json")).isEqualTo(3L);
+    assertThat(ReportHelper.componentBatchIdOfIssuesFile("components.json")).isNull();
+  }
+}
@@ -52,6 +52,7 @@ import java.util.Set;
 public class DefaultDecoratorContext implements DecoratorContext {
 
   private static final String SAVE_MEASURE_METHOD = "saveMeasure";
+  // index is not thread-safe, whereas resources can be decorated concurrently (see DecoratorsExecutor)
   private SonarIndex sonarIndex;
   private Resource resource;
   private boolean readOnly = false;
@@ -95,7 +96,9 @@ public class DefaultDecoratorContext implements DecoratorContext {
 
   @Override
   public Project getProject() {
-    return sonarIndex.getProject();
+    synchronized (sonarIndex) {
+      return sonarIndex.getProject();
+    }
   }
 
   @Override
@@ -209,37 +212,51 @@ public class DefaultDecoratorContext implements DecoratorContext {
   @Override
   public Dependency saveDependency(Dependency dependency) {
     checkReadOnly("addDependency");
-    return sonarIndex.addDependency(dependency);
+    synchronized (sonarIndex) {
+      return sonarIndex.addDependency(dependency);
+    }
   }
 
   @Override
   public Set<Dependency> getDependencies() {
-    return sonarIndex.getDependencies();
+    synchronized (sonarIndex) {
+      return sonarIndex.getDependencies();
+    }
   }
 
   @Override
   public Collection<Dependency> getIncomingDependencies() {
-    return sonarIndex.getIncomingEdges(resource);
+    synchronized (sonarIndex) {
+      return sonarIndex.getIncomingEdges(resource);
+    }
   }
 
   @Override
   public Collection<Dependency> getOutgoingDependencies() {
-    return sonarIndex.getOutgoingEdges(resource);
+    synchronized (sonarIndex) {
+      return sonarIndex.getOutgoingEdges(resource);
+    }
   }
 
   @Override
   public List<Event> getEvents() {
-    return sonarIndex.getEvents(resource);
+    synchronized (sonarIndex) {
+      return sonarIndex.getEvents(resource);
+    }
   }
 
   @Override
   public Event createEvent(String name, String description, String category, Date date) {
-    return sonarIndex.addEvent(resource, name, description, category, date);
+    synchronized (sonarIndex) {
+      return sonarIndex.addEvent(resource, name, description, category, date);
+    }
   }
 
   @Override
   public void deleteEvent(Event event) {
-    sonarIndex.deleteEvent(event);
+    synchronized (sonarIndex) {
+      sonarIndex.deleteEvent(event);
+    }
   }
 
   @Override
@@ -247,7 +264,9 @@ public class DefaultDecoratorContext implements DecoratorContext {
     if (violation.getResource() == null) {
       violation.setResource(resource);
     }
-    sonarIndex.addViolation(violation, force);
+    synchronized (sonarIndex) {
+      sonarIndex.addViolation(violation, force);
+    }
     return this;
   }
 
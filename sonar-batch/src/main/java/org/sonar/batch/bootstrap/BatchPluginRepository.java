@@ -21,6 +21,7 @@ package org.sonar.batch.bootstrap;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.commons.lang.StringUtils;
@@ -42,6 +43,11 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
@@ -51,6 +57,11 @@ public class BatchPluginRepository implements PluginRepository {
   private static final Logger LOG = LoggerFactory.getLogger(BatchPluginRepository.class);
   private static final String CORE_PLUGIN = "core";
 
+  /**
+   * Plugins are downloaded and extracted concurrently, as it's mostly I/O
+   */
+  private static final int MAX_INSTALL_THREADS = 5;
+
   private PluginsReferential pluginsReferential;
   private Map<String, Plugin> pluginsByKey;
   private Map<String, PluginMetadata> metadataByKey;
@@ -83,20 +94,70 @@ public class BatchPluginRepository implements PluginRepository {
 
   void doStart(List<RemotePlugin> remotePlugins) {
     PluginFilter filter = new PluginFilter(settings, analysisMode);
-    metadataByKey = Maps.newHashMap();
+    List<RemotePlugin> acceptedPlugins = Lists.newArrayList();
     for (RemotePlugin remote : remotePlugins) {
       if (filter.accepts(remote.getKey())) {
-        File pluginFile = pluginsReferential.pluginFile(remote);
-        PluginMetadata metadata = pluginInstaller.installToCache(pluginFile, remote.isCore());
-        if (StringUtils.isBlank(metadata.getBasePlugin()) || filter.accepts(metadata.getBasePlugin())) {
-          metadataByKey.put(metadata.getKey(), metadata);
-        } else {
-          LOG.debug("Excluded plugin: " + metadata.getKey());
-        }
+        acceptedPlugins.add(remote);
       }
     }
+
+    long start = System.currentTimeMillis();
+    metadataByKey = Maps.newHashMap();
+    for (PluginMetadata metadata : install(acceptedPlugins)) {
+      if (StringUtils.isBlank(metadata.getBasePlugin()) || filter.accepts(metadata.getBasePlugin())) {
+        metadataByKey.put(metadata.getKey(), metadata);
+      } else {
+        LOG.debug("Excluded plugin: " + metadata.getKey());
+      }
+    }
+    long installed = System.currentTimeMillis();
+
     classLoaders = new PluginClassloaders(Thread.currentThread().getContextClassLoader());
     pluginsByKey = classLoaders.init(metadataByKey.values());
+    long loaded = System.currentTimeMillis();
+    LOG.info(String.format("%d plugins installed in %d ms (download and extraction: %d ms, class loading: %d ms)",
+      metadataByKey.size(), loaded - start, installed - start, loaded - installed));
+  }
+
+  /**
+   * Download (if not in cache) and extract plugins. Order of plugins is kept.
+   */
+  private List<PluginMetadata> install(List<RemotePlugin> remotePlugins) {
+    List<PluginMetadata> result = Lists.newArrayList();
+    if (remotePlugins.size() <= 1) {
+      for (RemotePlugin remote : remotePlugins) {
+        result.add(install(remote));
+      }
+      return result;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_INSTALL_THREADS, remotePlugins.size()));
+    try {
+      List<Future<PluginMetadata>> futures = Lists.newArrayList();
+      for (final RemotePlugin remote : remotePlugins) {
+        futures.add(executor.submit(new Callable<PluginMetadata>() {
+          @Override
+          public PluginMetadata call() {
+            return install(remote);
+          }
+        }));
+      }
+      for (Future<PluginMetadata> future : futures) {
+        result.add(future.get());
+      }
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while installing plugins", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private PluginMetadata install(RemotePlugin remote) {
+    File pluginFile = pluginsReferential.pluginFile(remote);
+    return pluginInstaller.installToCache(pluginFile, remote.isCore());
   }
 
   public void stop() {
@@ -0,0 +1,248 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.duplication;
+
+import com.google.common.collect.Maps;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.picocontainer.Startable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.config.Settings;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.home.cache.FileCache;
+
+import javax.annotation.CheckForNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Duplication blocks of files, kept between analyses in the user cache directory (see {@link FileCache}). Blocks
+ * depend only on the content of files, so they are identified by the hash of files. Blocks are separated
+ * in partitions, for example by language and size of blocks. Partitions are invalidated when the version of server changes.
+ * <p/>
+ * Each partition is a directory containing one file per file hash. Blocks are read from and written to disk file by file,
+ * so they are not kept in memory. Files are written to a temporary file then atomically moved, so concurrent
+ * analyses of the same project do not corrupt the cache.
+ * <p/>
+ * Only the blocks of the files of the last analysis are kept. This class is thread-safe.
+ *
+ * @since 5.1
+ */
+public class PersistentBlockCache implements BatchComponent, Startable {
+
+  /**
+   * Set to false to disable the cache
+   */
+  public static final String ENABLED_PROPERTY = "sonar.cpd.persistentCache";
+
+  private static final Logger LOG = LoggerFactory.getLogger(PersistentBlockCache.class);
+  private static final int FORMAT_VERSION = 2;
+  private static final String FILE_PREFIX = "blocks-";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+  private final File dir;
+  private final String serverVersion;
+  private final boolean enabled;
+  private final Map<String, Partition> partitions = Maps.newHashMap();
+
+  public PersistentBlockCache(FileCache fileCache, ProjectReactor reactor, Settings settings) {
+    this(new File(new File(fileCache.getDir(), "_blocks"), DigestUtils.md5Hex(reactor.getRoot().getKeyWithBranch())),
+      settings.getString(CoreProperties.SERVER_VERSION),
+      !settings.hasKey(ENABLED_PROPERTY) || settings.getBoolean(ENABLED_PROPERTY));
+  }
+
+  PersistentBlockCache(File dir, String serverVersion, boolean enabled) {
+    this.dir = dir;
+    this.serverVersion = serverVersion;
+    this.enabled = enabled;
+  }
+
+  /**
+   * Blocks of the file with the given hash, or null if the file was not analyzed during previous analysis.
+   */
+  @CheckForNull
+  public List<Block> get(String partitionKey, String fileHash, String resourceId) {
+    if (!enabled) {
+      return null;
+    }
+    Partition partition = partition(partitionKey);
+    File file = new File(partition.dir, fileHash);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      List<Block> blocks = decode(FileUtils.readFileToByteArray(file), resourceId);
+      partition.usedHashes.add(fileHash);
+      return blocks;
+    } catch (IOException e) {
+      // the cache is only an optimization, it's simply ignored if corrupted
+      LOG.warn("Fail to load duplication blocks from " + file, e);
+      return null;
+    }
+  }
+
+  public PersistentBlockCache put(String partitionKey, String fileHash, List<Block> blocks) {
+    if (enabled) {
+      Partition partition = partition(partitionKey);
+      partition.write(fileHash, encode(blocks));
+      partition.usedHashes.add(fileHash);
+    }
+    return this;
+  }
+
+  @Override
+  public void start() {
+    // partitions are created when they are requested for the first time
+  }
+
+  @Override
+  public void stop() {
+    synchronized (partitions) {
+      if (partitions.isEmpty()) {
+        return;
+      }
+      List<String> fileNames = new ArrayList<String>();
+      for (Partition partition : partitions.values()) {
+        partition.deleteUnusedFiles();
+        fileNames.add(partition.dir.getName());
+      }
+      deleteOtherPartitions(fileNames);
+      partitions.clear();
+    }
+  }
+
+  private void deleteOtherPartitions(List<String> fileNames) {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().startsWith(FILE_PREFIX) && !fileNames.contains(file.getName())) {
+          FileUtils.deleteQuietly(file);
+        }
+      }
+    }
+  }
+
+  private Partition partition(String partitionKey) {
+    synchronized (partitions) {
+      Partition partition = partitions.get(partitionKey);
+      if (partition == null) {
+        partition = new Partition(new File(dir, FILE_PREFIX + DigestUtils.md5Hex(FORMAT_VERSION + ":" + serverVersion + ":" + partitionKey)));
+        partitions.put(partitionKey, partition);
+      }
+      return partition;
+    }
+  }
+
+  private static byte[] encode(List<Block> blocks) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeInt(blocks.size());
+      for (Block block : blocks) {
+        byte[] hash = block.getBlockHash().getBytes();
+        output.writeShort(hash.length);
+        output.write(hash);
+        output.writeInt(block.getIndexInFile());
+        output.writeInt(block.getStartLine());
+        output.writeInt(block.getEndLine());
+        output.writeInt(block.getStartUnit());
+        output.writeInt(block.getEndUnit());
+      }
+      output.close();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to encode duplication blocks", e);
+    }
+  }
+
+  private static List<Block> decode(byte[] data, String resourceId) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+    int count = input.readInt();
+    List<Block> blocks = new ArrayList<Block>(count);
+    Block.Builder builder = Block.builder().setResourceId(resourceId);
+    for (int i = 0; i < count; i++) {
+      byte[] hash = new byte[input.readShort()];
+      input.readFully(hash);
+      builder.setBlockHash(new ByteArray(hash)).setIndexInFile(input.readInt());
+      int startLine = input.readInt();
+      int endLine = input.readInt();
+      builder.setLines(startLine, endLine);
+      int startUnit = input.readInt();
+      int endUnit = input.readInt();
+      builder.setUnit(startUnit, endUnit);
+      blocks.add(builder.build());
+    }
+    return blocks;
+  }
+
+  private static class Partition {
+    private final File dir;
+    // hashes of the files of the current analysis
+    private final Set<String> usedHashes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    Partition(File dir) {
+      this.dir = dir;
+    }
+
+    void write(String fileHash, byte[] data) {
+      File file = new File(dir, fileHash);
+      File tempFile = null;
+      try {
+        FileUtils.forceMkdir(dir);
+        // unique name, as the same project can be analyzed concurrently
+        tempFile = File.createTempFile(fileHash, TEMP_FILE_SUFFIX, dir);
+        FileUtils.writeByteArrayToFile(tempFile, data);
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        LOG.warn("Fail to save duplication blocks to " + file, e);
+        FileUtils.deleteQuietly(tempFile);
+      }
+    }
+
+    void deleteUnusedFiles() {
+      File[] files = dir.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          if (!usedHashes.contains(file.getName())) {
+            FileUtils.deleteQuietly(file);
+          }
+        }
+      }
+    }
+  }
+}
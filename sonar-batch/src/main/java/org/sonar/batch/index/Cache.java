@@ -23,6 +23,9 @@ import com.google.common.collect.Sets;
 import com.persistit.Exchange;
 import com.persistit.Key;
 import com.persistit.KeyFilter;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import com.persistit.Volume;
 import com.persistit.exception.PersistitException;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
@@ -31,49 +34,91 @@ import javax.annotation.CheckForNull;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>
- * This cache is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * This cache is thread-safe. A {@link com.persistit.Exchange}, which is not thread-safe, is
+ * borrowed from the pool of Persistit for each operation and released at the end of the operation.
+ * Iterables returned by the methods {@link #values()}, {@link #entries()} and {@link #keySet()} must
+ * not be shared between threads.
  * </p>
  */
 public class Cache<V> {
 
   private final String name;
-  private final Exchange exchange;
+  private final Persistit persistit;
+  private final Volume volume;
+  private final AtomicLong hits = new AtomicLong(0L);
+  private final AtomicLong misses = new AtomicLong(0L);
 
-  Cache(String name, Exchange exchange) {
+  Cache(String name, Persistit persistit, Volume volume) {
     this.name = name;
-    this.exchange = exchange;
+    this.persistit = persistit;
+    this.volume = volume;
+    // fail fast if the tree can't be created
+    releaseExchange(borrowExchange());
+  }
+
+  private Exchange borrowExchange() {
+    try {
+      Exchange exchange = persistit.getExchange(volume, name, true);
+      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+      return exchange;
+    } catch (PersistitException e) {
+      throw new IllegalStateException("Fail to create cache: " + name, e);
+    }
+  }
+
+  private void releaseExchange(Exchange exchange) {
+    persistit.releaseExchange(exchange);
+  }
+
+  /**
+   * Number of calls to get(...) that returned a value
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Number of calls to get(...) that returned null
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  String name() {
+    return name;
   }
 
   public Cache<V> put(Object key, V value) {
-    resetKey(key);
-    return doPut(value);
+    return doPut(new Object[] {key}, value);
   }
 
   public Cache<V> put(Object firstKey, Object secondKey, V value) {
-    resetKey(firstKey, secondKey);
-    return doPut(value);
+    return doPut(new Object[] {firstKey, secondKey}, value);
   }
 
   public Cache<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doPut(value);
+    return doPut(new Object[] {firstKey, secondKey, thirdKey}, value);
   }
 
   public Cache<V> put(Object[] key, V value) {
-    resetKey(key);
-    return doPut(value);
+    return doPut(key, value);
   }
 
-  private Cache<V> doPut(V value) {
+  private Cache<V> doPut(Object[] keys, V value) {
+    Exchange exchange = borrowExchange();
     try {
+      resetKey(exchange, keys);
       exchange.getValue().put(value);
       exchange.store();
       return this;
     } catch (Exception e) {
       throw new IllegalStateException("Fail to put element in the cache " + name, e);
+    } finally {
+      releaseExchange(exchange);
     }
   }
 
@@ -81,8 +126,7 @@ public class Cache<V> {
    * Returns the value object associated with keys, or null if not found.
    */
   public V get(Object key) {
-    resetKey(key);
-    return doGet();
+    return doGet(new Object[] {key});
   }
 
   /**
@@ -90,8 +134,7 @@ public class Cache<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doGet();
+    return doGet(new Object[] {firstKey, secondKey});
   }
 
   /**
@@ -99,8 +142,7 @@ public class Cache<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doGet();
+    return doGet(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   /**
@@ -108,81 +150,86 @@ public class Cache<V> {
    */
   @CheckForNull
   public V get(Object[] key) {
-    resetKey(key);
-    return doGet();
+    return doGet(key);
   }
 
   @SuppressWarnings("unchecked")
   @CheckForNull
-  private V doGet() {
+  private V doGet(Object[] keys) {
+    Exchange exchange = borrowExchange();
     try {
+      resetKey(exchange, keys);
       exchange.fetch();
       if (!exchange.getValue().isDefined()) {
+        misses.incrementAndGet();
         return null;
       }
+      hits.incrementAndGet();
       return (V) exchange.getValue().get();
     } catch (Exception e) {
       // TODO add parameters to message
       throw new IllegalStateException("Fail to get element from cache " + name, e);
+    } finally {
+      releaseExchange(exchange);
     }
   }
 
   public boolean containsKey(Object key) {
-    resetKey(key);
-    return doContainsKey();
+    return doContainsKey(new Object[] {key});
   }
 
   public boolean containsKey(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doContainsKey();
+    return doContainsKey(new Object[] {firstKey, secondKey});
   }
 
   public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doContainsKey();
+    return doContainsKey(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   public boolean containsKey(Object[] key) {
-    resetKey(key);
-    return doContainsKey();
+    return doContainsKey(key);
   }
 
-  private boolean doContainsKey() {
+  private boolean doContainsKey(Object[] keys) {
+    Exchange exchange = borrowExchange();
     try {
+      resetKey(exchange, keys);
       exchange.fetch();
       return exchange.isValueDefined();
     } catch (Exception e) {
       // TODO add parameters to message
       throw new IllegalStateException("Fail to check if element is in cache " + name, e);
+    } finally {
+      releaseExchange(exchange);
     }
   }
 
   public boolean remove(Object key) {
-    resetKey(key);
-    return doRemove();
+    return doRemove(new Object[] {key});
   }
 
   public boolean remove(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doRemove();
+    return doRemove(new Object[] {firstKey, secondKey});
   }
 
   public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doRemove();
+    return doRemove(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   public boolean remove(Object[] key) {
-    resetKey(key);
-    return doRemove();
+    return doRemove(key);
   }
 
-  private boolean doRemove() {
+  private boolean doRemove(Object[] keys) {
+    Exchange exchange = borrowExchange();
     try {
+      resetKey(exchange, keys);
       return exchange.remove();
     } catch (Exception e) {
       // TODO add parameters to message
       throw new IllegalStateException("Fail to get element from cache " + name, e);
+    } finally {
+      releaseExchange(exchange);
     }
   }
 
@@ -192,33 +239,33 @@ public class Cache<V> {
    * @param group The group name.
    */
   public Cache<V> clear(Object key) {
-    resetKey(key);
-    return doClear();
+    return doClear(new Object[] {key});
   }
 
   public Cache<V> clear(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doClear();
+    return doClear(new Object[] {firstKey, secondKey});
   }
 
   public Cache<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doClear();
+    return doClear(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   public Cache<V> clear(Object[] key) {
-    resetKey(key);
-    return doClear();
+    return doClear(key);
   }
 
-  private Cache<V> doClear() {
+  private Cache<V> doClear(Object[] keys) {
+    Exchange exchange = borrowExchange();
     try {
+      resetKey(exchange, keys);
       Key to = new Key(exchange.getKey());
       to.append(Key.AFTER);
       exchange.removeKeyRange(exchange.getKey(), to);
       return this;
     } catch (Exception e) {
       throw new IllegalStateException("Fail to clear values from cache " + name, e);
+    } finally {
+      releaseExchange(exchange);
     }
   }
 
@@ -226,11 +273,14 @@ public class Cache<V> {
    * Clears the default as well as all group caches.
    */
   public void clear() {
+    Exchange exchange = borrowExchange();
     try {
       exchange.clear();
       exchange.removeAll();
     } catch (Exception e) {
       throw new IllegalStateException("Fail to clear cache", e);
+    } finally {
+      releaseExchange(exchange);
     }
   }
 
@@ -243,37 +293,12 @@ public class Cache<V> {
    */
   @SuppressWarnings("rawtypes")
   public Set keySet(Object key) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(key);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+    return doKeySet(new Object[] {key});
   }
 
   @SuppressWarnings("rawtypes")
   public Set keySet(Object firstKey, Object secondKey) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(firstKey);
-      iteratorExchange.append(secondKey);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+    return doKeySet(new Object[] {firstKey, secondKey});
   }
 
   /**
@@ -282,17 +307,24 @@ public class Cache<V> {
    * @return The set containing the keys for this cache.
    */
   public Set<Object> keySet() {
+    return doKeySet(new Object[0]);
+  }
+
+  private Set<Object> doKeySet(Object[] keys) {
+    Exchange exchange = borrowExchange();
     try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
+      Set<Object> result = Sets.newLinkedHashSet();
+      resetKey(exchange, keys);
+      exchange.append(Key.BEFORE);
       Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(Key.BEFORE);
       while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
+        result.add(iteratorExchange.getKey().indexTo(-1).decode());
       }
-      return keys;
+      return result;
     } catch (Exception e) {
       throw new IllegalStateException("Fail to get keys from cache " + name, e);
+    } finally {
+      releaseExchange(exchange);
     }
   }
 
@@ -300,78 +332,57 @@ public class Cache<V> {
    * Lazy-loading values for given keys
    */
   public Iterable<V> values(Object firstKey, Object secondKey) {
-    try {
-      exchange.clear();
-      exchange.append(firstKey).append(secondKey).append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(exchange);
-      KeyFilter filter = new KeyFilter().append(KeyFilter.simpleTerm(firstKey)).append(KeyFilter.simpleTerm(secondKey));
-      return new ValueIterable<V>(iteratorExchange, filter);
-    } catch (Exception e) {
-      throw failToGetValues(e);
-    }
-  }
-
-  private IllegalStateException failToGetValues(Exception e) {
-    return new IllegalStateException("Fail to get values from cache " + name, e);
+    return doValues(new Object[] {firstKey, secondKey},
+      new KeyFilter().append(KeyFilter.simpleTerm(firstKey)).append(KeyFilter.simpleTerm(secondKey)));
   }
 
   /**
    * Lazy-loading values for a given key
    */
   public Iterable<V> values(Object firstKey) {
-    try {
-      exchange.clear();
-      exchange.append(firstKey).append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(exchange);
-      KeyFilter filter = new KeyFilter().append(KeyFilter.simpleTerm(firstKey));
-      return new ValueIterable<V>(iteratorExchange, filter);
-    } catch (Exception e) {
-      throw failToGetValues(e);
-    }
+    return doValues(new Object[] {firstKey}, new KeyFilter().append(KeyFilter.simpleTerm(firstKey)));
   }
 
   /**
    * Lazy-loading values
    */
   public Iterable<V> values() {
+    return doValues(new Object[0], new KeyFilter().append(KeyFilter.ALL));
+  }
+
+  private Iterable<V> doValues(Object[] keys, KeyFilter filter) {
+    Exchange exchange = borrowExchange();
     try {
-      exchange.clear().append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(exchange);
-      KeyFilter filter = new KeyFilter().append(KeyFilter.ALL);
-      return new ValueIterable<V>(iteratorExchange, filter);
+      resetKey(exchange, keys);
+      exchange.append(Key.BEFORE);
+      return new ValueIterable<V>(new Exchange(exchange), filter);
     } catch (Exception e) {
-      throw failToGetValues(e);
+      throw new IllegalStateException("Fail to get values from cache " + name, e);
+    } finally {
+      releaseExchange(exchange);
     }
   }
 
   public Iterable<Entry<V>> entries() {
-    exchange.clear().to(Key.BEFORE);
-    KeyFilter filter = new KeyFilter().append(KeyFilter.ALL);
-    return new EntryIterable<V>(new Exchange(exchange), filter);
+    return doEntries(new Object[0], new KeyFilter().append(KeyFilter.ALL));
   }
 
   public Iterable<Entry<V>> entries(Object firstKey) {
-    exchange.clear().append(firstKey).append(Key.BEFORE);
-    KeyFilter filter = new KeyFilter().append(KeyFilter.simpleTerm(firstKey));
-    return new EntryIterable<V>(new Exchange(exchange), filter);
-  }
-
-  private void resetKey(Object key) {
-    exchange.clear();
-    exchange.append(key);
-  }
-
-  private void resetKey(Object first, Object second) {
-    exchange.clear();
-    exchange.append(first).append(second);
+    return doEntries(new Object[] {firstKey}, new KeyFilter().append(KeyFilter.simpleTerm(firstKey)));
   }
 
-  private void resetKey(Object first, Object second, Object third) {
-    exchange.clear();
-    exchange.append(first).append(second).append(third);
+  private Iterable<Entry<V>> doEntries(Object[] keys, KeyFilter filter) {
+    Exchange exchange = borrowExchange();
+    try {
+      resetKey(exchange, keys);
+      exchange.append(Key.BEFORE);
+      return new EntryIterable<V>(new Exchange(exchange), filter);
+    } finally {
+      releaseExchange(exchange);
+    }
   }
 
-  private void resetKey(Object[] keys) {
+  private static void resetKey(Exchange exchange, Object[] keys) {
     exchange.clear();
     for (Object o : keys) {
       exchange.append(o);
@@ -19,44 +19,87 @@
  */
 package org.sonar.batch.index;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Sets;
-import com.persistit.Exchange;
+import com.google.common.collect.Maps;
+import com.persistit.BufferPool;
 import com.persistit.Persistit;
-import com.persistit.Value;
 import com.persistit.Volume;
 import com.persistit.encoding.CoderManager;
 import com.persistit.encoding.ValueCoder;
 import com.persistit.exception.PersistitException;
 import com.persistit.logging.Slf4jAdapter;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.batch.bootstrap.BootstrapProperties;
 
 import java.io.File;
+import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 
 /**
- * Factory of caches
+ * Factory of caches. Caches can be accessed concurrently by several threads.
  *
  * @since 3.6
  */
 public class Caches implements BatchComponent, Startable {
 
-  private final Set<String> cacheNames = Sets.newHashSet();
+  /**
+   * Number of pages of 8Kb in the Persistit buffer pool
+   */
+  public static final String BUFFER_COUNT_PROPERTY = "sonar.batch.caches.bufferCount";
+  static final int DEFAULT_BUFFER_COUNT = 10;
+
+  /**
+   * Maximum number of pages of 8Kb in the Persistit volume
+   */
+  public static final String MAXIMUM_PAGES_PROPERTY = "sonar.batch.caches.maximumPages";
+  static final int DEFAULT_MAXIMUM_PAGES = 25000;
+
+  private static final Logger LOG = LoggerFactory.getLogger(Caches.class);
+  private static final int PAGE_SIZE = 8192;
+
+  private final Map<String, Cache<?>> caches = Maps.newLinkedHashMap();
   private File tempDir;
   private Persistit persistit;
   private Volume volume;
   private final TempFolder tempFolder;
+  private final int bufferCount;
+  private final int maximumPages;
+
+  public Caches(TempFolder tempFolder, BootstrapProperties bootstrapProps) {
+    this(tempFolder,
+      intProperty(bootstrapProps, BUFFER_COUNT_PROPERTY, DEFAULT_BUFFER_COUNT),
+      intProperty(bootstrapProps, MAXIMUM_PAGES_PROPERTY, DEFAULT_MAXIMUM_PAGES));
+  }
 
-  public Caches(TempFolder tempFolder) {
+  @VisibleForTesting
+  Caches(TempFolder tempFolder, int bufferCount, int maximumPages) {
     this.tempFolder = tempFolder;
+    this.bufferCount = bufferCount;
+    this.maximumPages = maximumPages;
     initPersistit();
   }
 
+  private static int intProperty(BootstrapProperties bootstrapProps, String key, int defaultValue) {
+    String value = bootstrapProps.property(key);
+    if (StringUtils.isBlank(value)) {
+      return defaultValue;
+    }
+    try {
+      int i = Integer.parseInt(value.trim());
+      Preconditions.checkArgument(i > 0);
+      return i;
+    } catch (IllegalArgumentException e) {
+      throw new IllegalStateException(String.format("Value of property %s must be a positive integer: %s", key, value), e);
+    }
+  }
+
   private void initPersistit() {
     try {
       tempDir = tempFolder.newDir("caches");
@@ -66,10 +109,10 @@ public class Caches implements BatchComponent, Startable {
       props.setProperty("datapath", tempDir.getAbsolutePath());
       props.setProperty("logpath", "${datapath}/log");
       props.setProperty("logfile", "${logpath}/persistit_${timestamp}.log");
-      props.setProperty("buffer.count.8192", "10");
+      props.setProperty("buffer.count." + PAGE_SIZE, String.valueOf(bufferCount));
       props.setProperty("journalpath", "${datapath}/journal");
       props.setProperty("tmpvoldir", "${datapath}");
-      props.setProperty("volume.1", "${datapath}/persistit,create,pageSize:8192,initialPages:10,extensionPages:100,maximumPages:25000");
+      props.setProperty("volume.1", "${datapath}/persistit,create,pageSize:" + PAGE_SIZE + ",initialPages:10,extensionPages:100,maximumPages:" + maximumPages);
       persistit.setProperties(props);
       persistit.initialize();
       volume = persistit.createTemporaryVolume();
@@ -84,14 +127,12 @@ public class Caches implements BatchComponent, Startable {
     cm.registerValueCoder(clazz, coder);
   }
 
-  public <V> Cache<V> createCache(String cacheName) {
+  public synchronized <V> Cache<V> createCache(String cacheName) {
     Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
-    Preconditions.checkState(!cacheNames.contains(cacheName), "Cache is already created: " + cacheName);
+    Preconditions.checkState(!caches.containsKey(cacheName), "Cache is already created: " + cacheName);
     try {
-      Exchange exchange = persistit.getExchange(volume, cacheName, true);
-      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Cache<V> cache = new Cache<V>(cacheName, exchange);
-      cacheNames.add(cacheName);
+      Cache<V> cache = new Cache<V>(cacheName, persistit, volume);
+      caches.put(cacheName, cache);
       return cache;
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create cache: " + cacheName, e);
@@ -106,6 +147,7 @@ public class Caches implements BatchComponent, Startable {
   @Override
   public void stop() {
     if (persistit != null) {
+      logStatistics();
       try {
         persistit.close(false);
         persistit = null;
@@ -116,7 +158,21 @@ public class Caches implements BatchComponent, Startable {
     }
     FileUtils.deleteQuietly(tempDir);
     tempDir = null;
-    cacheNames.clear();
+    caches.clear();
+  }
+
+  private void logStatistics() {
+    if (!LOG.isDebugEnabled()) {
+      return;
+    }
+    BufferPool pool = persistit.getBufferPool(PAGE_SIZE);
+    if (pool != null) {
+      LOG.debug(String.format("Caches buffer pool: %d buffers, %d hits, %d misses, %d evictions",
+        pool.getBufferCount(), pool.getHitCount(), pool.getMissCount(), pool.getEvictCount()));
+    }
+    for (Cache<?> cache : caches.values()) {
+      LOG.debug(String.format("Cache %s: %d hits, %d misses", cache.name(), cache.getHitCount(), cache.getMissCount()));
+    }
   }
 
   File tempDir() {
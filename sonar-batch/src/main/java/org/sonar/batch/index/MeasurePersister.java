@@ -20,9 +20,11 @@
 package org.sonar.batch.index;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
 import org.sonar.api.database.model.MeasureMapper;
 import org.sonar.api.database.model.MeasureModel;
 import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.measures.RuleMeasure;
 import org.sonar.api.resources.Resource;
@@ -38,6 +40,8 @@ import org.sonar.core.persistence.MyBatis;
 
 import javax.annotation.Nullable;
 
+import java.util.Map;
+
 public class MeasurePersister implements ScanPersister {
   private final MyBatis mybatis;
   private final RuleFinder ruleFinder;
@@ -56,16 +60,26 @@ public class MeasurePersister implements ScanPersister {
 
   @Override
   public void persist() {
+    Map<String, Metric> metricsByKey = Maps.newHashMap();
+    String effectiveKey = null;
+    BatchResource batchResource = null;
     try (DbSession session = mybatis.openSession(true)) {
       MeasureMapper mapper = session.getMapper(MeasureMapper.class);
 
       for (Entry<Measure> entry : measureCache.entries()) {
-        String effectiveKey = entry.key()[0].toString();
         Measure measure = entry.value();
-        BatchResource batchResource = resourceCache.get(effectiveKey);
+        if (measure == null || !measure.getPersistenceMode().useDatabase() || !isMeasureNotEmpty(measure)) {
+          continue;
+        }
+        // measures are sorted by resource
+        String measureEffectiveKey = entry.key()[0].toString();
+        if (!measureEffectiveKey.equals(effectiveKey)) {
+          effectiveKey = measureEffectiveKey;
+          batchResource = resourceCache.get(effectiveKey);
+        }
 
         // Reload Metric to have all Hibernate fields populated
-        measure.setMetric(metricFinder.findByKey(measure.getMetricKey()));
+        measure.setMetric(metric(metricsByKey, measure.getMetricKey()));
 
         if (shouldPersistMeasure(batchResource.resource(), measure)) {
           MeasureModel measureModel = model(measure, ruleFinder).setSnapshotId(batchResource.snapshotId());
@@ -79,6 +93,18 @@ public class MeasurePersister implements ScanPersister {
     }
   }
 
+  /**
+   * Metrics are loaded once for all measures
+   */
+  private Metric metric(Map<String, Metric> metricsByKey, String metricKey) {
+    Metric metric = metricsByKey.get(metricKey);
+    if (metric == null) {
+      metric = metricFinder.findByKey(metricKey);
+      metricsByKey.put(metricKey, metric);
+    }
+    return metric;
+  }
+
   @VisibleForTesting
   static boolean shouldPersistMeasure(@Nullable Resource resource, @Nullable Measure measure) {
     if (resource == null || measure == null) {
@@ -19,6 +19,10 @@
  */
 package org.sonar.batch.index;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.database.DatabaseSession;
@@ -37,12 +41,15 @@ import org.sonar.api.utils.internal.Uuids;
 import org.sonar.batch.ProjectTree;
 import org.sonar.core.component.ScanGraph;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.persistence.NonUniqueResultException;
 import javax.persistence.Query;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ResourcePersister implements ScanPersister {
 
@@ -52,12 +59,29 @@ public class ResourcePersister implements ScanPersister {
   private static final String SCOPE = "scope";
   private static final String QUALIFIER = "qualifier";
 
+  /**
+   * Maximum number of keys in the "IN" clause of the query that loads the existing resources (limit of Oracle is 1000)
+   */
+  private static final int KEYS_PER_QUERY = 1000;
+
   private final DatabaseSession session;
   private final ResourcePermissions permissions;
   private final ResourceCache resourceCache;
   private final ScanGraph graph;
   private final ProjectTree projectTree;
 
+  /**
+   * Existing resources of the batch being persisted, loaded by {@link #loadExistingModels(List)}. The keys that are not
+   * in the map but in {@link #loadedKeys} do not exist in database.
+   */
+  private final Map<String, ResourceModel> existingModels = Maps.newHashMap();
+  private final Set<String> loadedKeys = Sets.newHashSet();
+
+  /**
+   * Persisted projects and directories, so that their children do not need to load them again
+   */
+  private final Map<Integer, ResourceModel> parentModelsById = Maps.newHashMap();
+
   public ResourcePersister(ProjectTree projectTree, DatabaseSession session, ResourcePermissions permissions, ResourceCache resourceCache, ScanGraph graph) {
     this.projectTree = projectTree;
     this.session = session;
@@ -66,10 +90,26 @@ public class ResourcePersister implements ScanPersister {
     this.graph = graph;
   }
 
+  /**
+   * Modules are persisted first. Files and directories are then persisted by batches of {@link #KEYS_PER_QUERY}
+   * resources, committed once at the end of each batch, so that the entities loaded for the batch stay attached
+   * to the session and are updated without being loaded again.
+   */
   @Override
   public void persist() {
     for (BatchResource resource : resourceCache.all()) {
-      persist(resource);
+      if (resource.resource() instanceof Project) {
+        persist(resource);
+      }
+    }
+    for (List<BatchResource> batch : Iterables.partition(resourceCache.all(), KEYS_PER_QUERY)) {
+      loadExistingModels(batch);
+      for (BatchResource resource : batch) {
+        persist(resource);
+      }
+      session.commit();
+      existingModels.clear();
+      loadedKeys.clear();
     }
 
     for (BatchResource lib : resourceCache.allLibraries()) {
@@ -95,7 +135,7 @@ public class ResourcePersister implements ScanPersister {
     Snapshot s;
     if (parentBatchResource != null) {
       persist(parentBatchResource);
-      s = persist(findModule(parentBatchResource), batchResource.resource(), parentBatchResource.resource());
+      s = persistWithoutCommit(findModule(parentBatchResource), batchResource.resource(), parentBatchResource.resource());
     } else {
       // Root project
       s = persistProject((Project) batchResource.resource(), null);
@@ -137,6 +177,7 @@ public class ResourcePersister implements ScanPersister {
     model = session.save(model);
     project.setId(model.getId());
     project.setUuid(model.getUuid());
+    resourcePersisted(model);
 
     Snapshot snapshot = new Snapshot(model, parentSnapshot);
     snapshot.setVersion(project.getAnalysisVersion());
@@ -153,6 +194,12 @@ public class ResourcePersister implements ScanPersister {
   }
 
   Snapshot persist(Project project, Resource resource, @Nullable Resource parent) {
+    Snapshot snapshot = persistWithoutCommit(project, resource, parent);
+    session.commit();
+    return snapshot;
+  }
+
+  private Snapshot persistWithoutCommit(Project project, Resource resource, @Nullable Resource parent) {
     Snapshot snapshot;
     if (resource instanceof Project) {
       // should not occur, please use the method saveProject()
@@ -164,6 +211,31 @@ public class ResourcePersister implements ScanPersister {
     return snapshot;
   }
 
+  /**
+   * Loads in a single query the resources of the batch that already exist in database,
+   * rather than searching for the resources one by one.
+   */
+  private void loadExistingModels(List<BatchResource> batch) {
+    List<String> keys = Lists.newArrayList();
+    for (BatchResource batchResource : batch) {
+      String key = batchResource.resource().getEffectiveKey();
+      if (batchResource.snapshot() == null && StringUtils.isNotBlank(key)) {
+        keys.add(key);
+      }
+    }
+    if (keys.isEmpty()) {
+      return;
+    }
+    Query query = session.createQuery("SELECT r FROM " + ResourceModel.class.getSimpleName() + " r WHERE r.key IN (:keys)");
+    query.setParameter("keys", keys);
+    for (ResourceModel model : (List<ResourceModel>) query.getResultList()) {
+      if (existingModels.put(model.getKey(), model) != null) {
+        throw new SonarException("The resource '" + model.getKey() + "' is duplicated in database.");
+      }
+    }
+    loadedKeys.addAll(keys);
+  }
+
   Snapshot persistLibrary(Date analysisDate, Library library) {
     ResourceModel model = findOrCreateModel(library, null);
     model = session.save(model);
@@ -212,9 +284,11 @@ public class ResourcePersister implements ScanPersister {
     Integer moduleId = moduleResource.resource().getId();
     ResourceModel model = findOrCreateModel(resource, parentReference != null ? parentReference : project);
     model.setRootId(moduleId);
-    model = session.save(model);
+    // commit is done by the caller
+    session.saveWithoutFlush(model);
     resource.setId(model.getId());
     resource.setUuid(model.getUuid());
+    resourcePersisted(model);
 
     Snapshot parentSnapshot;
     if (parentReference != null) {
@@ -225,15 +299,20 @@ public class ResourcePersister implements ScanPersister {
 
     Snapshot snapshot = new Snapshot(model, parentSnapshot);
     snapshot.setBuildDate(new Date());
-    snapshot = session.save(snapshot);
-    session.commit();
+    session.saveWithoutFlush(snapshot);
     return snapshot;
   }
 
+  private void resourcePersisted(ResourceModel model) {
+    if (!Scopes.FILE.equals(model.getScope())) {
+      parentModelsById.put(model.getId(), model);
+    }
+  }
+
   private ResourceModel findOrCreateModel(Resource resource, @Nullable Resource parentResource) {
     ResourceModel model;
     try {
-      model = session.getSingleResult(ResourceModel.class, "key", resource.getEffectiveKey());
+      model = findModel(resource.getEffectiveKey());
       if (model == null) {
         if (StringUtils.isBlank(resource.getEffectiveKey())) {
           throw new SonarException("Unable to persist resource " + resource.toString() + ". Resource effective key is blank. This may be caused by an outdated plugin.");
@@ -251,6 +330,15 @@ public class ResourcePersister implements ScanPersister {
     }
   }
 
+  @CheckForNull
+  private ResourceModel findModel(@Nullable String key) {
+    if (loadedKeys.contains(key)) {
+      // loaded within the current batch, or does not exist in database
+      return existingModels.get(key);
+    }
+    return session.getSingleResult(ResourceModel.class, "key", key);
+  }
+
   ResourceModel createModel(Resource resource, @Nullable Resource parentResource) {
     ResourceModel model = new ResourceModel();
     model.setEnabled(Boolean.TRUE);
@@ -279,7 +367,10 @@ public class ResourcePersister implements ScanPersister {
       return;
     }
     if (parentResource != null) {
-      ResourceModel parentModel = session.getSingleResult(ResourceModel.class, "id", parentResource.getId());
+      ResourceModel parentModel = parentModelsById.get(parentResource.getId());
+      if (parentModel == null) {
+        parentModel = session.getSingleResult(ResourceModel.class, "id", parentResource.getId());
+      }
       model.setProjectUuid(parentModel.getProjectUuid());
       if (Scopes.isProject(parentResource)) {
         model.setModuleUuid(parentResource.getUuid());
@@ -20,23 +20,32 @@
 package org.sonar.batch.issue.tracking;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.rule.RuleKey;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 class IssueTrackingResult {
   private final Map<String, PreviousIssue> unmatchedByKey = new HashMap<>();
   private final Map<RuleKey, Map<String, PreviousIssue>> unmatchedByRuleAndKey = new HashMap<>();
   private final Map<RuleKey, Map<Integer, Multimap<String, PreviousIssue>>> unmatchedByRuleAndLineAndChecksum = new HashMap<>();
+  // indexes of unmatched issues, to avoid scanning all the issues of the rule for each new issue
+  private final Multimap<List<Object>, PreviousIssue> unmatchedByRuleAndChecksum = LinkedHashMultimap.create();
+  private final Multimap<List<Object>, PreviousIssue> unmatchedByRuleAndChecksumAndMessage = LinkedHashMultimap.create();
+  private final Multimap<List<Object>, PreviousIssue> unmatchedByRuleAndLineAndMessage = LinkedHashMultimap.create();
   private final Map<DefaultIssue, PreviousIssue> matched = Maps.newIdentityHashMap();
 
   Collection<PreviousIssue> unmatched() {
@@ -64,6 +73,31 @@ class IssueTrackingResult {
     return unmatchedForRuleAndLine.get(checksumNotNull);
   }
 
+  @CheckForNull
+  PreviousIssue firstUnmatchedForRuleAndChecksum(RuleKey ruleKey, @Nullable String checksum) {
+    return first(unmatchedByRuleAndChecksum.get(Arrays.<Object>asList(ruleKey, checksum)));
+  }
+
+  @CheckForNull
+  PreviousIssue firstUnmatchedForRuleAndChecksumAndMessage(RuleKey ruleKey, @Nullable String checksum, @Nullable String message) {
+    return first(unmatchedByRuleAndChecksumAndMessage.get(Arrays.<Object>asList(ruleKey, checksum, message)));
+  }
+
+  @CheckForNull
+  PreviousIssue firstUnmatchedForRuleAndLineAndMessage(RuleKey ruleKey, @Nullable Integer line, @Nullable String message) {
+    return first(unmatchedByRuleAndLineAndMessage.get(Arrays.<Object>asList(ruleKey, line, message)));
+  }
+
+  @CheckForNull
+  private static PreviousIssue first(Collection<PreviousIssue> issues) {
+    Iterator<PreviousIssue> it = issues.iterator();
+    return it.hasNext() ? it.next() : null;
+  }
+
+  boolean isUnmatched(PreviousIssue issue) {
+    return unmatchedByKey.get(issue.key()) == issue;
+  }
+
   Collection<DefaultIssue> matched() {
     return matched.keySet();
   }
@@ -92,6 +126,10 @@ class IssueTrackingResult {
     Multimap<String, PreviousIssue> unmatchedForRuleAndLine = unmatchedForRule.get(lineNotNull);
     String checksumNotNull = StringUtils.defaultString(i.checksum(), "");
     unmatchedForRuleAndLine.put(checksumNotNull, i);
+
+    unmatchedByRuleAndChecksum.put(Arrays.<Object>asList(ruleKey, i.checksum()), i);
+    unmatchedByRuleAndChecksumAndMessage.put(Arrays.<Object>asList(ruleKey, i.checksum(), i.message()), i);
+    unmatchedByRuleAndLineAndMessage.put(Arrays.<Object>asList(ruleKey, i.line(), i.message()), i);
   }
 
   private Integer lineNotNull(PreviousIssue i) {
@@ -107,5 +145,8 @@ class IssueTrackingResult {
     Integer lineNotNull = lineNotNull(matching);
     String checksumNotNull = StringUtils.defaultString(matching.checksum(), "");
     unmatchedByRuleAndLineAndChecksum.get(ruleKey).get(lineNotNull).get(checksumNotNull).remove(matching);
+    unmatchedByRuleAndChecksum.remove(Arrays.<Object>asList(ruleKey, matching.checksum()), matching);
+    unmatchedByRuleAndChecksumAndMessage.remove(Arrays.<Object>asList(ruleKey, matching.checksum(), matching.message()), matching);
+    unmatchedByRuleAndLineAndMessage.remove(Arrays.<Object>asList(ruleKey, matching.line(), matching.message()), matching);
   }
 }
@@ -26,6 +26,7 @@ import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.InstantiationStrategy;
 import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.utils.TimeProfiler;
+import org.sonar.batch.bootstrap.AnalysisMode;
 import org.sonar.batch.index.BatchResource;
 import org.sonar.batch.index.Cache;
 import org.sonar.batch.index.Caches;
@@ -33,39 +34,54 @@ import org.sonar.batch.index.ResourceCache;
 import org.sonar.batch.protocol.input.issues.PreviousIssue;
 import org.sonar.batch.repository.PreviousIssuesLoader;
 
+import javax.annotation.CheckForNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 public class PreviousIssueRepository implements BatchComponent {
 
   private static final Logger LOG = LoggerFactory.getLogger(PreviousIssueRepository.class);
 
+  /**
+   * Maximum number of components for which issues are requested by key. Above this limit,
+   * all issues of the project are loaded in order to keep URL short.
+   */
+  static final int MAX_REQUESTED_COMPONENTS = 50;
+
   private final Caches caches;
   private Cache<PreviousIssue> issuesCache;
   private final PreviousIssuesLoader previousIssuesLoader;
   private final ProjectReactor reactor;
   private final ResourceCache resourceCache;
+  private final AnalysisMode analysisMode;
 
-  public PreviousIssueRepository(Caches caches, PreviousIssuesLoader previousIssuesLoader, ProjectReactor reactor, ResourceCache resourceCache) {
+  public PreviousIssueRepository(Caches caches, PreviousIssuesLoader previousIssuesLoader, ProjectReactor reactor, ResourceCache resourceCache,
+    AnalysisMode analysisMode) {
     this.caches = caches;
     this.previousIssuesLoader = previousIssuesLoader;
     this.reactor = reactor;
     this.resourceCache = resourceCache;
+    this.analysisMode = analysisMode;
   }
 
   public void load() {
     TimeProfiler profiler = new TimeProfiler(LOG).start("Load previous issues");
     try {
       this.issuesCache = caches.createCache("previousIssues");
-      previousIssuesLoader.load(reactor, new Function<PreviousIssue, Void>() {
+      previousIssuesLoader.load(reactor, analyzedComponentKeys(), new Function<PreviousIssue, Void>() {
 
         @Override
         public Void apply(PreviousIssue issue) {
           String componentKey = issue.componentKey();
           BatchResource r = resourceCache.get(componentKey);
-          if (r == null) {
-            // Deleted resource
+          if (r != null) {
+            issuesCache.put(r.batchId(), issue.key(), issue);
+          } else if (!analysisMode.isIncremental()) {
+            // Deleted resource. In incremental mode, it is more likely an unchanged file that is not analyzed.
             issuesCache.put(0, issue.key(), issue);
           }
-          issuesCache.put(r.batchId(), issue.key(), issue);
           return null;
         }
       });
@@ -74,6 +90,22 @@ public class PreviousIssueRepository implements BatchComponent {
     }
   }
 
+  /**
+   * In incremental mode only the changed files are analyzed, so there is no need to download the issues of the whole project
+   * when these files are not too many. Returns null if all the issues must be loaded.
+   */
+  @CheckForNull
+  private List<String> analyzedComponentKeys() {
+    if (!analysisMode.isIncremental() || resourceCache.all().size() > MAX_REQUESTED_COMPONENTS) {
+      return null;
+    }
+    List<String> keys = new ArrayList<>();
+    for (BatchResource resource : resourceCache.all()) {
+      keys.add(resource.resource().getEffectiveKey());
+    }
+    return keys;
+  }
+
   public Iterable<PreviousIssue> byComponent(BatchResource component) {
     return issuesCache.values(component.batchId());
   }
@@ -41,11 +41,14 @@ import org.sonar.batch.repository.ProjectRepositoriesLoader;
 import org.sonar.core.plugins.DefaultPluginMetadata;
 import org.sonar.core.plugins.RemotePlugin;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -291,9 +294,11 @@ public class BatchMediumTester {
     }
 
     @Override
-    public void load(ProjectReactor reactor, Function<PreviousIssue, Void> consumer) {
+    public void load(ProjectReactor reactor, @Nullable Collection<String> componentKeys, Function<PreviousIssue, Void> consumer) {
       for (PreviousIssue previousIssue : previousIssues) {
-        consumer.apply(previousIssue);
+        if (componentKeys == null || componentKeys.contains(previousIssue.componentKey())) {
+          consumer.apply(previousIssue);
+        }
       }
 
     }
@@ -20,13 +20,19 @@
 package org.sonar.batch.phases;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafeDecorator;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.utils.AnnotationUtils;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.SonarException;
 import org.sonar.batch.DecoratorsSelector;
@@ -39,9 +45,20 @@ import org.sonar.batch.sensor.coverage.CoverageExclusions;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class DecoratorsExecutor implements BatchComponent {
 
+  /**
+   * Number of threads used to decorate the resources of a module. Sibling resources are decorated concurrently
+   * when greater than 1. Default is 1.
+   */
+  public static final String THREADS_PROPERTY = "sonar.batch.decorators.threads";
+
+  private static final Logger LOG = LoggerFactory.getLogger(DecoratorsExecutor.class);
+
   private DecoratorsSelector decoratorsSelector;
   private SonarIndex index;
   private EventBus eventBus;
@@ -50,10 +67,14 @@ public class DecoratorsExecutor implements BatchComponent {
   private MeasureCache measureCache;
   private MetricFinder metricFinder;
   private final DuplicationCache duplicationCache;
+  private final Settings settings;
+
+  private final Set<Decorator> threadSafeDecorators = Sets.newIdentityHashSet();
+  private boolean concurrent = false;
 
   public DecoratorsExecutor(BatchExtensionDictionnary batchExtDictionnary,
     Project project, SonarIndex index, EventBus eventBus, CoverageExclusions coverageFilter, MeasureCache measureCache, MetricFinder metricFinder,
-    DuplicationCache duplicationCache) {
+    DuplicationCache duplicationCache, Settings settings) {
     this.measureCache = measureCache;
     this.metricFinder = metricFinder;
     this.duplicationCache = duplicationCache;
@@ -62,15 +83,49 @@ public class DecoratorsExecutor implements BatchComponent {
     this.eventBus = eventBus;
     this.project = project;
     this.coverageFilter = coverageFilter;
+    this.settings = settings;
   }
 
   public void execute() {
     Collection<Decorator> decorators = decoratorsSelector.select(project);
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), true));
-    ((DefaultDecoratorContext) decorateResource(project, decorators, true)).end();
+    int threads = threads();
+    DecoratorContext projectContext;
+    if (threads > 1) {
+      projectContext = decorateConcurrently(decorators, threads);
+    } else {
+      projectContext = decorateResource(project, decorators, true);
+    }
+    ((DefaultDecoratorContext) projectContext).end();
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), false));
   }
 
+  private int threads() {
+    int threads = settings.hasKey(THREADS_PROPERTY) ? settings.getInt(THREADS_PROPERTY) : 1;
+    if (threads < 1) {
+      throw new IllegalStateException(String.format("Value of property %s must be a positive integer: %d", THREADS_PROPERTY, threads));
+    }
+    return threads;
+  }
+
+  private DecoratorContext decorateConcurrently(Collection<Decorator> decorators, int threads) {
+    for (Decorator decorator : decorators) {
+      if (AnnotationUtils.getAnnotation(decorator, ThreadSafeDecorator.class) != null) {
+        threadSafeDecorators.add(decorator);
+      }
+    }
+    LOG.debug("Decorate resources with {} threads. Thread-safe decorators: {}", threads, threadSafeDecorators);
+    concurrent = true;
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      return pool.invoke(new DecorateTask(project, decorators, true));
+    } finally {
+      pool.shutdownNow();
+      concurrent = false;
+      threadSafeDecorators.clear();
+    }
+  }
+
   DecoratorContext decorateResource(Resource resource, Collection<Decorator> decorators, boolean executeDecorators) {
     List<DecoratorContext> childrenContexts = Lists.newArrayList();
     for (Resource child : index.getChildren(resource)) {
@@ -78,12 +133,23 @@ public class DecoratorsExecutor implements BatchComponent {
       DefaultDecoratorContext childContext = (DefaultDecoratorContext) decorateResource(child, decorators, !isModule);
       childrenContexts.add(childContext.end());
     }
+    return decorate(resource, childrenContexts, decorators, executeDecorators);
+  }
 
+  private DefaultDecoratorContext decorate(Resource resource, List<DecoratorContext> childrenContexts, Collection<Decorator> decorators, boolean executeDecorators) {
     DefaultDecoratorContext context = new DefaultDecoratorContext(resource, index, childrenContexts, measureCache, metricFinder, duplicationCache, coverageFilter);
     context.init();
     if (executeDecorators) {
       for (Decorator decorator : decorators) {
-        executeDecorator(decorator, context, resource);
+        if (!concurrent || threadSafeDecorators.contains(decorator)) {
+          executeDecorator(decorator, context, resource);
+        } else {
+          // decorators that are not thread-safe are executed one at a time, and can use the index directly
+          // while thread-safe decorators access it through their context
+          synchronized (index) {
+            executeDecorator(decorator, context, resource);
+          }
+        }
       }
     }
     return context;
@@ -104,4 +170,37 @@ public class DecoratorsExecutor implements BatchComponent {
     }
   }
 
+  /**
+   * Decorates the children of a resource concurrently, then the resource itself.
+   */
+  private class DecorateTask extends RecursiveTask<DecoratorContext> {
+    private final Resource resource;
+    private final Collection<Decorator> decorators;
+    private final boolean executeDecorators;
+
+    DecorateTask(Resource resource, Collection<Decorator> decorators, boolean executeDecorators) {
+      this.resource = resource;
+      this.decorators = decorators;
+      this.executeDecorators = executeDecorators;
+    }
+
+    @Override
+    protected DecoratorContext compute() {
+      Collection<Resource> children;
+      synchronized (index) {
+        children = Lists.newArrayList(index.getChildren(resource));
+      }
+      List<DecorateTask> tasks = Lists.newArrayList();
+      for (Resource child : children) {
+        boolean isModule = child instanceof Project;
+        tasks.add(new DecorateTask(child, decorators, !isModule));
+      }
+      invokeAll(tasks);
+      List<DecoratorContext> childrenContexts = Lists.newArrayList();
+      for (DecorateTask task : tasks) {
+        childrenContexts.add(((DefaultDecoratorContext) task.join()).end());
+      }
+      return decorate(resource, childrenContexts, decorators, executeDecorators);
+    }
+  }
 }
@@ -59,7 +59,7 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, DecoratorExec
   }
 
   @Override
-  public void onDecoratorExecution(DecoratorExecutionEvent event) {
+  public synchronized void onDecoratorExecution(DecoratorExecutionEvent event) {
     if (event.isStart()) {
       decoratorsProfiler.start(event.getDecorator());
     } else {
@@ -79,29 +79,34 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, DecoratorExec
     }
   }
 
+  /**
+   * Decorators can be executed concurrently (see {@link DecoratorsExecutor#THREADS_PROPERTY}), so
+   * the decorator being executed is kept per thread.
+   */
   static class DecoratorsProfiler {
     List<Decorator> decorators = Lists.newArrayList();
     Map<Decorator, Long> durations = new IdentityHashMap<Decorator, Long>();
-    long startTime;
-    Decorator currentDecorator;
+    ThreadLocal<Long> startTime = new ThreadLocal<Long>();
+    ThreadLocal<Decorator> currentDecorator = new ThreadLocal<Decorator>();
 
     DecoratorsProfiler() {
     }
 
     void start(Decorator decorator) {
-      this.startTime = System.currentTimeMillis();
-      this.currentDecorator = decorator;
+      this.startTime.set(System.currentTimeMillis());
+      this.currentDecorator.set(decorator);
     }
 
     void stop() {
+      Decorator decorator = currentDecorator.get();
       final Long cumulatedDuration;
-      if (durations.containsKey(currentDecorator)) {
-        cumulatedDuration = durations.get(currentDecorator);
+      if (durations.containsKey(decorator)) {
+        cumulatedDuration = durations.get(decorator);
       } else {
-        decorators.add(currentDecorator);
+        decorators.add(decorator);
         cumulatedDuration = 0L;
       }
-      durations.put(currentDecorator, cumulatedDuration + (System.currentTimeMillis() - startTime));
+      durations.put(decorator, cumulatedDuration + (System.currentTimeMillis() - startTime.get()));
     }
 
     void log() {
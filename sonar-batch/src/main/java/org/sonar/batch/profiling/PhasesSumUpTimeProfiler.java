@@ -197,7 +197,7 @@ public class PhasesSumUpTimeProfiler implements ProjectAnalysisHandler, SensorEx
   }
 
   @Override
-  public void onDecoratorExecution(DecoratorExecutionEvent event) {
+  public synchronized void onDecoratorExecution(DecoratorExecutionEvent event) {
     PhaseProfiling profiling = currentModuleProfiling.getProfilingPerPhase(Phases.Phase.DECORATOR);
     if (event.isStart()) {
       if (profiling.getProfilingPerItem(event.getDecorator()) == null) {
@@ -281,26 +281,28 @@ public class PhasesSumUpTimeProfiler implements ProjectAnalysisHandler, SensorEx
   class DecoratorsProfiler {
     private List<Decorator> decorators = Lists.newArrayList();
     private Map<Decorator, Long> durations = new IdentityHashMap<Decorator, Long>();
-    private long startTime;
-    private Decorator currentDecorator;
+    // decorators can be executed concurrently
+    private ThreadLocal<Long> startTime = new ThreadLocal<Long>();
+    private ThreadLocal<Decorator> currentDecorator = new ThreadLocal<Decorator>();
 
     DecoratorsProfiler() {
     }
 
     void start(Decorator decorator) {
-      this.startTime = system.now();
-      this.currentDecorator = decorator;
+      this.startTime.set(system.now());
+      this.currentDecorator.set(decorator);
     }
 
     void stop() {
+      Decorator decorator = currentDecorator.get();
       final Long cumulatedDuration;
-      if (durations.containsKey(currentDecorator)) {
-        cumulatedDuration = durations.get(currentDecorator);
+      if (durations.containsKey(decorator)) {
+        cumulatedDuration = durations.get(decorator);
       } else {
-        decorators.add(currentDecorator);
+        decorators.add(decorator);
         cumulatedDuration = 0L;
       }
-      durations.put(currentDecorator, cumulatedDuration + (system.now() - startTime));
+      durations.put(decorator, cumulatedDuration + (system.now() - startTime.get()));
     }
 
     public Map<Decorator, Long> getDurations() {
@@ -30,7 +30,6 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.TempFolder;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.batch.bootstrap.AnalysisMode;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.index.ResourceCache;
@@ -90,7 +89,7 @@ public class PublishReportJob implements BatchComponent {
       }
 
       File reportZip = temp.newFile("batch-report", ".zip");
-      ZipUtils.zipDir(reportDir, reportZip);
+      reportHelper.zip(reportZip);
       FileUtils.deleteDirectory(reportDir);
       return reportZip;
     } catch (IOException e) {
@@ -21,19 +21,29 @@ package org.sonar.batch.repository;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
+import com.google.common.base.Joiner;
 import com.google.common.io.InputSupplier;
 import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.protocol.input.issues.PreviousIssue;
 import org.sonar.batch.protocol.input.issues.PreviousIssueHelper;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.Collection;
 
 public class DefaultPreviousIssuesLoader implements PreviousIssuesLoader {
 
+  /**
+   * Maximum length of the encoded list of components sent in URL. Above this limit, all the issues of the project
+   * are loaded, as the request line could exceed the limit of the web server (8 KB by default on Tomcat).
+   */
+  static final int MAX_COMPONENTS_PARAM_LENGTH = 4000;
+
   private final ServerClient serverClient;
 
   public DefaultPreviousIssuesLoader(ServerClient serverClient) {
@@ -41,8 +51,15 @@ public class DefaultPreviousIssuesLoader implements PreviousIssuesLoader {
   }
 
   @Override
-  public void load(ProjectReactor reactor, Function<PreviousIssue, Void> consumer) {
-    InputSupplier<InputStream> request = serverClient.doRequest("/batch/issues?key=" + ServerClient.encodeForUrl(reactor.getRoot().getKeyWithBranch()), "GET", null);
+  public void load(ProjectReactor reactor, @Nullable Collection<String> componentKeys, Function<PreviousIssue, Void> consumer) {
+    String url = "/batch/issues?key=" + ServerClient.encodeForUrl(reactor.getRoot().getKeyWithBranch());
+    if (componentKeys != null) {
+      String components = ServerClient.encodeForUrl(Joiner.on(',').join(componentKeys));
+      if (components.length() <= MAX_COMPONENTS_PARAM_LENGTH) {
+        url += "&components=" + components;
+      }
+    }
+    InputSupplier<InputStream> request = serverClient.doRequest(url, "GET", null);
     try (InputStream is = request.getInput(); Reader reader = new InputStreamReader(is, Charsets.UTF_8)) {
       for (PreviousIssue issue : PreviousIssueHelper.getIssues(reader)) {
         consumer.apply(issue);
@@ -19,7 +19,10 @@
  */
 package org.sonar.batch.repository;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.Maps;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
@@ -37,16 +40,21 @@ import org.sonar.batch.bootstrap.TaskProperties;
 import org.sonar.batch.protocol.input.FileData;
 import org.sonar.batch.protocol.input.ProjectRepository;
 import org.sonar.batch.rule.ModuleQProfiles;
+import org.sonar.home.cache.FileCache;
 
 import javax.annotation.CheckForNull;
 import javax.persistence.NoResultException;
 import javax.persistence.Query;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
 public class DefaultProjectReferentialsLoader implements ProjectRepositoriesLoader {
 
@@ -57,17 +65,20 @@ public class DefaultProjectReferentialsLoader implements ProjectRepositoriesLoad
   private final ServerClient serverClient;
   private final AnalysisMode analysisMode;
   private final DatabaseSession session;
+  private final File cacheDir;
 
-  public DefaultProjectReferentialsLoader(DatabaseSession session, ServerClient serverClient, AnalysisMode analysisMode) {
+  public DefaultProjectReferentialsLoader(DatabaseSession session, ServerClient serverClient, AnalysisMode analysisMode, FileCache fileCache) {
     this.session = session;
     this.serverClient = serverClient;
     this.analysisMode = analysisMode;
+    this.cacheDir = new File(fileCache.getDir(), "_project_repositories");
   }
 
-  public DefaultProjectReferentialsLoader(ServerClient serverClient, AnalysisMode analysisMode) {
+  public DefaultProjectReferentialsLoader(ServerClient serverClient, AnalysisMode analysisMode, FileCache fileCache) {
     this.session = null;
     this.serverClient = serverClient;
     this.analysisMode = analysisMode;
+    this.cacheDir = new File(fileCache.getDir(), "_project_repositories");
   }
 
   @Override
@@ -80,7 +91,23 @@ public class DefaultProjectReferentialsLoader implements ProjectRepositoriesLoad
       url += "&profile=" + ServerClient.encodeForUrl(taskProperties.properties().get(ModuleQProfiles.SONAR_PROFILE_PROP));
     }
     url += "&preview=" + analysisMode.isPreview();
+
+    // Sections of the repository downloaded during previous analysis are not sent again by server if they did not change.
+    // Settings are not cached as they can contain secured properties, so they are always downloaded.
+    File cacheFile = new File(cacheDir, DigestUtils.md5Hex(url));
+    ProjectRepository previous = loadPrevious(cacheFile);
+    if (previous != null) {
+      Map<String, String> digests = new TreeMap<String, String>(previous.digestsBySection());
+      digests.remove(ProjectRepository.SETTINGS_SECTION);
+      if (!digests.isEmpty()) {
+        url += "&digests=" + ServerClient.encodeForUrl(formatDigests(digests));
+      }
+    }
     ProjectRepository ref = ProjectRepository.fromJson(serverClient.request(url));
+    if (previous != null) {
+      ref.restoreUnchangedSections(previous);
+    }
+    save(cacheFile, ref.withoutSettings());
 
     if (session != null) {
       for (ProjectDefinition module : reactor.getProjects()) {
@@ -110,6 +137,36 @@ public class DefaultProjectReferentialsLoader implements ProjectRepositoriesLoad
     return ref;
   }
 
+  @CheckForNull
+  private static ProjectRepository loadPrevious(File cacheFile) {
+    if (!cacheFile.exists()) {
+      return null;
+    }
+    try {
+      return ProjectRepository.fromJson(FileUtils.readFileToString(cacheFile, "UTF-8"));
+    } catch (Exception e) {
+      LOG.debug("Ignore cached project repository " + cacheFile, e);
+      FileUtils.deleteQuietly(cacheFile);
+      return null;
+    }
+  }
+
+  private static void save(File cacheFile, ProjectRepository ref) {
+    try {
+      FileUtils.writeStringToFile(cacheFile, ref.toJson(), "UTF-8");
+    } catch (IOException e) {
+      LOG.warn("Fail to cache project repository in " + cacheFile, e);
+    }
+  }
+
+  private static String formatDigests(Map<String, String> digestsBySection) {
+    List<String> digests = new ArrayList<String>();
+    for (Map.Entry<String, String> entry : digestsBySection.entrySet()) {
+      digests.add(entry.getKey() + ":" + entry.getValue());
+    }
+    return Joiner.on(',').join(digests);
+  }
+
   public List<Object[]> query(String resourceKey, String... metricKeys) {
     StringBuilder sb = new StringBuilder();
     Map<String, Object> params = Maps.newHashMap();
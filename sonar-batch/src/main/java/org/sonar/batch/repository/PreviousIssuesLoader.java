@@ -23,8 +23,16 @@ import com.google.common.base.Function;
 import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.batch.protocol.input.issues.PreviousIssue;
 
+import javax.annotation.Nullable;
+
+import java.util.Collection;
+
 public interface PreviousIssuesLoader {
 
-  void load(ProjectReactor reactor, Function<PreviousIssue, Void> consumer);
+  /**
+   * @param componentKeys if not null, only the issues of these components are loaded. Implementations
+   *                      may load more issues, for example the issues of the whole project.
+   */
+  void load(ProjectReactor reactor, @Nullable Collection<String> componentKeys, Function<PreviousIssue, Void> consumer);
 
 }
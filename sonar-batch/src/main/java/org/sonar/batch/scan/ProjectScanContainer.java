@@ -45,6 +45,7 @@ import org.sonar.batch.debt.DebtModelProvider;
 import org.sonar.batch.debt.IssueChangelogDebtCalculator;
 import org.sonar.batch.duplication.BlockCache;
 import org.sonar.batch.duplication.DuplicationCache;
+import org.sonar.batch.duplication.PersistentBlockCache;
 import org.sonar.batch.index.Caches;
 import org.sonar.batch.index.ComponentDataCache;
 import org.sonar.batch.index.DefaultIndex;
@@ -188,6 +189,7 @@ public class ProjectScanContainer extends ComponentContainer {
       // Duplications
       BlockCache.class,
       DuplicationCache.class,
+      PersistentBlockCache.class,
 
       ProjectSettings.class,
 
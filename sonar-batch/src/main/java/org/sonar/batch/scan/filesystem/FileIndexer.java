@@ -92,7 +92,7 @@ public class FileIndexer implements BatchComponent {
 
     indexAllConcurrently(progress);
 
-    // Populate FS in a synchronous way because PersistIt Exchange is not concurrent
+    // Populate FS in a synchronous way because DefaultFileSystem is not thread-safe (set of languages)
     for (InputFile indexed : progress.indexed) {
       fileSystem.add(indexed);
     }
@@ -37,6 +37,7 @@ import java.io.IOException;
 import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -119,6 +120,25 @@ public class BatchPluginRepositoryTest {
     assertThat(repository.getMetadata()).isEmpty();
   }
 
+  @Test
+  public void shouldFailIfAPluginCanNotBeDownloaded() throws Exception {
+    RemotePlugin checkstyle = new RemotePlugin("checkstyle", true);
+    RemotePlugin checkstyleExt = new RemotePlugin("checkstyleextensions", false);
+
+    DefaultPluginsReferential downloader = mock(DefaultPluginsReferential.class);
+    when(downloader.pluginFile(checkstyle)).thenReturn(fileFromCache("sonar-checkstyle-plugin-2.8.jar"));
+    when(downloader.pluginFile(checkstyleExt)).thenThrow(new IllegalStateException("Fail to download plugin: checkstyleextensions"));
+
+    repository = new BatchPluginRepository(downloader, new Settings(), mode, new BatchPluginJarInstaller(cache));
+
+    try {
+      repository.doStart(Arrays.asList(checkstyle, checkstyleExt));
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to download plugin: checkstyleextensions");
+    }
+  }
+
   private File fileFromCache(String filename) throws Exception {
     File file = new File(Resources.getResource("org/sonar/batch/bootstrap/BatchPluginRepositoryTest/" + filename).toURI());
     File destDir = new File(userHome, "cache/foomd5");
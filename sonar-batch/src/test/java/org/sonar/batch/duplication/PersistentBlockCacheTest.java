@@ -0,0 +1,131 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.duplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistentBlockCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void keep_blocks_between_analyses() throws Exception {
+    File dir = temp.newFolder();
+    PersistentBlockCache cache = new PersistentBlockCache(dir, "5.1", true);
+    assertThat(cache.get("java", "HASH1", "foo:Foo.java")).isNull();
+    cache.put("java", "HASH1", Arrays.asList(newBlock("foo:Foo.java", 12L, 0), newBlock("foo:Foo.java", 34L, 1)));
+    cache.put("java", "HASH2", Arrays.asList(newBlock("foo:Bar.java", 56L, 0)));
+    cache.stop();
+
+    // second analysis: Foo.java was moved, Bar.java was changed
+    cache = new PersistentBlockCache(dir, "5.1", true);
+    List<Block> blocks = cache.get("java", "HASH1", "foo:Foo2.java");
+    assertThat(blocks).hasSize(2);
+    assertThat(blocks.get(0).getResourceId()).isEqualTo("foo:Foo2.java");
+    assertThat(blocks.get(0).getBlockHash()).isEqualTo(new ByteArray(12L));
+    assertThat(blocks.get(0).getIndexInFile()).isEqualTo(0);
+    assertThat(blocks.get(0).getStartLine()).isEqualTo(1);
+    assertThat(blocks.get(0).getEndLine()).isEqualTo(10);
+    assertThat(blocks.get(0).getStartUnit()).isEqualTo(3);
+    assertThat(blocks.get(0).getEndUnit()).isEqualTo(7);
+    assertThat(blocks.get(1).getBlockHash()).isEqualTo(new ByteArray(34L));
+    cache.stop();
+
+    // third analysis: blocks of files that do not exist anymore are dropped
+    cache = new PersistentBlockCache(dir, "5.1", true);
+    assertThat(cache.get("java", "HASH1", "foo:Foo2.java")).hasSize(2);
+    assertThat(cache.get("java", "HASH2", "foo:Bar.java")).isNull();
+  }
+
+  @Test
+  public void invalidate_blocks_when_server_is_upgraded() throws Exception {
+    File dir = temp.newFolder();
+    PersistentBlockCache cache = new PersistentBlockCache(dir, "5.1", true);
+    cache.put("java", "HASH1", Arrays.asList(newBlock("foo:Foo.java", 12L, 0)));
+    cache.stop();
+
+    cache = new PersistentBlockCache(dir, "5.2", true);
+    assertThat(cache.get("java", "HASH1", "foo:Foo.java")).isNull();
+    cache.stop();
+
+    // files of previous version are deleted
+    assertThat(dir.listFiles()).hasSize(1);
+  }
+
+  @Test
+  public void partitions_are_independent() throws Exception {
+    PersistentBlockCache cache = new PersistentBlockCache(temp.newFolder(), "5.1", true);
+    cache.put("java", "HASH1", Arrays.asList(newBlock("foo:Foo.java", 12L, 0)));
+
+    assertThat(cache.get("java", "HASH1", "foo:Foo.java")).hasSize(1);
+    assertThat(cache.get("cobol", "HASH1", "foo:Foo.java")).isNull();
+  }
+
+  @Test
+  public void blocks_are_written_to_disk_without_waiting_for_end_of_analysis() throws Exception {
+    File dir = temp.newFolder();
+    PersistentBlockCache cache = new PersistentBlockCache(dir, "5.1", true);
+    cache.put("java", "HASH1", Arrays.asList(newBlock("foo:Foo.java", 12L, 0)));
+
+    // concurrent analysis of the same project
+    PersistentBlockCache otherCache = new PersistentBlockCache(dir, "5.1", true);
+    assertThat(otherCache.get("java", "HASH1", "foo:Foo.java")).hasSize(1);
+    otherCache.put("java", "HASH1", Arrays.asList(newBlock("foo:Foo.java", 12L, 0)));
+    otherCache.stop();
+    cache.stop();
+
+    // no temporary files are left
+    File[] partitions = dir.listFiles();
+    assertThat(partitions).hasSize(1);
+    assertThat(partitions[0].list()).containsOnly("HASH1");
+  }
+
+  @Test
+  public void do_nothing_if_disabled() throws Exception {
+    File dir = temp.newFolder();
+    PersistentBlockCache cache = new PersistentBlockCache(dir, "5.1", false);
+    cache.put("java", "HASH1", Arrays.asList(newBlock("foo:Foo.java", 12L, 0)));
+
+    assertThat(cache.get("java", "HASH1", "foo:Foo.java")).isNull();
+    cache.stop();
+    assertThat(dir.listFiles()).isEmpty();
+  }
+
+  private static Block newBlock(String resourceId, long hash, int indexInFile) {
+    return Block.builder()
+      .setResourceId(resourceId)
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(indexInFile)
+      .setLines(1, 10)
+      .setUnit(3, 7)
+      .build();
+  }
+}
@@ -20,12 +20,19 @@
 package org.sonar.batch.index;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class CacheTest {
@@ -254,4 +261,33 @@ public class CacheTest {
     cache.clear("foo", "bar", "baz");
     cache.clear();
   }
+
+  @Test
+  public void concurrent_access() throws Exception {
+    final Cache<String> cache = caches.createCache("concurrent");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Callable<Void>> tasks = Lists.newArrayList();
+    for (int t = 0; t < 4; t++) {
+      final String thread = "thread" + t;
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          for (int i = 0; i < 1000; i++) {
+            cache.put(thread, i, "value" + i);
+            assertThat(cache.get(thread, i)).isEqualTo("value" + i);
+          }
+          return null;
+        }
+      });
+    }
+    for (Future<Void> future : executor.invokeAll(tasks)) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertThat(cache.keySet()).hasSize(4);
+    assertThat(Iterables.size(cache.values("thread2"))).isEqualTo(1000);
+    assertThat(cache.getHitCount()).isEqualTo(4000);
+    assertThat(cache.getMissCount()).isEqualTo(0);
+  }
 }
@@ -44,7 +44,7 @@ public class CachesTest {
   public static Caches createCacheOnTemp(TemporaryFolder temp) {
     try {
       BootstrapProperties bootstrapProps = new BootstrapProperties(ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.newFolder().getAbsolutePath()));
-      return new Caches(new TempFolderProvider().provide(bootstrapProps));
+      return new Caches(new TempFolderProvider().provide(bootstrapProps), bootstrapProps);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -95,6 +95,34 @@ public class CachesTest {
     }
   }
 
+  @Test
+  public void should_configure_buffer_pool_and_volume() throws Exception {
+    caches.stop();
+    BootstrapProperties bootstrapProps = new BootstrapProperties(ImmutableMap.of(
+      CoreProperties.WORKING_DIRECTORY, temp.newFolder().getAbsolutePath(),
+      Caches.BUFFER_COUNT_PROPERTY, "64",
+      Caches.MAXIMUM_PAGES_PROPERTY, "1000"));
+    caches = new Caches(new TempFolderProvider().provide(bootstrapProps), bootstrapProps);
+
+    assertThat(caches.persistit().getBufferPool(8192).getBufferCount()).isEqualTo(64);
+  }
+
+  @Test
+  public void fail_if_bad_buffer_count() throws Exception {
+    caches.stop();
+    BootstrapProperties bootstrapProps = new BootstrapProperties(ImmutableMap.of(
+      CoreProperties.WORKING_DIRECTORY, temp.newFolder().getAbsolutePath(),
+      Caches.BUFFER_COUNT_PROPERTY, "-3"));
+    try {
+      caches = new Caches(new TempFolderProvider().provide(bootstrapProps), bootstrapProps);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Value of property sonar.batch.caches.bufferCount must be a positive integer: -3");
+    } finally {
+      caches = createCacheOnTemp(temp);
+    }
+  }
+
   static class Element implements Serializable {
 
   }
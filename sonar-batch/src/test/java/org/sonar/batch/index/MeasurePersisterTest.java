@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.index;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -39,11 +40,18 @@ import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RulePriority;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.persistence.BatchSession;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class MeasurePersisterTest extends AbstractDaoTestCase {
@@ -67,16 +75,18 @@ public class MeasurePersisterTest extends AbstractDaoTestCase {
   BatchResource dirResource = batchResource(aDirectory, PACKAGE_SNAPSHOT_ID);
   BatchResource fileResource = batchResource(aFile, FILE_SNAPSHOT_ID);
   MeasureCache measureCache;
+  MetricFinder metricFinder;
+  ResourceCache resourceCache;
 
   @Before
   public void mockResourcePersister() {
     measureCache = mock(MeasureCache.class);
-    ResourceCache resourceCache = mock(ResourceCache.class);
+    resourceCache = mock(ResourceCache.class);
     when(resourceCache.get("foo")).thenReturn(projectResource);
     when(resourceCache.get("foo:org/foo/Bar.java")).thenReturn(fileResource);
     when(resourceCache.get("foo:org/foo")).thenReturn(dirResource);
 
-    MetricFinder metricFinder = mock(MetricFinder.class);
+    metricFinder = mock(MetricFinder.class);
     Metric ncloc = ncloc();
     Metric coverage = coverage();
     when(metricFinder.findByKey(ncloc.getKey())).thenReturn(ncloc);
@@ -96,6 +106,30 @@ public class MeasurePersisterTest extends AbstractDaoTestCase {
     checkTables("shouldInsertMeasure", "project_measures");
   }
 
+  @Test
+  public void should_load_metrics_and_resources_once() throws Exception {
+    setupData("empty");
+
+    List<Cache.Entry<Measure>> entries = Lists.newArrayList();
+    int count = 2 * BatchSession.MAX_BATCH_SIZE + 10;
+    for (int i = 0; i < count; i++) {
+      // measures are sorted by resource in cache
+      String resourceKey = i < count / 2 ? "foo" : "foo:org/foo";
+      entries.add(new Cache.Entry<Measure>(new String[] {resourceKey, "ncloc"}, new Measure(ncloc()).setValue((double) i)));
+    }
+    // measures that are not persisted
+    entries.add(new Cache.Entry<Measure>(new String[] {"foo", "ncloc"}, new Measure("ncloc").setPersistenceMode(PersistenceMode.MEMORY).setValue(1.0)));
+    entries.add(new Cache.Entry<Measure>(new String[] {"foo", "ncloc"}, new Measure("ncloc")));
+    when(measureCache.entries()).thenReturn(entries);
+
+    measurePersister.persist();
+
+    assertThat(countMeasures()).isEqualTo(count);
+    verify(metricFinder, times(1)).findByKey("ncloc");
+    verify(resourceCache, times(1)).get("foo");
+    verify(resourceCache, times(1)).get("foo:org/foo");
+  }
+
   @Test
   public void should_display_message_when_error_during_insert_measure() {
     setupData("empty");
@@ -198,6 +232,17 @@ public class MeasurePersisterTest extends AbstractDaoTestCase {
     assertThat(MeasurePersister.shouldPersistMeasure(aFile, duplicatedLines)).isFalse();
   }
 
+  private int countMeasures() throws SQLException {
+    Connection connection = getConnection();
+    try {
+      ResultSet resultSet = connection.createStatement().executeQuery("select count(*) from project_measures");
+      resultSet.next();
+      return resultSet.getInt(1);
+    } finally {
+      connection.close();
+    }
+  }
+
   private static BatchResource batchResource(Resource resource, int id) {
     Snapshot snapshot = mock(Snapshot.class);
     when(snapshot.getId()).thenReturn(id);
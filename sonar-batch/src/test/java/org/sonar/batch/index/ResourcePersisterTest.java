@@ -29,6 +29,8 @@ import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.config.Settings;
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.database.model.ResourceModel;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
@@ -51,8 +53,13 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -355,6 +362,46 @@ public class ResourcePersisterTest extends AbstractDbUnitTestCase {
     checkTables("shouldUpdateExistingResource", new String[] {"build_date", "created_at", "authorization_updated_at"}, "projects", "snapshots");
   }
 
+  @Test
+  public void shouldUpdateExistingResourceUsingIndex() {
+    setupData("shouldUpdateExistingResource");
+
+    singleProject.setName("new name");
+    singleProject.setDescription("new description");
+    resourceCache.add(singleProject, null);
+    persister.persist();
+
+    checkTables("shouldUpdateExistingResource", new String[] {"build_date", "created_at", "authorization_updated_at"}, "projects", "snapshots");
+  }
+
+  @Test
+  public void shouldLoadExistingFilesOnce() {
+    setupData("shouldLoadExistingFilesOnce");
+    DatabaseSession session = spy(getSession());
+    persister = new ResourcePersister(projectTree, session, permissions, resourceCache, mock(ScanGraph.class));
+
+    resourceCache.add(singleProject, null);
+    for (int i = 1; i <= 3; i++) {
+      resourceCache.add(File.create("src/Foo" + i + ".java").setEffectiveKey("foo:src/Foo" + i + ".java"), singleProject);
+    }
+    persister.persist();
+
+    // the project is searched by key, the files are loaded by a single query and are not loaded again
+    verify(session).getSingleResult(ResourceModel.class, "key", "foo");
+    verify(session, times(1)).createQuery(startsWith("SELECT r FROM ResourceModel r WHERE r.key IN"));
+    verify(session, never()).getSingleResult(eq(ResourceModel.class), eq("key"), startsWith("foo:"));
+    verify(session, never()).getSingleResult(eq(ResourceModel.class), eq("id"), any());
+    verify(session, never()).getEntity(eq(ResourceModel.class), any());
+
+    for (int i = 1; i <= 3; i++) {
+      BatchResource file = resourceCache.get("foo:src/Foo" + i + ".java");
+      assertThat(file.resource().getId()).isEqualTo(1001 + i);
+      assertThat(file.snapshot().getResourceId()).isEqualTo(1001 + i);
+    }
+    assertThat(getHQLCount(ResourceModel.class)).isEqualTo(4);
+    assertThat(getHQLCount(Snapshot.class)).isEqualTo(8);
+  }
+
   // SONAR-1700
   @Test
   public void shouldRemoveRootIndexIfResourceIsProject() {
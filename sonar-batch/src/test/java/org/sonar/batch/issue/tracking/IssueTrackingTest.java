@@ -38,6 +38,7 @@ import org.sonar.core.issue.db.IssueDto;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -144,6 +145,44 @@ public class IssueTrackingTest {
     assertThat(result.matching(newIssue)).isSameAs(referenceIssue);
   }
 
+  @Test
+  public void match_many_issues_of_same_rule_when_lines_are_shifted() {
+    RuleKey ruleKey = RuleKey.of("squid", "AvoidCycle");
+    int count = 10000;
+    List<PreviousIssue> referenceIssues = newArrayList();
+    List<DefaultIssue> newIssues = newArrayList();
+    for (int i = 0; i < count; i++) {
+      referenceIssues.add(newReferenceIssue("message" + (i % 10), i, "squid", "AvoidCycle", "checksum" + i));
+      newIssues.add(newDefaultIssue("message" + (i % 10), i + 3, ruleKey, "checksum" + i));
+    }
+
+    IssueTrackingResult result = new IssueTrackingResult();
+    tracking.mapIssues(newIssues, referenceIssues, null, result);
+
+    assertThat(result.unmatched()).isEmpty();
+    for (int i = 0; i < count; i++) {
+      assertThat(result.matching(newIssues.get(i))).isSameAs(referenceIssues.get(i));
+    }
+  }
+
+  @Test
+  public void each_reference_issue_is_matched_only_once() {
+    RuleKey ruleKey = RuleKey.of("squid", "AvoidCycle");
+    PreviousIssue referenceIssue1 = newReferenceIssue("message", 1, "squid", "AvoidCycle", "checksum1");
+    PreviousIssue referenceIssue2 = newReferenceIssue("message", 2, "squid", "AvoidCycle", "checksum1");
+    DefaultIssue newIssue1 = newDefaultIssue("message", 5, ruleKey, "checksum1");
+    DefaultIssue newIssue2 = newDefaultIssue("message", 6, ruleKey, "checksum1");
+    DefaultIssue newIssue3 = newDefaultIssue("message", 7, ruleKey, "checksum1");
+
+    IssueTrackingResult result = new IssueTrackingResult();
+    tracking.mapIssues(newArrayList(newIssue1, newIssue2, newIssue3), newArrayList(referenceIssue1, referenceIssue2), null, result);
+
+    assertThat(result.matching(newIssue1)).isSameAs(referenceIssue1);
+    assertThat(result.matching(newIssue2)).isSameAs(referenceIssue2);
+    assertThat(result.isMatched(newIssue3)).isFalse();
+    assertThat(result.unmatched()).isEmpty();
+  }
+
   /**
    * SONAR-2812
    */
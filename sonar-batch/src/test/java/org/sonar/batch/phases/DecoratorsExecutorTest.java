@@ -19,11 +19,18 @@
  */
 package org.sonar.batch.phases;
 
+import com.google.common.collect.Lists;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafeDecorator;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MetricFinder;
+import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
@@ -35,14 +42,25 @@ import org.sonar.batch.events.EventBus;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.batch.sensor.coverage.CoverageExclusions;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class DecoratorsExecutorTest {
 
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   @Test
   public void shouldProfileExecutionTime() {
     Decorator1 decorator1 = new Decorator1();
@@ -67,7 +85,7 @@ public class DecoratorsExecutorTest {
     doThrow(new SonarException()).when(decorator).decorate(any(Resource.class), any(DecoratorContext.class));
 
     DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), new Project("key"), mock(SonarIndex.class),
-      mock(EventBus.class), mock(CoverageExclusions.class), mock(MeasureCache.class), mock(MetricFinder.class), mock(DuplicationCache.class));
+      mock(EventBus.class), mock(CoverageExclusions.class), mock(MeasureCache.class), mock(MetricFinder.class), mock(DuplicationCache.class), new Settings());
     try {
       executor.executeDecorator(decorator, mock(DefaultDecoratorContext.class), File.create("src/org/foo/Bar.java", "org/foo/Bar.java", null, false));
       fail("Exception has not been thrown");
@@ -77,6 +95,107 @@ public class DecoratorsExecutorTest {
     }
   }
 
+  @Test
+  public void decorate_resources_concurrently() {
+    Project project = new Project("key");
+    SonarIndex index = mock(SonarIndex.class);
+    List<Resource> allResources = Lists.<Resource>newArrayList(project);
+    List<Resource> directories = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      Directory directory = Directory.create("src/dir" + i);
+      List<Resource> files = Lists.newArrayList();
+      for (int j = 0; j < 20; j++) {
+        files.add(File.create("src/dir" + i + "/File" + j + ".java"));
+      }
+      when(index.getChildren(directory)).thenReturn(files);
+      directories.add(directory);
+      allResources.add(directory);
+      allResources.addAll(files);
+    }
+    when(index.getChildren(project)).thenReturn(directories);
+    MeasureCache measureCache = mock(MeasureCache.class);
+    when(measureCache.byResource(any(Resource.class))).thenReturn(Collections.<Measure>emptyList());
+
+    RecordingDecorator threadSafeDecorator = new ThreadSafeRecordingDecorator();
+    RecordingDecorator decorator = new RecordingDecorator();
+    IndexLockDecorator indexLockDecorator = new IndexLockDecorator(index);
+    List<Decorator> decorators = Arrays.<Decorator>asList(threadSafeDecorator, decorator, indexLockDecorator);
+    BatchExtensionDictionnary dictionnary = mock(BatchExtensionDictionnary.class);
+    when(dictionnary.sort(anyCollection())).thenReturn((Collection) decorators);
+    Settings settings = new Settings();
+    settings.setProperty(DecoratorsExecutor.THREADS_PROPERTY, 4);
+
+    new DecoratorsExecutor(dictionnary, project, index, mock(EventBus.class), mock(CoverageExclusions.class), measureCache, mock(MetricFinder.class),
+      mock(DuplicationCache.class), settings).execute();
+
+    for (RecordingDecorator recordingDecorator : Arrays.asList(threadSafeDecorator, decorator)) {
+      assertThat(recordingDecorator.decoratedResources).containsOnlyElementsOf(allResources).hasSameSizeAs(allResources);
+      // children are decorated before their parent
+      assertThat(recordingDecorator.decoratedResources.get(allResources.size() - 1)).isEqualTo(project);
+      for (Resource directory : directories) {
+        assertThat(recordingDecorator.decoratedResources.indexOf(directory)).isGreaterThan(recordingDecorator.decoratedResources.indexOf(index.getChildren(directory).iterator().next()));
+      }
+    }
+    assertThat(decorator.maxConcurrentExecutions).isEqualTo(1);
+    // decorators that are not thread-safe can use the index without synchronization
+    assertThat(indexLockDecorator.executions.get()).isEqualTo(allResources.size());
+    assertThat(indexLockDecorator.executionsWithoutLock.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void fail_if_bad_number_of_threads() {
+    Settings settings = new Settings();
+    settings.setProperty(DecoratorsExecutor.THREADS_PROPERTY, 0);
+    DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), new Project("key"), mock(SonarIndex.class),
+      mock(EventBus.class), mock(CoverageExclusions.class), mock(MeasureCache.class), mock(MetricFinder.class), mock(DuplicationCache.class), settings);
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Value of property sonar.batch.decorators.threads must be a positive integer: 0");
+    executor.execute();
+  }
+
+  static class RecordingDecorator implements Decorator {
+    final List<Resource> decoratedResources = Collections.synchronizedList(Lists.<Resource>newArrayList());
+    final AtomicInteger concurrentExecutions = new AtomicInteger();
+    volatile int maxConcurrentExecutions = 0;
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      int executions = concurrentExecutions.incrementAndGet();
+      maxConcurrentExecutions = Math.max(maxConcurrentExecutions, executions);
+      decoratedResources.add(resource);
+      concurrentExecutions.decrementAndGet();
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
+  @ThreadSafeDecorator
+  static class ThreadSafeRecordingDecorator extends RecordingDecorator {
+  }
+
+  static class IndexLockDecorator implements Decorator {
+    final SonarIndex index;
+    final AtomicInteger executions = new AtomicInteger();
+    final AtomicInteger executionsWithoutLock = new AtomicInteger();
+
+    IndexLockDecorator(SonarIndex index) {
+      this.index = index;
+    }
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      executions.incrementAndGet();
+      if (!Thread.holdsLock(index)) {
+        executionsWithoutLock.incrementAndGet();
+      }
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
   static class Decorator1 implements Decorator {
     public void decorate(Resource resource, DecoratorContext context) {
     }
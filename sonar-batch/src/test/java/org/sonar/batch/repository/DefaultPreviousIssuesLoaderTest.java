@@ -0,0 +1,105 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.repository;
+
+import com.google.common.base.Function;
+import com.google.common.io.InputSupplier;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.batch.bootstrap.ServerClient;
+import org.sonar.batch.protocol.input.issues.PreviousIssue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultPreviousIssuesLoaderTest {
+
+  private ServerClient serverClient;
+  private DefaultPreviousIssuesLoader loader;
+  private ProjectReactor reactor;
+  private List<PreviousIssue> issues = new ArrayList<>();
+
+  @Before
+  public void prepare() {
+    serverClient = mock(ServerClient.class);
+    when(serverClient.doRequest(anyString(), eq("GET"), (Integer) isNull())).thenReturn(new InputSupplier<InputStream>() {
+      @Override
+      public InputStream getInput() throws IOException {
+        return new ByteArrayInputStream("[{\"key\": \"ABCD\", \"componentKey\": \"foo:src/Foo.java\"}]".getBytes("UTF-8"));
+      }
+    });
+    loader = new DefaultPreviousIssuesLoader(serverClient);
+    reactor = new ProjectReactor(ProjectDefinition.create().setKey("foo"));
+  }
+
+  @Test
+  public void load_all_issues() {
+    loader.load(reactor, null, new CollectIssues());
+
+    verify(serverClient).doRequest("/batch/issues?key=foo", "GET", null);
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).key()).isEqualTo("ABCD");
+    assertThat(issues.get(0).componentKey()).isEqualTo("foo:src/Foo.java");
+  }
+
+  @Test
+  public void load_issues_of_given_components() {
+    loader.load(reactor, Arrays.asList("foo", "foo:src/Foo.java"), new CollectIssues());
+
+    verify(serverClient).doRequest("/batch/issues?key=foo&components=foo%2Cfoo%3Asrc%2FFoo.java", "GET", null);
+    assertThat(issues).hasSize(1);
+  }
+
+  @Test
+  public void load_all_issues_if_component_keys_are_too_long() {
+    String longKey = "foo:" + StringUtils.repeat("src/main/java/org/sonar/", 10) + "Foo";
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      keys.add(longKey + i + ".java");
+    }
+    loader.load(reactor, keys, new CollectIssues());
+
+    verify(serverClient).doRequest("/batch/issues?key=foo", "GET", null);
+    assertThat(issues).hasSize(1);
+  }
+
+  private class CollectIssues implements Function<PreviousIssue, Void> {
+    @Override
+    public Void apply(PreviousIssue issue) {
+      issues.add(issue);
+      return null;
+    }
+  }
+}
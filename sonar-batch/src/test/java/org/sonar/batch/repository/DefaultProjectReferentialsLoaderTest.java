@@ -22,15 +22,25 @@ package org.sonar.batch.repository;
 import org.sonar.batch.repository.DefaultProjectReferentialsLoader;
 
 import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.batch.bootstrap.AnalysisMode;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.bootstrap.TaskProperties;
+import org.sonar.batch.protocol.input.ProjectRepository;
 import org.sonar.batch.rule.ModuleQProfiles;
+import org.sonar.home.cache.FileCache;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
@@ -40,17 +50,24 @@ import static org.mockito.Mockito.when;
 
 public class DefaultProjectReferentialsLoaderTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private DefaultProjectReferentialsLoader loader;
   private ServerClient serverClient;
   private AnalysisMode analysisMode;
   private ProjectReactor reactor;
   private TaskProperties taskProperties;
+  private File cacheDir;
 
   @Before
-  public void prepare() {
+  public void prepare() throws Exception {
     serverClient = mock(ServerClient.class);
     analysisMode = mock(AnalysisMode.class);
-    loader = new DefaultProjectReferentialsLoader(mock(DatabaseSession.class), serverClient, analysisMode);
+    FileCache fileCache = mock(FileCache.class);
+    cacheDir = temp.newFolder();
+    when(fileCache.getDir()).thenReturn(cacheDir);
+    loader = new DefaultProjectReferentialsLoader(mock(DatabaseSession.class), serverClient, analysisMode, fileCache);
     loader = spy(loader);
     doReturn(null).when(loader).lastSnapshotCreationDate(anyString());
     when(serverClient.request(anyString())).thenReturn("{}");
@@ -84,4 +101,45 @@ public class DefaultProjectReferentialsLoaderTest {
     verify(serverClient).request("/batch/project?key=foo&profile=my-profile%232&preview=false");
   }
 
+  @Test
+  public void downloadOnlyChangedSections() {
+    reactor = new ProjectReactor(ProjectDefinition.create().setKey("foo"));
+    ProjectRepository first = new ProjectRepository()
+      .addSettings("foo", Collections.singletonMap("prop", "value"))
+      .computeDigests();
+    when(serverClient.request("/batch/project?key=foo&preview=false")).thenReturn(first.toJson());
+    loader.load(reactor, taskProperties);
+
+    // settings are always downloaded
+    String digests = "fileData:" + first.digestsBySection().get(ProjectRepository.FILE_DATA_SECTION)
+      + ",qprofiles:" + first.digestsBySection().get(ProjectRepository.QPROFILES_SECTION);
+    String secondUrl = "/batch/project?key=foo&preview=false&digests=" + ServerClient.encodeForUrl(digests);
+    ProjectRepository second = new ProjectRepository()
+      .addSettings("foo", Collections.singletonMap("prop", "value"))
+      .computeDigests()
+      .removeUnchangedSections(first.withoutSettings().digestsBySection());
+    when(serverClient.request(secondUrl)).thenReturn(second.toJson());
+    ProjectRepository ref = loader.load(reactor, taskProperties);
+
+    verify(serverClient).request(secondUrl);
+    assertThat(ref.unchangedSections()).isEmpty();
+    assertThat(ref.settings("foo")).containsEntry("prop", "value");
+  }
+
+  @Test
+  public void doNotCacheSettings() throws Exception {
+    reactor = new ProjectReactor(ProjectDefinition.create().setKey("foo"));
+    ProjectRepository repository = new ProjectRepository()
+      .addSettings("foo", Collections.singletonMap("sonar.password.secured", "secret"))
+      .computeDigests();
+    when(serverClient.request("/batch/project?key=foo&preview=false")).thenReturn(repository.toJson());
+
+    ProjectRepository ref = loader.load(reactor, taskProperties);
+
+    assertThat(ref.settings("foo")).containsEntry("sonar.password.secured", "secret");
+    File[] cacheFiles = new File(cacheDir, "_project_repositories").listFiles();
+    assertThat(cacheFiles).hasSize(1);
+    assertThat(FileUtils.readFileToString(cacheFiles[0], "UTF-8")).doesNotContain("secret");
+  }
+
 }
@@ -26,7 +26,7 @@ import java.util.List;
 public interface AnalysisReportMapper {
   List<AnalysisReportDto> selectByProjectKey(String projectKey);
 
-  List<Long> selectAvailables(
+  List<AnalysisReportDto> selectAvailables(
     @Param("availableStatus") AnalysisReportDto.Status availableStatus,
     @Param("busyStatus") AnalysisReportDto.Status busyStatus);
 
@@ -23,7 +23,6 @@ package org.sonar.core.computation.dbcleaner;
 import com.google.common.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.api.CoreProperties;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.TimeUtils;
@@ -77,12 +76,11 @@ public class DefaultPurgeTask implements PurgeTask {
       profiler.reset();
       cleanHistoricalData(resourceId);
       doPurge(resourceId);
-      if (settings.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY)) {
-        long duration = System.currentTimeMillis() - start;
-        LOG.info("\n -------- Profiling for purge: " + TimeUtils.formatDuration(duration) + " --------\n");
-        profiler.dump(duration, LOG);
-        LOG.info("\n -------- End of profiling for purge --------\n");
-      }
+      // purge can be longer than the analysis itself, so durations of tables are always logged
+      long duration = System.currentTimeMillis() - start;
+      LOG.info("\n -------- Profiling for purge: " + TimeUtils.formatDuration(duration) + " --------\n");
+      profiler.dump(duration, LOG);
+      LOG.info("\n -------- End of profiling for purge --------\n");
     }
     return this;
   }
@@ -20,6 +20,7 @@
 package org.sonar.core.persistence;
 
 import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.io.FileUtils;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.utils.SonarException;
@@ -31,6 +32,7 @@ import javax.annotation.Nullable;
 import javax.sql.DataSource;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 
 public class PreviewDatabaseFactory implements ServerComponent {
@@ -41,6 +43,7 @@ public class PreviewDatabaseFactory implements ServerComponent {
   private static final String SONAR = "sonar";
   private static final String USER = SONAR;
   private static final String PASSWORD = SONAR;
+  private static final String H2_OPTIONS = ";LOG=0;CACHE_SIZE=65536;LOCK_MODE=0;UNDO_LOG=0";
 
   private final Database database;
   private final Profiling profiling;
@@ -50,20 +53,36 @@ public class PreviewDatabaseFactory implements ServerComponent {
     this.profiling = profiling;
   }
 
-  public File createNewDatabaseForDryRun(Long projectId, File destFolder, String dbFileName) {
+  public File createNewDatabaseForDryRun(@Nullable Long projectId, File destFolder, String dbFileName) {
+    return createNewDatabaseForDryRun(projectId, null, destFolder, dbFileName);
+  }
+
+  /**
+   * Same as {@link #createNewDatabaseForDryRun(Long, File, String)}, but global tables (rules, users, ...) are not
+   * copied from database. They are taken from the given base database, which is a database previously generated without project.
+   * The base database is not modified and can be shared by concurrent generations.
+   */
+  public File createNewDatabaseForDryRun(@Nullable Long projectId, @Nullable File baseDatabase, File destFolder, String dbFileName) {
     StopWatch watch = profiling.start("previewdb", Level.BASIC);
 
     String h2Name = destFolder.getAbsolutePath() + File.separator + dbFileName;
+    File dbFile = new File(h2Name + H2_FILE_SUFFIX);
 
     try {
       DataSource source = database.getDataSource();
-      BasicDataSource destination = create(DIALECT, DRIVER, USER, PASSWORD, URL + h2Name + ";LOG=0;CACHE_SIZE=65536;LOCK_MODE=0;UNDO_LOG=0");
-
-      copy(source, destination, projectId);
+      BasicDataSource destination;
+      if (baseDatabase == null) {
+        destination = create(DIALECT, DRIVER, USER, PASSWORD, URL + h2Name + H2_OPTIONS);
+        copyGlobalTables(source, destination);
+      } else {
+        FileUtils.copyFile(baseDatabase, dbFile);
+        destination = new DbTemplate(profiling).dataSource(DRIVER, USER, PASSWORD, URL + h2Name + H2_OPTIONS);
+      }
+      if (projectId != null) {
+        copyProjectTables(source, destination, projectId);
+      }
       close(destination);
 
-      File dbFile = new File(h2Name + H2_FILE_SUFFIX);
-
       long size = dbFile.length();
       String message = "";
       if (projectId == null) {
@@ -75,15 +94,14 @@ public class PreviewDatabaseFactory implements ServerComponent {
 
       return dbFile;
 
-    } catch (SQLException e) {
+    } catch (SQLException | IOException e) {
       throw new SonarException("Unable to create database for DryRun", e);
     }
 
   }
 
-  private void copy(DataSource source, DataSource dest, @Nullable Long projectId) {
-    DbTemplate template = new DbTemplate(profiling);
-    template
+  private void copyGlobalTables(DataSource source, DataSource dest) {
+    new DbTemplate(profiling)
       .copyTable(source, dest, "characteristics")
       .copyTable(source, dest, "permission_templates")
       .copyTable(source, dest, "perm_templates_users")
@@ -91,30 +109,32 @@ public class PreviewDatabaseFactory implements ServerComponent {
       .copyTable(source, dest, "rules")
       .copyTable(source, dest, "rules_parameters")
       .copyTableColumns(source, dest, "users", new String[] {"id", "login", "name", "active"});
-    if (projectId != null) {
-      template.copyTable(source, dest, "projects", projectQuery(projectId, false));
-
-      template.copyTable(source, dest, "events", "SELECT * FROM events WHERE resource_id=" + projectId);
-
-      StringBuilder snapshotQuery = new StringBuilder()
-        // All snapshots of root_project for alerts on differential periods
-        .append("SELECT * FROM snapshots WHERE project_id=")
-        .append(projectId);
-      template.copyTable(source, dest, "snapshots", snapshotQuery.toString());
-
-      // All measures of snapshots of root project for alerts on differential periods
-      template.copyTable(source, dest, "project_measures", "SELECT m.* FROM project_measures m INNER JOIN snapshots s on m.snapshot_id=s.id "
-        + "WHERE s.project_id=" + projectId);
-
-      StringBuilder issueQuery = new StringBuilder()
-        .append("SELECT issues.* FROM issues")
-        .append(" INNER JOIN (")
-        .append(projectQuery(projectId, true))
-        .append(") resources")
-        .append(" ON issues.component_id=resources.id")
-        .append(" AND status <> '").append(Issue.STATUS_CLOSED).append("'");
-      template.copyTable(source, dest, "issues", issueQuery.toString());
-    }
+  }
+
+  private void copyProjectTables(DataSource source, DataSource dest, Long projectId) {
+    DbTemplate template = new DbTemplate(profiling);
+    template.copyTable(source, dest, "projects", projectQuery(projectId, false));
+
+    template.copyTable(source, dest, "events", "SELECT * FROM events WHERE resource_id=" + projectId);
+
+    StringBuilder snapshotQuery = new StringBuilder()
+      // All snapshots of root_project for alerts on differential periods
+      .append("SELECT * FROM snapshots WHERE project_id=")
+      .append(projectId);
+    template.copyTable(source, dest, "snapshots", snapshotQuery.toString());
+
+    // All measures of snapshots of root project for alerts on differential periods
+    template.copyTable(source, dest, "project_measures", "SELECT m.* FROM project_measures m INNER JOIN snapshots s on m.snapshot_id=s.id "
+      + "WHERE s.project_id=" + projectId);
+
+    StringBuilder issueQuery = new StringBuilder()
+      .append("SELECT issues.* FROM issues")
+      .append(" INNER JOIN (")
+      .append(projectQuery(projectId, true))
+      .append(") resources")
+      .append(" ON issues.component_id=resources.id")
+      .append(" AND status <> '").append(Issue.STATUS_CLOSED).append("'");
+    template.copyTable(source, dest, "issues", issueQuery.toString());
   }
 
   private String projectQuery(Long projectId, boolean returnOnlyIds) {
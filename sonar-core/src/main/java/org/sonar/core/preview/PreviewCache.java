@@ -37,12 +37,16 @@ import org.sonar.core.resource.ResourceDto;
 import javax.annotation.Nullable;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
+ * Preview databases are generated in two layers. The database without project, named "default", contains only
+ * the global tables and is used as base image of the databases of projects, which only add their own data.
+ * Generations of databases of different projects run concurrently, as long as base image is up-to-date.
+ *
  * @since 3.7.1
  */
 public class PreviewCache implements ServerExtension {
@@ -57,8 +61,8 @@ public class PreviewCache implements ServerExtension {
   private PropertiesDao propertiesDao;
   private ResourceDao resourceDao;
 
-  private Map<Long, ReadWriteLock> lockPerProject = new HashMap<Long, ReadWriteLock>();
-  private Map<Long, Long> lastTimestampPerProject = new HashMap<Long, Long>();
+  private final ConcurrentMap<Long, ReadWriteLock> lockPerProject = new ConcurrentHashMap<Long, ReadWriteLock>();
+  private final ConcurrentMap<Long, Long> lastTimestampPerProject = new ConcurrentHashMap<Long, Long>();
 
   private PreviewDatabaseFactory previewDatabaseFactory;
 
@@ -75,26 +79,36 @@ public class PreviewCache implements ServerExtension {
     ReadWriteLock rwl = getLock(notNullProjectId);
     try {
       rwl.readLock().lock();
-      if (!isCacheValid(projectId)) {
-        // upgrade lock manually
-        // must unlock first to obtain writelock
-        rwl.readLock().unlock();
-        rwl.writeLock().lock();
+      return getDatabaseFile(projectId, rwl).getAbsolutePath();
+    } finally {
+      rwl.readLock().unlock();
+    }
+  }
+
+  /**
+   * Must be called with the read lock of the project. The read lock is still held when method returns.
+   */
+  private File getDatabaseFile(@Nullable Long projectId, ReadWriteLock rwl) {
+    long notNullProjectId = projectId != null ? projectId.longValue() : 0L;
+    if (!isCacheValid(projectId)) {
+      // upgrade lock manually
+      // must unlock first to obtain writelock
+      rwl.readLock().unlock();
+      rwl.writeLock().lock();
+      try {
         // recheck
         if (!isCacheValid(projectId)) {
           generateNewDB(projectId);
         }
+      } finally {
         // downgrade lock
         // reacquire read without giving up write lock
         rwl.readLock().lock();
         // unlock write, still hold read
         rwl.writeLock().unlock();
       }
-      File dbFile = new File(getCacheLocation(projectId), lastTimestampPerProject.get(notNullProjectId) + PreviewDatabaseFactory.H2_FILE_SUFFIX);
-      return dbFile.getAbsolutePath();
-    } finally {
-      rwl.readLock().unlock();
     }
+    return new File(getCacheLocation(projectId), lastTimestampPerProject.get(notNullProjectId) + PreviewDatabaseFactory.H2_FILE_SUFFIX);
   }
 
   private boolean isCacheValid(@Nullable Long projectId) {
@@ -122,16 +136,31 @@ public class PreviewCache implements ServerExtension {
     long newTimestamp = System.currentTimeMillis();
     File cacheLocation = getCacheLocation(projectId);
     FileUtils.deleteQuietly(cacheLocation);
-    File dbFile = previewDatabaseFactory.createNewDatabaseForDryRun(projectId, cacheLocation, String.valueOf(newTimestamp));
+    File dbFile;
+    if (projectId == null) {
+      dbFile = previewDatabaseFactory.createNewDatabaseForDryRun(null, cacheLocation, String.valueOf(newTimestamp));
+    } else {
+      // Global tables are copied from the base database, which can't be regenerated while it's being copied
+      ReadWriteLock baseLock = getLock(0L);
+      baseLock.readLock().lock();
+      try {
+        File baseDbFile = getDatabaseFile(null, baseLock);
+        dbFile = previewDatabaseFactory.createNewDatabaseForDryRun(projectId, baseDbFile, cacheLocation, String.valueOf(newTimestamp));
+      } finally {
+        baseLock.readLock().unlock();
+      }
+    }
     LOG.debug("Cached DB at {}", dbFile);
     lastTimestampPerProject.put(notNullProjectId, newTimestamp);
   }
 
-  private synchronized ReadWriteLock getLock(long notNullProjectId) {
-    if (!lockPerProject.containsKey(notNullProjectId)) {
-      lockPerProject.put(notNullProjectId, new ReentrantReadWriteLock(true));
+  private ReadWriteLock getLock(long notNullProjectId) {
+    ReadWriteLock lock = lockPerProject.get(notNullProjectId);
+    if (lock == null) {
+      lockPerProject.putIfAbsent(notNullProjectId, new ReentrantReadWriteLock(true));
+      lock = lockPerProject.get(notNullProjectId);
     }
-    return lockPerProject.get(notNullProjectId);
+    return lock;
   }
 
   private File getRootCacheLocation() {
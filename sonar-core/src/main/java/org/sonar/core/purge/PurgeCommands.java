@@ -153,8 +153,46 @@ class PurgeCommands {
     profiler.stop();
   }
 
+  /**
+   * Dependent tables are cleaned with one set-based statement each, the snapshots
+   * matching the query being selected by the database.
+   */
   void deleteSnapshots(final PurgeSnapshotQuery query) {
-    deleteSnapshots(purgeMapper.selectSnapshotIds(query));
+    List<Long> snapshotIds = purgeMapper.selectSnapshotIds(query);
+    if (snapshotIds.isEmpty()) {
+      return;
+    }
+    List<List<Long>> snapshotIdsPartition = Lists.partition(snapshotIds, MAX_SNAPSHOTS_PER_QUERY);
+
+    deleteSnapshotDependencies(query);
+
+    deleteSnapshotDuplications(query);
+
+    // the query may read the table events, so the tables cleaned after the events
+    // are cleaned by the ids of the snapshots selected before
+    profiler.start("deleteSnapshotEvents (events)");
+    for (List<Long> partSnapshotIds : snapshotIdsPartition) {
+      purgeMapper.deleteSnapshotEvents(partSnapshotIds);
+    }
+    session.commit();
+    profiler.stop();
+
+    profiler.start("deleteSnapshotMeasures (project_measures)");
+    for (List<Long> partSnapshotIds : snapshotIdsPartition) {
+      purgeMapper.deleteSnapshotMeasures(partSnapshotIds);
+    }
+    session.commit();
+    profiler.stop();
+
+    deleteSnapshotGraphs(snapshotIdsPartition);
+
+    // snapshots can't be deleted by query on MySQL, as the query reads the same table
+    profiler.start("deleteSnapshot (snapshots)");
+    for (List<Long> partSnapshotIds : snapshotIdsPartition) {
+      purgeMapper.deleteSnapshot(partSnapshotIds);
+    }
+    session.commit();
+    profiler.stop();
   }
 
   @VisibleForTesting
@@ -191,7 +229,24 @@ class PurgeCommands {
   }
 
   void purgeSnapshots(final PurgeSnapshotQuery query) {
-    purgeSnapshots(purgeMapper.selectSnapshotIds(query));
+    // note that events are not deleted
+    List<Long> snapshotIds = purgeMapper.selectSnapshotIds(query);
+    if (snapshotIds.isEmpty()) {
+      return;
+    }
+
+    deleteSnapshotDependencies(query);
+
+    deleteSnapshotDuplications(query);
+
+    deleteSnapshotGraphs(query);
+
+    profiler.start("deleteSnapshotWastedMeasures (project_measures)");
+    purgeMapper.deleteSnapshotWastedMeasuresByQuery(query);
+    session.commit();
+    profiler.stop();
+
+    updatePurgeStatusToOne(snapshotIds);
   }
 
   @VisibleForTesting
@@ -213,9 +268,13 @@ class PurgeCommands {
     session.commit();
     profiler.stop();
 
+    updatePurgeStatusToOne(snapshotIds);
+  }
+
+  private void updatePurgeStatusToOne(List<Long> snapshotIds) {
     profiler.start("updatePurgeStatusToOne (snapshots)");
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.updatePurgeStatusToOne(snapshotId);
+    for (List<Long> partSnapshotIds : Lists.partition(snapshotIds, MAX_SNAPSHOTS_PER_QUERY)) {
+      purgeMapper.updatePurgeStatusToOne(partSnapshotIds);
     }
     session.commit();
     profiler.stop();
@@ -239,6 +298,29 @@ class PurgeCommands {
     profiler.stop();
   }
 
+  private void deleteSnapshotGraphs(final PurgeSnapshotQuery query) {
+    profiler.start("deleteSnapshotGraphs (graphs)");
+    purgeMapper.deleteSnapshotGraphsByQuery(query);
+    session.commit();
+    profiler.stop();
+  }
+
+  private void deleteSnapshotDuplications(final PurgeSnapshotQuery query) {
+    profiler.start("deleteSnapshotDuplications (duplications_index)");
+    purgeMapper.deleteSnapshotDuplicationsByQuery(query);
+    session.commit();
+    profiler.stop();
+  }
+
+  private void deleteSnapshotDependencies(final PurgeSnapshotQuery query) {
+    profiler.start("deleteSnapshotDependencies (dependencies)");
+    purgeMapper.deleteSnapshotDependenciesFromSnapshotIdByQuery(query);
+    purgeMapper.deleteSnapshotDependenciesToSnapshotIdByQuery(query);
+    purgeMapper.deleteSnapshotDependenciesProjectSnapshotIdByQuery(query);
+    session.commit();
+    profiler.stop();
+  }
+
   private void deleteSnapshotDependencies(final List<List<Long>> snapshotIdsPartition) {
     profiler.start("deleteSnapshotDependencies (dependencies)");
     for (List<Long> partSnapshotIds : snapshotIdsPartition) {
@@ -54,7 +54,19 @@ public interface PurgeMapper {
 
   void deleteSnapshotWastedMeasures(@Param("snapshotIds") List<Long> snapshotIds, @Param("mids") List<Long> metricIds);
 
-  void updatePurgeStatusToOne(long snapshotId);
+  void deleteSnapshotDependenciesFromSnapshotIdByQuery(PurgeSnapshotQuery query);
+
+  void deleteSnapshotDependenciesToSnapshotIdByQuery(PurgeSnapshotQuery query);
+
+  void deleteSnapshotDependenciesProjectSnapshotIdByQuery(PurgeSnapshotQuery query);
+
+  void deleteSnapshotDuplicationsByQuery(PurgeSnapshotQuery query);
+
+  void deleteSnapshotGraphsByQuery(PurgeSnapshotQuery query);
+
+  void deleteSnapshotWastedMeasuresByQuery(PurgeSnapshotQuery query);
+
+  void updatePurgeStatusToOne(@Param("snapshotIds") List<Long> snapshotIds);
 
   void disableResource(long resourceId);
 
@@ -92,6 +92,20 @@ public class PreviewDatabaseFactoryTest extends AbstractDaoTestCase {
     assertThat(countRows("events")).isEqualTo(2);
   }
 
+  @Test
+  public void should_create_database_of_project_from_base_database() throws Exception {
+    setupData("should_create_database");
+
+    File baseDatabase = localDatabaseFactory.createNewDatabaseForDryRun(null, temporaryFolder.newFolder(), "base");
+    byte[] database = FileUtils.readFileToByteArray(localDatabaseFactory.createNewDatabaseForDryRun(123L, baseDatabase, temporaryFolder.newFolder(), "foo"));
+    dataSource = createDatabase(database);
+
+    assertThat(countRows("users")).isEqualTo(3);
+    assertThat(countRows("projects")).isEqualTo(1);
+    assertThat(countRows("snapshots")).isEqualTo(1);
+    assertThat(countRows("events")).isEqualTo(2);
+  }
+
   @Test
   public void should_create_database_with_issues() throws Exception {
     setupData("should_create_database_with_issues");
@@ -103,10 +103,10 @@ public class PreviewCacheTest {
 
   @Test
   public void test_getDatabaseForDryRun_on_existing_project() throws Exception {
-    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(eq(123L), any(File.class), anyString())).thenAnswer(new Answer<File>() {
+    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(eq(123L), any(File.class), any(File.class), anyString())).thenAnswer(new Answer<File>() {
       public File answer(InvocationOnMock invocation) throws IOException {
         Object[] args = invocation.getArguments();
-        File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[2] + ".h2.db");
+        File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[3] + ".h2.db");
         FileUtils.write(dbFile, "fake db content");
         return dbFile;
       }
@@ -118,7 +118,7 @@ public class PreviewCacheTest {
     path = dryRunCache.getPathToDatabaseFile(123L);
     assertThat(FileUtils.readFileToString(new File(path))).isEqualTo("fake db content");
 
-    verify(dryRunDatabaseFactory, times(1)).createNewDatabaseForDryRun(anyLong(), any(File.class), anyString());
+    verify(dryRunDatabaseFactory, times(1)).createNewDatabaseForDryRun(eq(123L), any(File.class), any(File.class), anyString());
   }
 
   @Test
@@ -155,11 +155,11 @@ public class PreviewCacheTest {
 
   @Test
   public void test_getDatabaseForDryRun_project_invalidation() throws Exception {
-    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(eq(123L), any(File.class), anyString()))
+    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(eq(123L), any(File.class), any(File.class), anyString()))
       .thenAnswer(new Answer<File>() {
         public File answer(InvocationOnMock invocation) throws IOException {
           Object[] args = invocation.getArguments();
-          File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[2] + ".h2.db");
+          File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[3] + ".h2.db");
           FileUtils.write(dbFile, "fake db content 1");
           return dbFile;
         }
@@ -167,7 +167,7 @@ public class PreviewCacheTest {
       .thenAnswer(new Answer<File>() {
         public File answer(InvocationOnMock invocation) throws IOException {
           Object[] args = invocation.getArguments();
-          File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[2] + ".h2.db");
+          File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[3] + ".h2.db");
           FileUtils.write(dbFile, "fake db content 2");
           return dbFile;
         }
@@ -184,7 +184,35 @@ public class PreviewCacheTest {
     path = dryRunCache.getPathToDatabaseFile(123L);
     assertThat(FileUtils.readFileToString(new File(path))).isEqualTo("fake db content 2");
 
-    verify(dryRunDatabaseFactory, times(2)).createNewDatabaseForDryRun(anyLong(), any(File.class), anyString());
+    verify(dryRunDatabaseFactory, times(2)).createNewDatabaseForDryRun(eq(123L), any(File.class), any(File.class), anyString());
+  }
+
+  @Test
+  public void generate_databases_of_projects_from_base_database() throws Exception {
+    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(isNull(Long.class), any(File.class), anyString())).thenAnswer(new Answer<File>() {
+      public File answer(InvocationOnMock invocation) throws IOException {
+        Object[] args = invocation.getArguments();
+        File dbFile = new File(new File(dryRunCacheLocation, "default"), args[2] + ".h2.db");
+        FileUtils.write(dbFile, "base");
+        return dbFile;
+      }
+    });
+    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(anyLong(), any(File.class), any(File.class), anyString())).thenAnswer(new Answer<File>() {
+      public File answer(InvocationOnMock invocation) throws IOException {
+        Object[] args = invocation.getArguments();
+        File dbFile = new File(new File(dryRunCacheLocation, args[0].toString()), args[3] + ".h2.db");
+        FileUtils.write(dbFile, FileUtils.readFileToString((File) args[1]) + " + " + args[0]);
+        return dbFile;
+      }
+    });
+    when(resourceDao.getRootProjectByComponentId(123L)).thenReturn(new ResourceDto().setId(123L));
+    when(resourceDao.getRootProjectByComponentId(456L)).thenReturn(new ResourceDto().setId(456L));
+
+    assertThat(FileUtils.readFileToString(new File(dryRunCache.getPathToDatabaseFile(123L)))).isEqualTo("base + 123");
+    assertThat(FileUtils.readFileToString(new File(dryRunCache.getPathToDatabaseFile(456L)))).isEqualTo("base + 456");
+
+    // base database is generated only once
+    verify(dryRunDatabaseFactory, times(1)).createNewDatabaseForDryRun(isNull(Long.class), any(File.class), anyString());
   }
 
   @Test
@@ -55,6 +55,22 @@ public class PurgeCommandsTest extends AbstractDaoTestCase {
     checkTables("shouldDeleteSnapshot", "snapshots", "project_measures", "duplications_index", "events", "dependencies");
   }
 
+  /**
+   * The query reads the table events, which is cleaned before measures
+   */
+  @Test
+  public void delete_measures_of_snapshots_selected_by_version_event() {
+    setupData("deleteSnapshotsSelectedByVersionEvent");
+
+    SqlSession session = getMyBatis().openSession();
+    try {
+      new PurgeCommands(session, profiler).deleteSnapshots(PurgeSnapshotQuery.create().setResourceId(5L).setWithVersionEvent(true));
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+    assertEmptyTables("snapshots", "project_measures", "events");
+  }
+
   /**
    * Test that SQL queries execution do not fail with a huge number of parameter
    */
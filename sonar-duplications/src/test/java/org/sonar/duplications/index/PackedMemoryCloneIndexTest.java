@@ -24,7 +24,10 @@ import org.junit.Test;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.sameInstance;
@@ -109,6 +112,39 @@ public class PackedMemoryCloneIndexTest {
     index.getBySequenceHash(new ByteArray(1L));
   }
 
+  /**
+   * Given: index with many blocks.
+   * Expected: queries executed concurrently by several threads return the same results.
+   */
+  @Test
+  public void should_support_concurrent_queries() throws Exception {
+    for (int i = 0; i < 10000; i++) {
+      index.insert(newBlock("r" + (i % 100), i % 500));
+    }
+
+    final AtomicInteger errors = new AtomicInteger();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 500; i++) {
+            if (index.getBySequenceHash(new ByteArray((long) i)).size() != 20 || index.getByResourceId("r" + (i % 100)).size() != 100) {
+              errors.incrementAndGet();
+            }
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(errors.get(), is(0));
+  }
+
   private static Block newBlock(String resourceId, long hash) {
     return Block.builder()
         .setResourceId(resourceId)